@@ -1,4 +1,4 @@
-package models;
+package DTO;
 
 /**
  * Represents an accessory that a user can purchase for their pet.
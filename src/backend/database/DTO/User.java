@@ -1,4 +1,4 @@
-package models;
+package DTO;
 
 /**
  * Represents a user in database. User will initially need to enter username, password, email, 
@@ -0,0 +1,45 @@
+package analytics;
+
+/**
+ * Age bands used to split analytics into cohorts. Skribble is aimed at kids 6 to 12, so
+ * that range gets the finest bands.
+ */
+public final class AgeBand {
+
+    public static final int UNDER_6 = 0;
+    public static final int AGE_6_TO_8 = 1;
+    public static final int AGE_9_TO_10 = 2;
+    public static final int AGE_11_TO_12 = 3;
+    public static final int AGE_13_TO_17 = 4;
+    public static final int ADULT = 5;
+
+    /** Number of age bands. */
+    public static final int COUNT = 6;
+
+    private static final String[] NAMES = { "under 6", "6-8", "9-10", "11-12", "13-17", "18+" };
+
+    private AgeBand() { }
+
+    /**
+     * Gets the band for an age
+     * @param age age in years
+     * @return age band
+     */
+    public static int of(int age) {
+        if (age < 6) return UNDER_6;
+        if (age <= 8) return AGE_6_TO_8;
+        if (age <= 10) return AGE_9_TO_10;
+        if (age <= 12) return AGE_11_TO_12;
+        if (age <= 17) return AGE_13_TO_17;
+        return ADULT;
+    }
+
+    /**
+     * Gets a display name for a band
+     * @param band age band
+     * @return name
+     */
+    public static String name(int band) {
+        return NAMES[band];
+    }
+}
@@ -0,0 +1,246 @@
+package analytics;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import models.Skribble;
+import models.User;
+
+/**
+ * Pre-bucketed mood counts by (day, mood, age band), kept up to date as entries are
+ * saved so dashboards never scan entries. Moods are dictionary-encoded to small ints.
+ * Counts live in blocks of BLOCK_DAYS days, laid out as one column per (age band, mood)
+ * so a date-range query reads each column sequentially. Counters are atomic, so
+ * recording never takes a lock.
+ *
+ * An entry is counted in its author's age band at the time it is saved. Authors have
+ * birthdays, so record returns that band and unrecord takes it back; keep it with the
+ * entry rather than working it out again from the author's current age.
+ */
+public class MoodRollup {
+
+    /** Number of days in one storage block. */
+    static final int BLOCK_DAYS = 128;
+
+    /** Most distinct moods tracked; any beyond this are counted as OTHER_MOOD. */
+    public static final int MAX_MOODS = 32;
+
+    /** Mood name used for entries without a mood. */
+    public static final String NO_MOOD = "none";
+
+    /** Mood name that absorbs moods once the dictionary is full. */
+    public static final String OTHER_MOOD = "other";
+
+    /** Pass as the band to a query to count every age band. */
+    public static final int ALL_BANDS = -1;
+
+    private final ConcurrentHashMap<String, Integer> moodCodes = new ConcurrentHashMap<>();
+    private final List<String> moods = new ArrayList<>();
+    private final ConcurrentHashMap<Long, AtomicIntegerArray> blocks = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     */
+    public MoodRollup() {
+        code(NO_MOOD);
+        code(OTHER_MOOD);
+    }
+
+    /**
+     * Counts a saved journal entry
+     * @param skribble journal entry
+     * @param author user who wrote it
+     * @return age band the entry was counted in, to store with the entry for unrecord
+     */
+    public int record(Skribble skribble, User author) {
+        int band = AgeBand.of(author.getAge());
+        add(skribble, band, code(moodOf(skribble)), 1);
+        return band;
+    }
+
+    /**
+     * Uncounts a deleted journal entry. A mood that was never recorded isn't added to the
+     * dictionary, and nothing is uncounted for it.
+     * @param skribble journal entry, with the date and mood it was recorded with
+     * @param band age band that record returned for the entry
+     */
+    public void unrecord(Skribble skribble, int band) {
+        if (band < 0 || band >= AgeBand.COUNT) {
+            throw new IllegalArgumentException("Unknown age band: " + band);
+        }
+        int mood = existingCode(moodOf(skribble));
+        if (mood >= 0) {
+            add(skribble, band, mood, -1);
+        }
+    }
+
+    /**
+     * Counts entries per mood between two dates
+     * @param from first day to include
+     * @param to last day to include
+     * @param band age band from AgeBand, or ALL_BANDS
+     * @return count per mood, moods with no entries left out
+     */
+    public Map<String, Long> distribution(LocalDate from, LocalDate to, int band) {
+        int moodCount = moodCount();
+        long[] totals = new long[moodCount];
+        for (int mood = 0; mood < moodCount; mood++) {
+            for (int b = firstBand(band); b <= lastBand(band); b++) {
+                totals[mood] += sum(from.toEpochDay(), to.toEpochDay(), b, mood);
+            }
+        }
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        for (int mood = 0; mood < moodCount; mood++) {
+            if (totals[mood] != 0) {
+                distribution.put(moodName(mood), totals[mood]);
+            }
+        }
+        return distribution;
+    }
+
+    /**
+     * Counts entries with one mood in consecutive buckets, for example per day or per week
+     * @param from first day of the first bucket
+     * @param to last day to include
+     * @param bucketDays days per bucket, 1 for daily and 7 for weekly
+     * @param mood mood name
+     * @param band age band from AgeBand, or ALL_BANDS
+     * @return count per bucket
+     */
+    public long[] series(LocalDate from, LocalDate to, int bucketDays, String mood, int band) {
+        if (bucketDays <= 0) {
+            throw new IllegalArgumentException("bucketDays must be positive: " + bucketDays);
+        }
+        long start = from.toEpochDay();
+        long end = to.toEpochDay();
+        long[] buckets = new long[(int) Math.max(0, (end - start) / bucketDays + 1)];
+        Integer code = moodCodes.get(mood);
+        if (code == null || end < start) {
+            return buckets;
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            long bucketStart = start + (long) i * bucketDays;
+            long bucketEnd = Math.min(end, bucketStart + bucketDays - 1);
+            for (int b = firstBand(band); b <= lastBand(band); b++) {
+                buckets[i] += sum(bucketStart, bucketEnd, b, code);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Gets the moods seen so far, in dictionary order
+     * @return mood names
+     */
+    public List<String> getMoods() {
+        synchronized (moods) {
+            return new ArrayList<>(moods);
+        }
+    }
+
+    private void add(Skribble skribble, int band, int mood, int delta) {
+        if (skribble.getDateCreated() == null) {
+            return;
+        }
+        long day = skribble.getDateCreated().toEpochDay();
+        int index = column(band, mood) + Math.floorMod(day, BLOCK_DAYS);
+        block(Math.floorDiv(day, BLOCK_DAYS)).addAndGet(index, delta);
+    }
+
+    /**
+     * Sums one (band, mood) column over a day range, block by block
+     */
+    private long sum(long fromDay, long toDay, int band, int mood) {
+        long total = 0;
+        int column = column(band, mood);
+        long lastBlock = Math.floorDiv(toDay, BLOCK_DAYS);
+        for (long blockIndex = Math.floorDiv(fromDay, BLOCK_DAYS); blockIndex <= lastBlock; blockIndex++) {
+            AtomicIntegerArray block = blocks.get(blockIndex);
+            if (block == null) {
+                continue;
+            }
+            long blockStart = blockIndex * BLOCK_DAYS;
+            int first = (int) (Math.max(fromDay, blockStart) - blockStart);
+            int last = (int) (Math.min(toDay, blockStart + BLOCK_DAYS - 1) - blockStart);
+            for (int day = first; day <= last; day++) {
+                total += block.get(column + day);
+            }
+        }
+        return total;
+    }
+
+    private AtomicIntegerArray block(long blockIndex) {
+        return blocks.computeIfAbsent(blockIndex, i -> new AtomicIntegerArray(AgeBand.COUNT * MAX_MOODS * BLOCK_DAYS));
+    }
+
+    private static int column(int band, int mood) {
+        return (band * MAX_MOODS + mood) * BLOCK_DAYS;
+    }
+
+    private int code(String mood) {
+        Integer code = moodCodes.get(mood);
+        if (code != null) {
+            return code;
+        }
+        synchronized (moods) {
+            code = moodCodes.get(mood);
+            if (code != null) {
+                return code;
+            }
+            if (moods.size() == MAX_MOODS) {
+                return moodCodes.get(OTHER_MOOD);
+            }
+            moods.add(mood);
+            moodCodes.put(mood, moods.size() - 1);
+            return moods.size() - 1;
+        }
+    }
+
+    /**
+     * Looks up a mood without adding it. Once the dictionary is full an unknown mood can
+     * only have been counted as OTHER_MOOD.
+     * @return code, or -1 if the mood was never recorded
+     */
+    private int existingCode(String mood) {
+        Integer code = moodCodes.get(mood);
+        if (code != null) {
+            return code;
+        }
+        synchronized (moods) {
+            code = moodCodes.get(mood);
+            if (code != null) {
+                return code;
+            }
+            return moods.size() == MAX_MOODS ? moodCodes.get(OTHER_MOOD) : -1;
+        }
+    }
+
+    private static String moodOf(Skribble skribble) {
+        return skribble.getMood() == null ? NO_MOOD : skribble.getMood();
+    }
+
+    private int moodCount() {
+        synchronized (moods) {
+            return moods.size();
+        }
+    }
+
+    private String moodName(int code) {
+        synchronized (moods) {
+            return moods.get(code);
+        }
+    }
+
+    private static int firstBand(int band) {
+        return band == ALL_BANDS ? 0 : band;
+    }
+
+    private static int lastBand(int band) {
+        return band == ALL_BANDS ? AgeBand.COUNT - 1 : band;
+    }
+}
@@ -0,0 +1,147 @@
+package atlas;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import models.Accessory;
+import models.Pet;
+
+/**
+ * Coordinates of every packed sprite, looked up by the file name models store in
+ * Pet.petPNG and Accessory.accessoryPNG. Written next to the atlases as manifest.json,
+ * with an accessoryID to sprite table so the app can draw store and closet items straight
+ * from the atlases.
+ */
+public final class AtlasManifest {
+
+    private final List<String> atlasFiles;
+    private final Map<String, Sprite> sprites;
+    private final Map<Integer, String> accessories = new TreeMap<>();
+
+    /**
+     * Constructor
+     * @param atlasFiles atlas file names, by atlas index
+     * @param sprites packed sprites
+     */
+    public AtlasManifest(List<String> atlasFiles, List<Sprite> sprites) {
+        this.atlasFiles = Collections.unmodifiableList(new ArrayList<>(atlasFiles));
+        Map<String, Sprite> byName = new LinkedHashMap<>();
+        for (Sprite sprite : sprites) {
+            byName.put(sprite.getName(), sprite);
+        }
+        this.sprites = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * Links catalog accessories to their sprites, skipping ones whose PNG wasn't packed
+     * @param catalog catalog rows
+     * @return number of accessories linked
+     */
+    public int linkAccessories(Iterable<Accessory> catalog) {
+        int linked = 0;
+        for (Accessory accessory : catalog) {
+            if (sprites.containsKey(accessory.getAccessoryPNG())) {
+                accessories.put(accessory.getAccessoryID(), accessory.getAccessoryPNG());
+                linked++;
+            }
+        }
+        return linked;
+    }
+
+    /**
+     * Gets atlas file names
+     * @return file names, by atlas index
+     */
+    public List<String> getAtlasFiles() {
+        return atlasFiles;
+    }
+
+    /**
+     * Gets a sprite by source file name
+     * @param name file name
+     * @return sprite, or null if it wasn't packed
+     */
+    public Sprite get(String name) {
+        return sprites.get(name);
+    }
+
+    /**
+     * Gets a pet's sprite
+     * @param pet pet
+     * @return sprite, or null if its PNG wasn't packed
+     */
+    public Sprite spriteFor(Pet pet) {
+        return sprites.get(pet.getPetPNG());
+    }
+
+    /**
+     * Gets an accessory's sprite
+     * @param accessory accessory
+     * @return sprite, or null if its PNG wasn't packed
+     */
+    public Sprite spriteFor(Accessory accessory) {
+        return sprites.get(accessory.getAccessoryPNG());
+    }
+
+    /**
+     * Gets number of sprites
+     * @return number of sprites
+     */
+    public int size() {
+        return sprites.size();
+    }
+
+    /**
+     * Writes the manifest as JSON
+     * @return JSON text
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"atlases\":[");
+        for (int i = 0; i < atlasFiles.size(); i++) {
+            sb.append(i == 0 ? "" : ",");
+            string(sb, atlasFiles.get(i));
+        }
+        sb.append("],\"sprites\":{");
+        boolean first = true;
+        for (Sprite sprite : sprites.values()) {
+            sb.append(first ? "" : ",");
+            first = false;
+            string(sb, sprite.getName());
+            sb.append(":{\"atlas\":").append(sprite.getAtlas())
+                    .append(",\"x\":").append(sprite.getX())
+                    .append(",\"y\":").append(sprite.getY())
+                    .append(",\"w\":").append(sprite.getWidth())
+                    .append(",\"h\":").append(sprite.getHeight())
+                    .append('}');
+        }
+        sb.append("},\"accessories\":{");
+        first = true;
+        for (Map.Entry<Integer, String> link : accessories.entrySet()) {
+            sb.append(first ? "" : ",");
+            first = false;
+            sb.append('"').append(link.getKey()).append("\":");
+            string(sb, link.getValue());
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static void string(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,177 @@
+package atlas;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Build step that packs pet and clothing PNGs into a few atlas images plus a
+ * manifest.json of sprite coordinates, so the app loads a handful of files instead of
+ * one per asset. Sprites are placed on shelves, tallest first, and an atlas is started
+ * whenever the current one is full. Input is sorted by name, so the same assets always
+ * produce the same atlases and their ETags stay stable between builds. Atlas files left
+ * in the output directory by an earlier build that needed more atlases are deleted.
+ *
+ * Usage: AtlasPacker outputDir assetDir...
+ */
+public final class AtlasPacker {
+
+    /** Default atlas width and height limit. */
+    public static final int DEFAULT_SIZE = 2048;
+
+    /** Transparent pixels left around each sprite so filtering doesn't bleed neighbours in. */
+    static final int PADDING = 2;
+
+    /** Name of the manifest written next to the atlases. */
+    public static final String MANIFEST = "manifest.json";
+
+    private final int maxSize;
+
+    /**
+     * Constructor
+     * @param maxSize atlas width and height limit in pixels
+     */
+    public AtlasPacker(int maxSize) {
+        if (maxSize <= 2 * PADDING) {
+            throw new IllegalArgumentException("Atlas size too small: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: AtlasPacker outputDir assetDir...");
+            System.exit(2);
+        }
+        Path[] sources = new Path[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            sources[i - 1] = Paths.get(args[i]);
+        }
+        AtlasManifest manifest = new AtlasPacker(DEFAULT_SIZE).pack(readDirectories(sources), Paths.get(args[0]));
+        System.out.println("Packed " + manifest.size() + " sprites into " + manifest.getAtlasFiles().size()
+                + " atlases");
+    }
+
+    /**
+     * Reads every PNG in some directories, keyed by file name. If two directories have a
+     * file with the same name, the first directory wins.
+     * @param directories asset directories
+     * @return images by file name, sorted by name
+     * @throws IOException if a directory or image can't be read
+     */
+    public static Map<String, BufferedImage> readDirectories(Path... directories) throws IOException {
+        Map<String, BufferedImage> images = new TreeMap<>();
+        for (Path directory : directories) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.png")) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (!images.containsKey(name)) {
+                        BufferedImage image = ImageIO.read(file.toFile());
+                        if (image == null) {
+                            throw new IOException("Not an image: " + file);
+                        }
+                        images.put(name, image);
+                    }
+                }
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Packs images into atlases and writes them and the manifest to a directory
+     * @param images images by file name
+     * @param outputDir directory to write atlas-N.png and manifest.json to
+     * @return manifest
+     * @throws IOException if a file can't be written
+     * @throws IllegalArgumentException if an image doesn't fit in an atlas with its padding
+     */
+    public AtlasManifest pack(Map<String, BufferedImage> images, Path outputDir) throws IOException {
+        List<Map.Entry<String, BufferedImage>> order = new ArrayList<>(new TreeMap<>(images).entrySet());
+        order.sort(Comparator.comparingInt((Map.Entry<String, BufferedImage> e) -> e.getValue().getHeight())
+                .reversed());
+        List<Sprite> sprites = new ArrayList<>(order.size());
+        List<int[]> extents = new ArrayList<>();
+        int atlas = -1;
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (Map.Entry<String, BufferedImage> entry : order) {
+            int width = entry.getValue().getWidth() + 2 * PADDING;
+            int height = entry.getValue().getHeight() + 2 * PADDING;
+            if (width > maxSize || height > maxSize) {
+                throw new IllegalArgumentException(entry.getKey() + " is " + entry.getValue().getWidth() + "x"
+                        + entry.getValue().getHeight() + ", too large for a " + maxSize + " pixel atlas");
+            }
+            if (atlas >= 0 && x + width > maxSize) {
+                x = 0;
+                y += shelfHeight;
+                shelfHeight = 0;
+            }
+            if (atlas < 0 || (y + height > maxSize && y > 0)) {
+                atlas++;
+                extents.add(new int[2]);
+                x = 0;
+                y = 0;
+                shelfHeight = 0;
+            }
+            sprites.add(new Sprite(entry.getKey(), atlas, x + PADDING, y + PADDING, width - 2 * PADDING,
+                    height - 2 * PADDING));
+            int[] extent = extents.get(atlas);
+            extent[0] = Math.max(extent[0], x + width);
+            extent[1] = Math.max(extent[1], y + height);
+            x += width;
+            shelfHeight = Math.max(shelfHeight, height);
+        }
+        Files.createDirectories(outputDir);
+        List<String> atlasFiles = new ArrayList<>(extents.size());
+        for (int i = 0; i < extents.size(); i++) {
+            BufferedImage canvas = new BufferedImage(extents.get(i)[0], extents.get(i)[1], BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = canvas.createGraphics();
+            try {
+                for (Sprite sprite : sprites) {
+                    if (sprite.getAtlas() == i) {
+                        graphics.drawImage(images.get(sprite.getName()), sprite.getX(), sprite.getY(), null);
+                    }
+                }
+            } finally {
+                graphics.dispose();
+            }
+            String file = "atlas-" + i + ".png";
+            ImageIO.write(canvas, "png", outputDir.resolve(file).toFile());
+            atlasFiles.add(file);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(outputDir, "atlas-*.png")) {
+            for (Path file : files) {
+                if (!atlasFiles.contains(file.getFileName().toString())) {
+                    Files.delete(file);
+                }
+            }
+        }
+        AtlasManifest manifest = new AtlasManifest(atlasFiles, sprites);
+        writeManifest(manifest, outputDir);
+        return manifest;
+    }
+
+    /**
+     * Writes or rewrites a manifest, for example after linking accessories
+     * @param manifest manifest
+     * @param outputDir atlas directory
+     * @throws IOException if the file can't be written
+     */
+    public static void writeManifest(AtlasManifest manifest, Path outputDir) throws IOException {
+        Files.write(outputDir.resolve(MANIFEST), manifest.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,56 @@
+package atlas;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HTTP response for an atlas request: status, headers and body. The body is a read-only
+ * view of the cached file, so serving doesn't copy bytes.
+ */
+public final class AtlasResponse {
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final ByteBuffer body;
+
+    /**
+     * Constructor
+     * @param status HTTP status code
+     * @param headers response headers
+     * @param body response body, empty for statuses without one
+     */
+    public AtlasResponse(int status, Map<String, String> headers, ByteBuffer body) {
+        this.status = status;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.body = body;
+    }
+
+    /**
+     * Gets HTTP status code
+     * @return status
+     */
+    public int getStatus() { return status; }
+
+    /**
+     * Gets response headers
+     * @return headers
+     */
+    public Map<String, String> getHeaders() { return headers; }
+
+    /**
+     * Gets response body
+     * @return read-only body
+     */
+    public ByteBuffer getBody() { return body.duplicate(); }
+
+    @Override
+    public String toString() {
+        return "AtlasResponse{" +
+                "status=" + status +
+                ", headers=" + headers +
+                ", bytes=" + body.remaining() +
+                '}';
+    }
+}
@@ -0,0 +1,187 @@
+package atlas;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serves the files AtlasPacker wrote: the atlas PNGs and manifest.json. Files are read
+ * into memory once, each with a strong ETag from a hash of its bytes, so clients
+ * revalidate with If-None-Match and get a 304 when nothing changed. Single byte ranges
+ * are supported so interrupted downloads can resume; a request for several ranges gets
+ * the whole file, which HTTP allows. A reload builds a new file map and swaps it in with
+ * one volatile write, so a request sees either the old build or the new one, never a mix.
+ *
+ * This is the handler only; the web layer passes in the request path and headers and
+ * writes the response out.
+ */
+public class AtlasServer {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private volatile Map<String, Asset> assets = Map.of();
+
+    /**
+     * Constructor
+     * @param atlasDir directory AtlasPacker wrote to
+     * @throws IOException if the directory can't be read
+     */
+    public AtlasServer(Path atlasDir) throws IOException {
+        reload(atlasDir);
+    }
+
+    /**
+     * Rereads the atlas directory, for example after a new build is deployed
+     * @param atlasDir directory AtlasPacker wrote to
+     * @throws IOException if the directory can't be read
+     */
+    public void reload(Path atlasDir) throws IOException {
+        Map<String, Asset> loaded = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(atlasDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".png") || name.equals(AtlasPacker.MANIFEST)) {
+                    loaded.put(name, new Asset(Files.readAllBytes(file),
+                            name.endsWith(".png") ? "image/png" : "application/json"));
+                }
+            }
+        }
+        assets = Map.copyOf(loaded);
+    }
+
+    /**
+     * Answers a GET for a file
+     * @param name file name, for example atlas-0.png or manifest.json
+     * @param ifNoneMatch If-None-Match header, or null
+     * @param range Range header, or null
+     * @param ifRange If-Range header, or null
+     * @return response
+     */
+    public AtlasResponse serve(String name, String ifNoneMatch, String range, String ifRange) {
+        Asset asset = assets.get(name);
+        if (asset == null) {
+            return new AtlasResponse(404, Map.of(), EMPTY);
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("ETag", asset.etag);
+        headers.put("Cache-Control", "public, no-cache");
+        headers.put("Accept-Ranges", "bytes");
+        if (ifNoneMatch != null && matches(ifNoneMatch, asset.etag)) {
+            return new AtlasResponse(304, headers, EMPTY);
+        }
+        headers.put("Content-Type", asset.contentType);
+        long length = asset.bytes.remaining();
+        if (range == null || (ifRange != null && !ifRange.trim().equals(asset.etag))) {
+            headers.put("Content-Length", Long.toString(length));
+            return new AtlasResponse(200, headers, asset.bytes.duplicate());
+        }
+        long[] bounds = parseRange(range, length);
+        if (bounds == null) {
+            headers.put("Content-Length", Long.toString(length));
+            return new AtlasResponse(200, headers, asset.bytes.duplicate());
+        }
+        if (bounds.length == 0) {
+            headers.put("Content-Range", "bytes */" + length);
+            return new AtlasResponse(416, headers, EMPTY);
+        }
+        ByteBuffer body = asset.bytes.duplicate();
+        body.position((int) bounds[0]).limit((int) bounds[1] + 1);
+        headers.put("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+        headers.put("Content-Length", Long.toString(bounds[1] - bounds[0] + 1));
+        return new AtlasResponse(206, headers, body.slice());
+    }
+
+    /**
+     * Gets a file's ETag
+     * @param name file name
+     * @return quoted ETag, or null if there is no such file
+     */
+    public String etag(String name) {
+        Asset asset = assets.get(name);
+        return asset == null ? null : asset.etag;
+    }
+
+    /**
+     * Parses a single byte range
+     * @return {first, last} inclusive; empty if unsatisfiable; null to ignore the header
+     */
+    static long[] parseRange(String range, long length) {
+        String spec = range.trim();
+        if (!spec.startsWith("bytes=") || spec.indexOf(',') >= 0) {
+            return null;
+        }
+        spec = spec.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            long first;
+            long last;
+            if (from.isEmpty()) {
+                long suffix = Long.parseLong(to);
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(from);
+                last = to.isEmpty() ? length - 1 : Math.min(Long.parseLong(to), length - 1);
+                if (last < first && !to.isEmpty()) {
+                    return null;
+                }
+            }
+            return first >= length || first < 0 ? new long[0] : new long[] { first, last };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One served file.
+     */
+    private static final class Asset {
+        final ByteBuffer bytes;
+        final String etag;
+        final String contentType;
+
+        Asset(byte[] bytes, String contentType) {
+            this.bytes = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+            this.etag = '"' + sha256(bytes) + '"';
+            this.contentType = contentType;
+        }
+
+        private static String sha256(byte[] bytes) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+                StringBuilder hex = new StringBuilder(hash.length * 2);
+                for (byte b : hash) {
+                    hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                return hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package atlas;
+
+/**
+ * Where one source PNG sits inside an atlas.
+ */
+public final class Sprite {
+
+    private final String name;
+    private final int atlas;
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructor
+     * @param name source file name, as stored in Pet.petPNG or Accessory.accessoryPNG
+     * @param atlas index of the atlas holding it
+     * @param x left edge in the atlas
+     * @param y top edge in the atlas
+     * @param width width in pixels
+     * @param height height in pixels
+     */
+    public Sprite(String name, int atlas, int x, int y, int width, int height) {
+        this.name = name;
+        this.atlas = atlas;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Gets source file name
+     * @return name
+     */
+    public String getName() { return name; }
+
+    /**
+     * Gets index of the atlas holding the sprite
+     * @return atlas
+     */
+    public int getAtlas() { return atlas; }
+
+    /**
+     * Gets left edge
+     * @return x
+     */
+    public int getX() { return x; }
+
+    /**
+     * Gets top edge
+     * @return y
+     */
+    public int getY() { return y; }
+
+    /**
+     * Gets width
+     * @return width
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Gets height
+     * @return height
+     */
+    public int getHeight() { return height; }
+
+    @Override
+    public String toString() {
+        return "Sprite{" +
+                "name='" + name + '\'' +
+                ", atlas=" + atlas +
+                ", x=" + x +
+                ", y=" + y +
+                ", width=" + width +
+                ", height=" + height +
+                '}';
+    }
+}
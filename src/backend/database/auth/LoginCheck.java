@@ -0,0 +1,41 @@
+package auth;
+
+/**
+ * Result of checking a login password against a stored hash.
+ */
+public final class LoginCheck {
+
+    private final boolean match;
+    private final String rehash;
+
+    /**
+     * Constructor
+     * @param match true if the password was right
+     * @param rehash new hash to store, or null if the stored one is current
+     */
+    public LoginCheck(boolean match, String rehash) {
+        this.match = match;
+        this.rehash = rehash;
+    }
+
+    /**
+     * Checks if the password was right
+     * @return true if it matched
+     */
+    public boolean isMatch() { return match; }
+
+    /**
+     * Gets a replacement hash made with the current parameters. Only set when the password
+     * matched and the stored hash was plain text or used older parameters.
+     * @return new hash to store on the user, or null
+     */
+    public String getRehash() { return rehash; }
+
+    @Override
+    public String toString() {
+        return "LoginCheck{" +
+                "match=" + match +
+                ", rehash=" + (rehash != null) +
+                '}';
+    }
+}
@@ -0,0 +1,242 @@
+package auth;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Hashes and checks User.password with PBKDF2 on its own bounded pool, so a burst of
+ * logins queues here instead of taking every core from other requests. The pool has one
+ * thread per core and a bounded queue. Every request carries a deadline: it is turned
+ * away up front if the queue is full or the estimated wait would miss the deadline, and
+ * dropped if it is still queued when the deadline passes. Callers get a
+ * RejectedExecutionException quickly and can ask the user to retry.
+ *
+ * Stored hashes look like pbkdf2-sha256$iterations$salt$hash, so the parameters travel
+ * with the hash. A successful login against a plain-text password, or a hash made with
+ * fewer iterations than configured, returns a new hash to store, so users move to the
+ * current parameters as they log in.
+ */
+public class PasswordHasher implements Closeable {
+
+    /** Scheme name at the start of every hash. */
+    public static final String SCHEME = "pbkdf2-sha256";
+
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final double SMOOTHING = 0.1;
+
+    private final int iterations;
+    private final int threads;
+    private final ThreadPoolExecutor pool;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile double averageNanos;
+
+    /**
+     * Constructor
+     * @param iterations PBKDF2 iterations for new hashes
+     * @param threads worker threads, usually the number of cores
+     * @param queueCapacity most requests waiting for a worker
+     */
+    public PasswordHasher(int iterations, int threads, int queueCapacity) {
+        if (iterations <= 0 || threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("iterations, threads and queueCapacity must be positive");
+        }
+        this.iterations = iterations;
+        this.threads = threads;
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "password-hash-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Hashes a new password, for example at sign-up or password change
+     * @param password password
+     * @param timeout how long the caller can wait
+     * @param unit unit of timeout
+     * @return stored form of the hash; fails with RejectedExecutionException if the pool
+     *         is too busy to finish in time
+     */
+    public CompletableFuture<String> hash(String password, long timeout, TimeUnit unit) {
+        return submit(() -> hash(password), timeout, unit);
+    }
+
+    /**
+     * Checks a login password
+     * @param password password the user typed
+     * @param stored stored hash, or a legacy plain-text password
+     * @param timeout how long the caller can wait
+     * @param unit unit of timeout
+     * @return result, with a new hash to store if the old one is out of date; fails with
+     *         RejectedExecutionException if the pool is too busy to finish in time
+     */
+    public CompletableFuture<LoginCheck> verify(String password, String stored, long timeout, TimeUnit unit) {
+        return submit(() -> {
+            boolean match = matches(password, stored);
+            return new LoginCheck(match, match && needsRehash(stored) ? hash(password) : null);
+        }, timeout, unit);
+    }
+
+    /**
+     * Checks if a stored password should be replaced with a hash made with the current parameters
+     * @param stored stored hash or legacy plain-text password
+     * @return true if it is plain text or uses fewer iterations
+     */
+    public boolean needsRehash(String stored) {
+        String[] parts = parse(stored);
+        return parts == null || Integer.parseInt(parts[1]) < iterations;
+    }
+
+    /**
+     * Gets number of requests waiting for a worker
+     * @return queued requests
+     */
+    public int queued() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * Gets number of requests turned away or dropped for missing their deadline
+     * @return rejected requests
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Stops the workers. Queued requests fail with RejectedExecutionException, and so
+     * does anything submitted afterwards.
+     */
+    @Override
+    public void close() {
+        for (Runnable queued : pool.shutdownNow()) {
+            if (queued instanceof Request) {
+                reject(((Request<?>) queued).result, "Password hasher closed");
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> work, long timeout, TimeUnit unit) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        double estimatedWait = (pool.getQueue().size() / (double) threads + 1) * averageNanos;
+        if (estimatedWait > unit.toNanos(timeout)) {
+            return reject(result, "Password hashing is busy");
+        }
+        try {
+            pool.execute(new Request<>(work, result, deadline));
+        } catch (RejectedExecutionException e) {
+            return reject(result, pool.isShutdown() ? "Password hasher closed" : "Password hashing queue is full");
+        }
+        return result;
+    }
+
+    private <T> CompletableFuture<T> reject(CompletableFuture<T> result, String reason) {
+        rejected.incrementAndGet();
+        result.completeExceptionally(new RejectedExecutionException(reason));
+        return result;
+    }
+
+    private String hash(String password) throws GeneralSecurityException {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return SCHEME + '$' + iterations + '$' + base64.encodeToString(salt) + '$' + base64.encodeToString(hash);
+    }
+
+    private static boolean matches(String password, String stored) throws GeneralSecurityException {
+        if (password == null || stored == null) {
+            return false;
+        }
+        String[] parts = parse(stored);
+        if (parts == null) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] expected = base64.decode(parts[3]);
+        return MessageDigest.isEqual(pbkdf2(password, base64.decode(parts[2]), Integer.parseInt(parts[1])), expected);
+    }
+
+    /**
+     * Splits a stored hash into scheme, iterations, salt and hash
+     * @return parts, or null if the value isn't a hash from this class; the iterations
+     *         part is always a positive int
+     */
+    private static String[] parse(String stored) {
+        if (stored == null || !stored.startsWith(SCHEME + '$')) {
+            return null;
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || parts[1].isEmpty() || !parts[1].chars().allMatch(c -> c >= '0' && c <= '9')) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(parts[1]) > 0 ? parts : null;
+        } catch (NumberFormatException tooLarge) {
+            return null;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * One queued request; close finds the futures of requests still queued through this.
+     */
+    private final class Request<T> implements Runnable {
+        final Callable<T> work;
+        final CompletableFuture<T> result;
+        final long deadline;
+
+        Request(Callable<T> work, CompletableFuture<T> result, long deadline) {
+            this.work = work;
+            this.result = result;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            if (System.nanoTime() - deadline > 0) {
+                reject(result, "Password hashing deadline passed while queued");
+                return;
+            }
+            long started = System.nanoTime();
+            try {
+                result.complete(work.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            } finally {
+                long elapsed = System.nanoTime() - started;
+                double average = averageNanos;
+                averageNanos = average == 0 ? elapsed : average + SMOOTHING * (elapsed - average);
+            }
+        }
+    }
+}
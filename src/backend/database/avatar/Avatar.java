@@ -0,0 +1,41 @@
+package avatar;
+
+/**
+ * A flattened avatar image. The ID is derived from what the avatar is made of, so users
+ * with the same pet type and outfit share one ID and one image.
+ */
+public final class Avatar {
+
+    private final String avatarID;
+    private final byte[] png;
+
+    /**
+     * Constructor
+     * @param avatarID content address of the avatar
+     * @param png encoded PNG image
+     */
+    public Avatar(String avatarID, byte[] png) {
+        this.avatarID = avatarID;
+        this.png = png;
+    }
+
+    /**
+     * Gets the content address, usable as a URL path and ETag
+     * @return avatarID
+     */
+    public String getAvatarID() { return avatarID; }
+
+    /**
+     * Gets the encoded image. The array is shared and must not be modified.
+     * @return PNG bytes
+     */
+    public byte[] getPng() { return png; }
+
+    @Override
+    public String toString() {
+        return "Avatar{" +
+                "avatarID='" + avatarID + '\'' +
+                ", bytes=" + png.length +
+                '}';
+    }
+}
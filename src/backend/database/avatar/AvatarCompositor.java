@@ -0,0 +1,257 @@
+package avatar;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+import closet.AccessoryOrdinals;
+import closet.Closet;
+import models.Accessory;
+import models.Pet;
+import store.AccessoryCatalog;
+import store.CatalogSnapshot;
+
+/**
+ * Flattens a pet and its worn accessories into one PNG, so home, closet and friend views
+ * download one image instead of a layer per accessory. Avatars are content addressed:
+ * the ID is a hash of the pet image, the catalog version and the sorted worn ordinals,
+ * so every user with the same outfit shares one cached image, and changing the catalog
+ * changes the ID instead of serving a stale image.
+ *
+ * The cache is bounded by total PNG bytes and evicts the least recently used avatar
+ * first. Concurrent requests for an outfit that isn't cached wait on a single render.
+ */
+public class AvatarCompositor {
+
+    /** Accessory types from the bottom layer up; other types are drawn on top in ordinal order. */
+    public static final List<String> LAYER_ORDER = List.of("pants", "shoes", "shirt", "dress", "hat");
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final ImageSource images;
+    private final AccessoryCatalog catalog;
+    private final AccessoryOrdinals ordinals;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Avatar> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Avatar>> rendering = new ConcurrentHashMap<>();
+    private final AtomicLong renders = new AtomicLong();
+    private long cachedBytes;
+
+    /**
+     * Constructor
+     * @param images loads pet and accessory layer images
+     * @param catalog accessory catalog
+     * @param ordinals catalog ordinals used by closets
+     * @param maxBytes most PNG bytes to keep cached
+     */
+    public AvatarCompositor(ImageSource images, AccessoryCatalog catalog, AccessoryOrdinals ordinals, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.images = images;
+        this.catalog = catalog;
+        this.ordinals = ordinals;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the avatar for a pet wearing what's worn in a closet, rendering it on a miss
+     * @param pet pet
+     * @param closet pet owner's closet
+     * @return avatar
+     * @throws IOException if a layer image can't be loaded or the result can't be encoded
+     */
+    public Avatar render(Pet pet, Closet closet) throws IOException {
+        return render(pet, closet.wornOrdinals());
+    }
+
+    /**
+     * Gets the avatar for a pet wearing accessories, rendering it on a miss
+     * @param pet pet
+     * @param wornOrdinals worn accessory ordinals, in ascending order
+     * @return avatar
+     * @throws IOException if a layer image can't be loaded or the result can't be encoded
+     */
+    public Avatar render(Pet pet, int[] wornOrdinals) throws IOException {
+        CatalogSnapshot snapshot = catalog.current();
+        String avatarID = avatarID(pet.getPetPNG(), snapshot.getVersion(), wornOrdinals);
+        Avatar avatar = cached(avatarID);
+        if (avatar != null) {
+            return avatar;
+        }
+        CompletableFuture<Avatar> result = new CompletableFuture<>();
+        CompletableFuture<Avatar> running = rendering.putIfAbsent(avatarID, result);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            avatar = new Avatar(avatarID, compose(pet, snapshot, wornOrdinals));
+            renders.incrementAndGet();
+            store(avatar);
+            result.complete(avatar);
+            return avatar;
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(avatarID, result);
+        }
+    }
+
+    /**
+     * Gets a cached avatar by ID, for serving the image a client was given the ID of
+     * @param avatarID avatar ID
+     * @return avatar, or null if it isn't cached
+     */
+    public Avatar cached(String avatarID) {
+        synchronized (cache) {
+            return cache.get(avatarID);
+        }
+    }
+
+    /**
+     * Gets number of cached avatars
+     * @return cached avatars
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Gets total size of cached avatars
+     * @return cached PNG bytes
+     */
+    public long cachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+
+    /**
+     * Gets number of avatars rendered, counting re-renders after eviction
+     * @return renders
+     */
+    public long renders() {
+        return renders.get();
+    }
+
+    /**
+     * Computes an avatar's content address
+     * @param petPNG pet image drawn under the accessories
+     * @param catalogVersion catalog version the accessory images come from
+     * @param wornOrdinals worn accessory ordinals, in ascending order
+     * @return hex ID
+     */
+    public static String avatarID(String petPNG, long catalogVersion, int[] wornOrdinals) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        digest.update(String.valueOf(petPNG).getBytes(StandardCharsets.UTF_8));
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (catalogVersion >>> shift));
+        }
+        for (int ordinal : wornOrdinals) {
+            digest.update((byte) (ordinal >>> 24));
+            digest.update((byte) (ordinal >>> 16));
+            digest.update((byte) (ordinal >>> 8));
+            digest.update((byte) ordinal);
+        }
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(32);
+        for (int i = 0; i < 16; i++) {
+            hex.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private byte[] compose(Pet pet, CatalogSnapshot snapshot, int[] wornOrdinals) throws IOException {
+        BufferedImage base = images.load(pet.getPetPNG());
+        int width = base.getWidth();
+        int height = base.getHeight();
+        BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            graphics.drawImage(base, 0, 0, null);
+            for (Accessory accessory : layers(snapshot, wornOrdinals)) {
+                graphics.drawImage(images.load(accessory.getAccessoryPNG()), 0, 0, width, height, null);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        if (!ImageIO.write(canvas, "png", png)) {
+            throw new IOException("No PNG encoder available");
+        }
+        return png.toByteArray();
+    }
+
+    /**
+     * Looks up worn accessories and orders them bottom layer first
+     */
+    private Accessory[] layers(CatalogSnapshot snapshot, int[] wornOrdinals) {
+        Accessory[] layers = new Accessory[wornOrdinals.length];
+        int count = 0;
+        for (int ordinal : wornOrdinals) {
+            Accessory accessory = snapshot.get(ordinals.accessoryIDOf(ordinal));
+            if (accessory != null && accessory.getAccessoryPNG() != null) {
+                layers[count++] = accessory;
+            }
+        }
+        layers = Arrays.copyOf(layers, count);
+        Arrays.sort(layers, (a, b) -> Integer.compare(layerRank(a), layerRank(b)));
+        return layers;
+    }
+
+    private static int layerRank(Accessory accessory) {
+        int rank = LAYER_ORDER.indexOf(accessory.getAccessoryType());
+        return rank < 0 ? LAYER_ORDER.size() : rank;
+    }
+
+    private void store(Avatar avatar) {
+        synchronized (cache) {
+            Avatar previous = cache.put(avatar.getAvatarID(), avatar);
+            if (previous != null) {
+                cachedBytes -= previous.getPng().length;
+            }
+            cachedBytes += avatar.getPng().length;
+            Iterator<Map.Entry<String, Avatar>> eldest = cache.entrySet().iterator();
+            while (cachedBytes > maxBytes && cache.size() > 1 && eldest.hasNext()) {
+                cachedBytes -= eldest.next().getValue().getPng().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static Avatar await(CompletableFuture<Avatar> running) throws IOException {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
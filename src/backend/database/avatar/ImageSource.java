@@ -0,0 +1,52 @@
+package avatar;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads the layer images an avatar is drawn from, by the file name stored in
+ * Pet.petPNG or Accessory.accessoryPNG.
+ */
+public interface ImageSource {
+
+    /**
+     * Loads an image
+     * @param name image file name
+     * @return image
+     * @throws IOException if the image can't be found or decoded
+     */
+    BufferedImage load(String name) throws IOException;
+
+    /**
+     * Creates a source that looks names up in asset directories, in order, and keeps each
+     * decoded image so it is only read once
+     * @param directories directories to search, for example src/assets/avatars and src/assets/clothing
+     * @return image source
+     */
+    static ImageSource fromDirectories(Path... directories) {
+        ConcurrentHashMap<String, BufferedImage> decoded = new ConcurrentHashMap<>();
+        return name -> {
+            BufferedImage image = decoded.get(name);
+            if (image != null) {
+                return image;
+            }
+            for (Path directory : directories) {
+                Path file = directory.resolve(name).normalize();
+                if (file.startsWith(directory.normalize()) && Files.isRegularFile(file)) {
+                    image = ImageIO.read(file.toFile());
+                    if (image == null) {
+                        throw new IOException("Not an image: " + file);
+                    }
+                    decoded.putIfAbsent(name, image);
+                    return image;
+                }
+            }
+            throw new IOException("Image not found: " + name);
+        };
+    }
+}
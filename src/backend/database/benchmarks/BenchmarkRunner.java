@@ -0,0 +1,24 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark in this package with the gc profiler attached, so each result
+ * also reports allocation rate (gc.alloc.rate.norm is bytes per operation).
+ * Pass a regex as the first argument to run only matching benchmarks.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
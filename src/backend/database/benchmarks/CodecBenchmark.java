@@ -0,0 +1,111 @@
+package benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codec.ModelCodec;
+import models.Skribble;
+import models.User;
+
+/**
+ * Compares the binary codec with the JSON records for journal histories and users.
+ * Setup checks that every entry survives a round trip and prints both payload sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({ "50", "2000" })
+    public int batchSize;
+
+    private List<Skribble> journal;
+    private User user;
+    private ByteBuffer buffer;
+    private ByteBuffer encodedJournal;
+
+    /**
+     * Builds the journal, checks the round trip and prints payload sizes
+     */
+    @Setup
+    public void setUp() {
+        journal = ModelFixtures.journal(1, batchSize);
+        user = ModelFixtures.user(1);
+        buffer = ByteBuffer.allocate(ModelCodec.sizeOfJournal(journal) + ModelCodec.sizeOf(user));
+
+        ModelCodec.encodeJournal(buffer, journal);
+        buffer.flip();
+        List<Skribble> decoded = ModelCodec.decodeJournal(buffer);
+        for (int i = 0; i < journal.size(); i++) {
+            if (!journal.get(i).toString().equals(decoded.get(i).toString())) {
+                throw new IllegalStateException("Round trip changed entry " + i + ": " + decoded.get(i));
+            }
+        }
+        buffer.rewind();
+        encodedJournal = ByteBuffer.allocate(buffer.remaining());
+        encodedJournal.put(buffer).flip();
+
+        buffer.clear();
+        ModelCodec.encode(buffer, user);
+        buffer.flip();
+        if (!user.toString().equals(ModelCodec.decodeUser(buffer).toString())) {
+            throw new IllegalStateException("Round trip changed user " + user);
+        }
+    }
+
+    @Benchmark
+    public int encodeJournalBinary() {
+        buffer.clear();
+        ModelCodec.encodeJournal(buffer, journal);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int encodeJournalJson() {
+        return ModelJson.journalBytes(journal).length;
+    }
+
+    @Benchmark
+    public List<Skribble> decodeJournalBinary() {
+        return ModelCodec.decodeJournal(encodedJournal.duplicate());
+    }
+
+    @Benchmark
+    public List<Skribble> roundTripJournalBinary() {
+        buffer.clear();
+        ModelCodec.encodeJournal(buffer, journal);
+        buffer.flip();
+        return ModelCodec.decodeJournal(buffer);
+    }
+
+    @Benchmark
+    public User roundTripUserBinary() {
+        buffer.clear();
+        ModelCodec.encode(buffer, user);
+        buffer.flip();
+        return ModelCodec.decodeUser(buffer);
+    }
+
+    @Benchmark
+    public int encodeUserJson() {
+        StringBuilder sb = new StringBuilder(512);
+        ModelJson.write(user, sb);
+        return sb.length();
+    }
+}
@@ -0,0 +1,114 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import models.Accessory;
+import models.Feedback;
+import models.Friend;
+import models.Pet;
+import models.Skribble;
+import models.User;
+
+/**
+ * Measures construction cost of each model in batches. Run with the gc profiler to
+ * see allocation rate per batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelConstructionBenchmark {
+
+    /** Number of objects built per invocation: one screen, one journal page, one full history. */
+    @Param({ "1", "50", "2000" })
+    public int batchSize;
+
+    private Random random;
+
+    /**
+     * Resets the random source so each trial builds the same data
+     */
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+    }
+
+    @Benchmark
+    public void users(Blackhole bh) {
+        for (int i = 0; i < batchSize; i++) {
+            bh.consume(ModelFixtures.user(i));
+        }
+    }
+
+    @Benchmark
+    public void skribbles(Blackhole bh) {
+        for (int i = 0; i < batchSize; i++) {
+            bh.consume(ModelFixtures.skribble(i, 1, random));
+        }
+    }
+
+    @Benchmark
+    public void friends(Blackhole bh) {
+        for (int i = 0; i < batchSize; i++) {
+            bh.consume(new Friend(i, i, i + 1, "accepted"));
+        }
+    }
+
+    @Benchmark
+    public void pets(Blackhole bh) {
+        for (int i = 0; i < batchSize; i++) {
+            bh.consume(new Pet(i, i, "Buddy", "bear", "bear.png"));
+        }
+    }
+
+    @Benchmark
+    public void accessories(Blackhole bh) {
+        for (int i = 0; i < batchSize; i++) {
+            bh.consume(new Accessory(i, "baseball cap", "hat", 4, 2, 30, "baseballcap"));
+        }
+    }
+
+    @Benchmark
+    public void feedback(Blackhole bh) {
+        for (int i = 0; i < batchSize; i++) {
+            bh.consume(ModelFixtures.feedback(i, random));
+        }
+    }
+
+    /**
+     * Only the constructor, with every argument already built
+     */
+    @Benchmark
+    public void usersConstructorOnly(Blackhole bh) {
+        for (int i = 0; i < batchSize; i++) {
+            bh.consume(new User(i, "kid", "password", "kid@example.com", "First", "Last", 9, "parent@example.com",
+                    "ABC123", 1, 3, 100, 50, "child", "key"));
+        }
+    }
+
+    /**
+     * Only the constructor, with every argument already built
+     */
+    @Benchmark
+    public void skribblesConstructorOnly(Blackhole bh) {
+        for (int i = 0; i < batchSize; i++) {
+            bh.consume(new Skribble(i, 1, null, "entry", "happy", "prompt"));
+        }
+    }
+}
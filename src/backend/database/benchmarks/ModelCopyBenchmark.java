@@ -0,0 +1,153 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import models.Accessory;
+import models.Feedback;
+import models.Friend;
+import models.Pet;
+import models.Skribble;
+import models.User;
+
+/**
+ * Measures copying fields from the models classes into the DTO classes, which is what
+ * every response built from a model has to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelCopyBenchmark {
+
+    @Param({ "1", "50", "2000" })
+    public int batchSize;
+
+    private List<User> users;
+    private List<Skribble> skribbles;
+    private List<Friend> friends;
+    private List<Pet> pets;
+    private List<Accessory> accessories;
+    private List<Feedback> feedback;
+
+    /**
+     * Builds the source models
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        users = new ArrayList<>(batchSize);
+        friends = new ArrayList<>(batchSize);
+        pets = new ArrayList<>(batchSize);
+        accessories = new ArrayList<>(batchSize);
+        feedback = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            users.add(ModelFixtures.user(i));
+            friends.add(ModelFixtures.friend(i));
+            pets.add(ModelFixtures.pet(i));
+            accessories.add(ModelFixtures.accessory(i));
+            feedback.add(ModelFixtures.feedback(i, random));
+        }
+        skribbles = ModelFixtures.journal(1, batchSize);
+    }
+
+    @Benchmark
+    public void users(Blackhole bh) {
+        for (User user : users) {
+            DTO.User dto = new DTO.User();
+            dto.setUserID(user.getUserID());
+            dto.setUsername(user.getUsername());
+            dto.setPassword(user.getPassword());
+            dto.setEmail(user.getEmail());
+            dto.setFirstName(user.getFirstName());
+            dto.setLastName(user.getLastName());
+            dto.setAge(user.getAge());
+            dto.setParentEmail(user.getParentEmail());
+            dto.setFriendCode(user.getFriendCode());
+            dto.setPetID(user.getPetID());
+            dto.setStreak(user.getStreak());
+            dto.setXp(user.getXp());
+            dto.setCoins(user.getCoins());
+            dto.setAccountType(user.getAccountType());
+            dto.setEncryptionKey(user.getEncryptionKey());
+            bh.consume(dto);
+        }
+    }
+
+    @Benchmark
+    public void skribbles(Blackhole bh) {
+        for (Skribble skribble : skribbles) {
+            DTO.Skribble dto = new DTO.Skribble();
+            dto.setEntryID(skribble.getEntryID());
+            dto.setUserID(skribble.getUserID());
+            dto.setDateCreated(skribble.getDateCreated());
+            dto.setentry(skribble.getentry());
+            dto.setMood(skribble.getMood());
+            dto.setaiPrompt(skribble.getaiPrompt());
+            bh.consume(dto);
+        }
+    }
+
+    @Benchmark
+    public void friends(Blackhole bh) {
+        for (Friend friend : friends) {
+            DTO.Friend dto = new DTO.Friend();
+            dto.setFriendID(friend.getFriendID());
+            dto.setUserID1(friend.getUserID1());
+            dto.setUserID2(friend.getUserID2());
+            dto.setFriendshipStatus(friend.getFriendshipStatus());
+            bh.consume(dto);
+        }
+    }
+
+    @Benchmark
+    public void pets(Blackhole bh) {
+        for (Pet pet : pets) {
+            DTO.Pet dto = new DTO.Pet();
+            dto.setPetID(pet.getPetID());
+            dto.setUserID(pet.getUserID());
+            dto.setPetName(pet.getPetName());
+            dto.setPetType(pet.getPetType());
+            dto.setPetPNG(pet.getPetPNG());
+            bh.consume(dto);
+        }
+    }
+
+    @Benchmark
+    public void accessories(Blackhole bh) {
+        for (Accessory accessory : accessories) {
+            bh.consume(new DTO.Accessory(accessory.getAccessoryID(), accessory.getAccessoryName(),
+                    accessory.getAccessoryType(), accessory.getUserID(), accessory.getPetID(),
+                    accessory.getAccessoryPrice(), accessory.getAccessoryPNG()));
+        }
+    }
+
+    @Benchmark
+    public void feedback(Blackhole bh) {
+        for (Feedback item : feedback) {
+            DTO.Feedback dto = new DTO.Feedback();
+            dto.setFeedbackID(item.getFeedbackID());
+            dto.setUserID(item.getUserID());
+            dto.setFeedbackText(item.getFeedbackText());
+            dto.setDateSubmitted(item.getDateSubmitted());
+            bh.consume(dto);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import models.Accessory;
+import models.Feedback;
+import models.Friend;
+import models.Pet;
+import models.Skribble;
+import models.User;
+
+/**
+ * Builds realistic model objects for the benchmarks. Values are seeded so every run
+ * measures the same data.
+ */
+public final class ModelFixtures {
+
+    private static final String[] MOODS = { "happy", "sad", "angry", "excited", "calm", "worried" };
+    private static final String[] ACCESSORY_TYPES = { "shirt", "pants", "hat", "shoes", "dress" };
+    private static final String[] PET_TYPES = { "bear", "dog", "panda", "penguin", "tiger" };
+    private static final String[] WORDS = { "today", "school", "friend", "played", "outside", "my", "dog",
+            "was", "really", "fun", "and", "then", "we", "ate", "pizza", "for", "lunch", "tired", "happy", "drew" };
+
+    private ModelFixtures() { }
+
+    /**
+     * Builds a user
+     * @param userID user ID
+     * @return user
+     */
+    public static User user(int userID) {
+        return new User(userID, "kid" + userID, "password" + userID, "kid" + userID + "@example.com", "First" + userID,
+                "Last" + userID, 6 + userID % 7, "parent" + userID + "@example.com", friendCode(userID), userID % 5,
+                userID % 30, userID * 10, userID * 5, "child", "key-" + userID);
+    }
+
+    /**
+     * Builds a journal entry with a few sentences of text
+     * @param entryID entry ID
+     * @param userID user ID
+     * @param random random source
+     * @return journal entry
+     */
+    public static Skribble skribble(int entryID, int userID, Random random) {
+        return new Skribble(entryID, userID, LocalDate.of(2024, 1, 1).plusDays(entryID % 365), text(random, 60),
+                MOODS[random.nextInt(MOODS.length)], "What made you smile today?");
+    }
+
+    /**
+     * Builds a friendship
+     * @param friendID friend ID
+     * @return friendship
+     */
+    public static Friend friend(int friendID) {
+        return new Friend(friendID, friendID, friendID + 1, "accepted");
+    }
+
+    /**
+     * Builds a pet
+     * @param petID pet ID
+     * @return pet
+     */
+    public static Pet pet(int petID) {
+        String type = PET_TYPES[petID % PET_TYPES.length];
+        return new Pet(petID, petID, "Buddy" + petID, type, type + ".png");
+    }
+
+    /**
+     * Builds an accessory
+     * @param accessoryID accessory ID
+     * @return accessory
+     */
+    public static Accessory accessory(int accessoryID) {
+        String type = ACCESSORY_TYPES[accessoryID % ACCESSORY_TYPES.length];
+        return new Accessory(accessoryID, "item" + accessoryID, type, accessoryID % 100, accessoryID % 5,
+                10 + accessoryID % 50, type + accessoryID + ".png");
+    }
+
+    /**
+     * Builds a feedback submission
+     * @param feedbackID feedback ID
+     * @param random random source
+     * @return feedback
+     */
+    public static Feedback feedback(int feedbackID, Random random) {
+        return new Feedback(LocalDate.of(2024, 11, 1).plusDays(feedbackID % 30), feedbackID, text(random, 25),
+                feedbackID % 100);
+    }
+
+    /**
+     * Builds a journal history for one user
+     * @param userID user ID
+     * @param size number of entries
+     * @return journal entries
+     */
+    public static List<Skribble> journal(int userID, int size) {
+        Random random = new Random(userID);
+        List<Skribble> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(skribble(i, userID, random));
+        }
+        return entries;
+    }
+
+    /**
+     * Builds a friend code; the app uses a random UUID
+     * @param userID user ID
+     * @return friend code
+     */
+    public static String friendCode(int userID) {
+        return new UUID(userID * 0x9E3779B97F4A7C15L, ~userID * 0xC2B2AE3D27D4EB4FL).toString();
+    }
+
+    private static String text(Random random, int words) {
+        StringBuilder sb = new StringBuilder(words * 6);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.append('.').toString();
+    }
+}
@@ -0,0 +1,162 @@
+package benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import models.Accessory;
+import models.Feedback;
+import models.Friend;
+import models.Pet;
+import models.Skribble;
+import models.User;
+
+/**
+ * Writes models as the loosely typed JSON records the app receives today. This is the
+ * baseline the serialization benchmarks compare against.
+ */
+public final class ModelJson {
+
+    private ModelJson() { }
+
+    /**
+     * Writes a user record
+     * @param user user
+     * @param sb output
+     */
+    public static void write(User user, StringBuilder sb) {
+        sb.append('{');
+        field(sb, "userID", user.getUserID()).append(',');
+        field(sb, "username", user.getUsername()).append(',');
+        field(sb, "password", user.getPassword()).append(',');
+        field(sb, "email", user.getEmail()).append(',');
+        field(sb, "firstName", user.getFirstName()).append(',');
+        field(sb, "lastName", user.getLastName()).append(',');
+        field(sb, "age", user.getAge()).append(',');
+        field(sb, "parentEmail", user.getParentEmail()).append(',');
+        field(sb, "friendCode", user.getFriendCode()).append(',');
+        field(sb, "petID", user.getPetID()).append(',');
+        field(sb, "streak", user.getStreak()).append(',');
+        field(sb, "xp", user.getXp()).append(',');
+        field(sb, "coins", user.getCoins()).append(',');
+        field(sb, "accountType", user.getAccountType()).append(',');
+        field(sb, "encryptionKey", user.getEncryptionKey());
+        sb.append('}');
+    }
+
+    /**
+     * Writes a journal entry record
+     * @param skribble journal entry
+     * @param sb output
+     */
+    public static void write(Skribble skribble, StringBuilder sb) {
+        sb.append('{');
+        field(sb, "entryID", skribble.getEntryID()).append(',');
+        field(sb, "userID", skribble.getUserID()).append(',');
+        field(sb, "dateCreated", String.valueOf(skribble.getDateCreated())).append(',');
+        field(sb, "entry", skribble.getentry()).append(',');
+        field(sb, "mood", skribble.getMood()).append(',');
+        field(sb, "aiPrompt", skribble.getaiPrompt());
+        sb.append('}');
+    }
+
+    /**
+     * Writes a friendship record
+     * @param friend friendship
+     * @param sb output
+     */
+    public static void write(Friend friend, StringBuilder sb) {
+        sb.append('{');
+        field(sb, "friendID", friend.getFriendID()).append(',');
+        field(sb, "userID1", friend.getUserID1()).append(',');
+        field(sb, "userID2", friend.getUserID2()).append(',');
+        field(sb, "friendshipStatus", friend.getFriendshipStatus());
+        sb.append('}');
+    }
+
+    /**
+     * Writes a pet record
+     * @param pet pet
+     * @param sb output
+     */
+    public static void write(Pet pet, StringBuilder sb) {
+        sb.append('{');
+        field(sb, "petID", pet.getPetID()).append(',');
+        field(sb, "userID", pet.getUserID()).append(',');
+        field(sb, "petName", pet.getPetName()).append(',');
+        field(sb, "petType", pet.getPetType()).append(',');
+        field(sb, "petPNG", pet.getPetPNG());
+        sb.append('}');
+    }
+
+    /**
+     * Writes an accessory record
+     * @param accessory accessory
+     * @param sb output
+     */
+    public static void write(Accessory accessory, StringBuilder sb) {
+        sb.append('{');
+        field(sb, "accessoryID", accessory.getAccessoryID()).append(',');
+        field(sb, "accessoryName", accessory.getAccessoryName()).append(',');
+        field(sb, "accessoryType", accessory.getAccessoryType()).append(',');
+        field(sb, "userID", accessory.getUserID()).append(',');
+        field(sb, "petID", accessory.getPetID()).append(',');
+        field(sb, "accessoryPrice", accessory.getAccessoryPrice()).append(',');
+        field(sb, "accessoryPNG", accessory.getAccessoryPNG());
+        sb.append('}');
+    }
+
+    /**
+     * Writes a feedback record
+     * @param feedback feedback
+     * @param sb output
+     */
+    public static void write(Feedback feedback, StringBuilder sb) {
+        sb.append('{');
+        field(sb, "feedbackID", feedback.getFeedbackID()).append(',');
+        field(sb, "userID", feedback.getUserID()).append(',');
+        field(sb, "feedbackText", feedback.getFeedbackText()).append(',');
+        field(sb, "dateSubmitted", String.valueOf(feedback.getDateSubmitted()));
+        sb.append('}');
+    }
+
+    /**
+     * Encodes a journal history as a UTF-8 JSON array
+     * @param entries journal entries
+     * @return encoded bytes
+     */
+    public static byte[] journalBytes(List<Skribble> entries) {
+        StringBuilder sb = new StringBuilder(entries.size() * 512);
+        sb.append('[');
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            write(entries.get(i), sb);
+        }
+        sb.append(']');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static StringBuilder field(StringBuilder sb, String name, int value) {
+        return sb.append('"').append(name).append("\":").append(value);
+    }
+
+    private static StringBuilder field(StringBuilder sb, String name, String value) {
+        sb.append('"').append(name).append("\":");
+        if (value == null) {
+            return sb.append("null");
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+}
@@ -0,0 +1,124 @@
+package benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.Accessory;
+import models.Feedback;
+import models.Friend;
+import models.Pet;
+import models.Skribble;
+import models.User;
+
+/**
+ * Measures serializing batches of models into the JSON records the app receives.
+ * Each benchmark returns the encoded size so the payload can't be optimized away.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelSerializationBenchmark {
+
+    @Param({ "1", "50", "2000" })
+    public int batchSize;
+
+    private List<User> users;
+    private List<Skribble> skribbles;
+    private List<Friend> friends;
+    private List<Pet> pets;
+    private List<Accessory> accessories;
+    private List<Feedback> feedback;
+
+    /**
+     * Builds the models to serialize
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        users = new ArrayList<>(batchSize);
+        friends = new ArrayList<>(batchSize);
+        pets = new ArrayList<>(batchSize);
+        accessories = new ArrayList<>(batchSize);
+        feedback = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            users.add(ModelFixtures.user(i));
+            friends.add(ModelFixtures.friend(i));
+            pets.add(ModelFixtures.pet(i));
+            accessories.add(ModelFixtures.accessory(i));
+            feedback.add(ModelFixtures.feedback(i, random));
+        }
+        skribbles = ModelFixtures.journal(1, batchSize);
+    }
+
+    @Benchmark
+    public int users() {
+        StringBuilder sb = new StringBuilder();
+        for (User user : users) {
+            ModelJson.write(user, sb);
+        }
+        return encode(sb);
+    }
+
+    @Benchmark
+    public int skribbles() {
+        return ModelJson.journalBytes(skribbles).length;
+    }
+
+    @Benchmark
+    public int friends() {
+        StringBuilder sb = new StringBuilder();
+        for (Friend friend : friends) {
+            ModelJson.write(friend, sb);
+        }
+        return encode(sb);
+    }
+
+    @Benchmark
+    public int pets() {
+        StringBuilder sb = new StringBuilder();
+        for (Pet pet : pets) {
+            ModelJson.write(pet, sb);
+        }
+        return encode(sb);
+    }
+
+    @Benchmark
+    public int accessories() {
+        StringBuilder sb = new StringBuilder();
+        for (Accessory accessory : accessories) {
+            ModelJson.write(accessory, sb);
+        }
+        return encode(sb);
+    }
+
+    @Benchmark
+    public int feedback() {
+        StringBuilder sb = new StringBuilder();
+        for (Feedback item : feedback) {
+            ModelJson.write(item, sb);
+        }
+        return encode(sb);
+    }
+
+    private static int encode(StringBuilder sb) {
+        return sb.toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import models.Accessory;
+import models.Feedback;
+import models.Friend;
+import models.Pet;
+import models.Skribble;
+import models.User;
+
+/**
+ * Measures toString on each model, which is what dto#main uses to print them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelToStringBenchmark {
+
+    @Param({ "1", "50", "2000" })
+    public int batchSize;
+
+    private List<User> users;
+    private List<Skribble> skribbles;
+    private List<Friend> friends;
+    private List<Pet> pets;
+    private List<Accessory> accessories;
+    private List<Feedback> feedback;
+
+    /**
+     * Builds the models to print
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        users = new ArrayList<>(batchSize);
+        friends = new ArrayList<>(batchSize);
+        pets = new ArrayList<>(batchSize);
+        accessories = new ArrayList<>(batchSize);
+        feedback = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            users.add(ModelFixtures.user(i));
+            friends.add(ModelFixtures.friend(i));
+            pets.add(ModelFixtures.pet(i));
+            accessories.add(ModelFixtures.accessory(i));
+            feedback.add(ModelFixtures.feedback(i, random));
+        }
+        skribbles = ModelFixtures.journal(1, batchSize);
+    }
+
+    @Benchmark
+    public void users(Blackhole bh) {
+        for (User user : users) {
+            bh.consume(user.toString());
+        }
+    }
+
+    @Benchmark
+    public void skribbles(Blackhole bh) {
+        for (Skribble skribble : skribbles) {
+            bh.consume(skribble.toString());
+        }
+    }
+
+    @Benchmark
+    public void friends(Blackhole bh) {
+        for (Friend friend : friends) {
+            bh.consume(friend.toString());
+        }
+    }
+
+    @Benchmark
+    public void pets(Blackhole bh) {
+        for (Pet pet : pets) {
+            bh.consume(pet.toString());
+        }
+    }
+
+    @Benchmark
+    public void accessories(Blackhole bh) {
+        for (Accessory accessory : accessories) {
+            bh.consume(accessory.toString());
+        }
+    }
+
+    @Benchmark
+    public void feedback(Blackhole bh) {
+        for (Feedback item : feedback) {
+            bh.consume(item.toString());
+        }
+    }
+}
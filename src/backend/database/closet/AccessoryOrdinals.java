@@ -0,0 +1,181 @@
+package closet;
+
+import java.util.Arrays;
+
+import models.Accessory;
+
+/**
+ * Maps catalog accessories to dense ordinals so closets can store owned and worn items
+ * as bitsets. Ordinals are handed out in 64-bit words that each belong to one
+ * accessoryType, so every bit in a word is the same category and clearing a category is
+ * a whole-word mask. An ordinal never changes once assigned, since closets store them.
+ *
+ * Accessory IDs are auto-increment ints, so lookups index an array directly. Registering
+ * works on a copy of the tables and publishes it with one volatile write, so lookups take
+ * no lock.
+ */
+public class AccessoryOrdinals {
+
+    /** Ordinal returned for an accessory that isn't registered. */
+    public static final int NONE = -1;
+
+    private volatile Tables tables = new Tables();
+
+    /**
+     * Registers catalog accessories, skipping ones that already have an ordinal
+     * @param accessories catalog rows
+     */
+    public synchronized void registerAll(Iterable<Accessory> accessories) {
+        Tables next = tables.copy();
+        for (Accessory accessory : accessories) {
+            next.assign(accessory);
+        }
+        tables = next;
+    }
+
+    /**
+     * Registers one catalog accessory
+     * @param accessory catalog row
+     * @return its ordinal
+     */
+    public synchronized int register(Accessory accessory) {
+        Tables next = tables.copy();
+        int ordinal = next.assign(accessory);
+        tables = next;
+        return ordinal;
+    }
+
+    /**
+     * Gets an accessory's ordinal
+     * @param accessoryID accessory ID
+     * @return ordinal, or NONE if not registered
+     */
+    public int ordinalOf(int accessoryID) {
+        int[] ordinalByID = tables.ordinalByID;
+        return accessoryID >= 0 && accessoryID < ordinalByID.length ? ordinalByID[accessoryID] : NONE;
+    }
+
+    /**
+     * Gets the accessory with an ordinal
+     * @param ordinal ordinal
+     * @return accessory ID, or NONE if the ordinal isn't assigned
+     */
+    public int accessoryIDOf(int ordinal) {
+        int[] idByOrdinal = tables.idByOrdinal;
+        return ordinal >= 0 && ordinal < idByOrdinal.length ? idByOrdinal[ordinal] : NONE;
+    }
+
+    /**
+     * Gets the category of a bitset word
+     * @param word word index, ordinal / 64
+     * @return category index, or NONE if the word isn't assigned
+     */
+    public int categoryOfWord(int word) {
+        int[] categoryByWord = tables.categoryByWord;
+        return word >= 0 && word < categoryByWord.length ? categoryByWord[word] : NONE;
+    }
+
+    /**
+     * Gets the bitset words that hold a category's ordinals. The array must not be modified.
+     * @param category category index
+     * @return word indexes
+     */
+    int[] wordsOfCategory(int category) {
+        return tables.wordsByCategory[category];
+    }
+
+    /**
+     * Gets a category's accessoryType
+     * @param category category index
+     * @return accessory type
+     */
+    public String categoryName(int category) {
+        return tables.categories[category];
+    }
+
+    /**
+     * Gets number of bitset words needed to hold every ordinal
+     * @return words
+     */
+    public int words() {
+        return tables.categoryByWord.length;
+    }
+
+    /**
+     * Lookup tables. Only modified by the writer before being published.
+     */
+    private static final class Tables {
+        int[] ordinalByID = new int[0];
+        int[] idByOrdinal = new int[0];
+        int[] categoryByWord = new int[0];
+        int[] usedInWord = new int[0];
+        String[] categories = new String[0];
+        int[][] wordsByCategory = new int[0][];
+        /** Word each category is currently filling. */
+        int[] openWord = new int[0];
+
+        Tables copy() {
+            Tables copy = new Tables();
+            copy.ordinalByID = ordinalByID.clone();
+            copy.idByOrdinal = idByOrdinal.clone();
+            copy.categoryByWord = categoryByWord.clone();
+            copy.usedInWord = usedInWord.clone();
+            copy.categories = categories.clone();
+            copy.wordsByCategory = wordsByCategory.clone();
+            copy.openWord = openWord.clone();
+            return copy;
+        }
+
+        int assign(Accessory accessory) {
+            int accessoryID = accessory.getAccessoryID();
+            if (accessoryID < 0) {
+                throw new IllegalArgumentException("Invalid accessory ID: " + accessoryID);
+            }
+            if (accessoryID < ordinalByID.length && ordinalByID[accessoryID] != NONE) {
+                return ordinalByID[accessoryID];
+            }
+            int category = category(accessory.getAccessoryType() == null ? "" : accessory.getAccessoryType());
+            int word = openWord[category];
+            if (word == NONE || usedInWord[word] == 64) {
+                word = categoryByWord.length;
+                categoryByWord = Arrays.copyOf(categoryByWord, word + 1);
+                categoryByWord[word] = category;
+                usedInWord = Arrays.copyOf(usedInWord, word + 1);
+                idByOrdinal = grow(idByOrdinal, (word + 1) * 64);
+                openWord[category] = word;
+                int[] words = wordsByCategory[category];
+                wordsByCategory[category] = Arrays.copyOf(words, words.length + 1);
+                wordsByCategory[category][words.length] = word;
+            }
+            int ordinal = word * 64 + usedInWord[word]++;
+            idByOrdinal[ordinal] = accessoryID;
+            if (accessoryID >= ordinalByID.length) {
+                ordinalByID = grow(ordinalByID, Math.max(accessoryID + 1, ordinalByID.length * 2));
+            }
+            ordinalByID[accessoryID] = ordinal;
+            return ordinal;
+        }
+
+        private int category(String type) {
+            for (int i = 0; i < categories.length; i++) {
+                if (categories[i].equals(type)) {
+                    return i;
+                }
+            }
+            categories = Arrays.copyOf(categories, categories.length + 1);
+            categories[categories.length - 1] = type;
+            openWord = Arrays.copyOf(openWord, categories.length);
+            openWord[categories.length - 1] = NONE;
+            wordsByCategory = Arrays.copyOf(wordsByCategory, categories.length);
+            wordsByCategory[categories.length - 1] = new int[0];
+            return categories.length - 1;
+        }
+
+        private static int[] grow(int[] array, int length) {
+            int oldLength = array.length;
+            int[] grown = Arrays.copyOf(array, length);
+            Arrays.fill(grown, oldLength, length, NONE);
+            return grown;
+        }
+    }
+}
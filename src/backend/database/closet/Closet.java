@@ -0,0 +1,201 @@
+package closet;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * One user's owned and worn accessories as bitsets over AccessoryOrdinals, replacing the
+ * {@code collect(i.item_id) AS ownedItems, collect(w.item_id) AS wornItems} traversal.
+ * Checking ownership is one bit test. Equipping clears the item's category with word
+ * masks, so a pet wears at most one item per accessoryType, and sets one bit. None of
+ * these allocate unless the catalog has grown since the closet was sized.
+ */
+public class Closet {
+
+    private final AccessoryOrdinals ordinals;
+    private long[] owned;
+    private long[] worn;
+
+    /**
+     * Constructor
+     * @param ordinals catalog ordinals
+     */
+    public Closet(AccessoryOrdinals ordinals) {
+        this.ordinals = ordinals;
+        this.owned = new long[ordinals.words()];
+        this.worn = new long[ordinals.words()];
+    }
+
+    /**
+     * Loads a closet from stored ownership and wear rows
+     * @param ordinals catalog ordinals
+     * @param ownedIDs accessory IDs the user owns
+     * @param wornIDs accessory IDs the user's pet wears; later ones win within a category
+     * @return closet
+     */
+    public static Closet load(AccessoryOrdinals ordinals, int[] ownedIDs, int[] wornIDs) {
+        Closet closet = new Closet(ordinals);
+        for (int accessoryID : ownedIDs) {
+            closet.own(accessoryID);
+        }
+        for (int accessoryID : wornIDs) {
+            closet.equip(accessoryID);
+        }
+        return closet;
+    }
+
+    /**
+     * Adds an accessory to the closet, for example after a purchase
+     * @param accessoryID accessory ID
+     * @return true if it wasn't owned already
+     */
+    public synchronized boolean own(int accessoryID) {
+        int ordinal = ordinal(accessoryID);
+        fit(ordinal);
+        long bit = 1L << ordinal;
+        boolean added = (owned[ordinal >>> 6] & bit) == 0;
+        owned[ordinal >>> 6] |= bit;
+        return added;
+    }
+
+    /**
+     * Checks if the user owns an accessory
+     * @param accessoryID accessory ID
+     * @return true if owned
+     */
+    public synchronized boolean owns(int accessoryID) {
+        return test(owned, ordinals.ordinalOf(accessoryID));
+    }
+
+    /**
+     * Puts an owned accessory on, taking off whatever was worn in the same category
+     * @param accessoryID accessory ID
+     * @return false if the user doesn't own it
+     */
+    public synchronized boolean equip(int accessoryID) {
+        int ordinal = ordinals.ordinalOf(accessoryID);
+        if (!test(owned, ordinal)) {
+            return false;
+        }
+        fit(ordinal);
+        for (int word : ordinals.wordsOfCategory(ordinals.categoryOfWord(ordinal >>> 6))) {
+            if (word < worn.length) {
+                worn[word] = 0;
+            }
+        }
+        worn[ordinal >>> 6] = 1L << ordinal;
+        return true;
+    }
+
+    /**
+     * Takes an accessory off
+     * @param accessoryID accessory ID
+     * @return true if it was worn
+     */
+    public synchronized boolean unequip(int accessoryID) {
+        int ordinal = ordinals.ordinalOf(accessoryID);
+        if (!test(worn, ordinal)) {
+            return false;
+        }
+        worn[ordinal >>> 6] &= ~(1L << ordinal);
+        return true;
+    }
+
+    /**
+     * Checks if an accessory is worn
+     * @param accessoryID accessory ID
+     * @return true if worn
+     */
+    public synchronized boolean isWorn(int accessoryID) {
+        return test(worn, ordinals.ordinalOf(accessoryID));
+    }
+
+    /**
+     * Copies the worn ordinals into an array, in ascending order
+     * @param out receives ordinals; one slot per category is always enough
+     * @return number of ordinals written
+     */
+    public synchronized int wornOrdinals(int[] out) {
+        int count = 0;
+        for (int word = 0; word < worn.length; word++) {
+            for (long bits = worn[word]; bits != 0; bits &= bits - 1) {
+                out[count++] = word * 64 + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the worn ordinals
+     * @return worn ordinals, in ascending order
+     */
+    public synchronized int[] wornOrdinals() {
+        int count = 0;
+        for (long bits : worn) {
+            count += Long.bitCount(bits);
+        }
+        int[] out = new int[count];
+        wornOrdinals(out);
+        return out;
+    }
+
+    /**
+     * Calls an action with each worn accessory ID
+     * @param action called with each worn accessory ID
+     */
+    public synchronized void forEachWorn(IntConsumer action) {
+        forEach(worn, action);
+    }
+
+    /**
+     * Calls an action with each owned accessory ID
+     * @param action called with each owned accessory ID
+     */
+    public synchronized void forEachOwned(IntConsumer action) {
+        forEach(owned, action);
+    }
+
+    /**
+     * Gets number of owned accessories
+     * @return owned count
+     */
+    public synchronized int ownedCount() {
+        int count = 0;
+        for (long bits : owned) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    private void forEach(long[] set, IntConsumer action) {
+        for (int word = 0; word < set.length; word++) {
+            for (long bits = set[word]; bits != 0; bits &= bits - 1) {
+                action.accept(ordinals.accessoryIDOf(word * 64 + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+    }
+
+    private int ordinal(int accessoryID) {
+        int ordinal = ordinals.ordinalOf(accessoryID);
+        if (ordinal == AccessoryOrdinals.NONE) {
+            throw new IllegalArgumentException("Accessory not in catalog: " + accessoryID);
+        }
+        return ordinal;
+    }
+
+    private static boolean test(long[] set, int ordinal) {
+        return ordinal >= 0 && (ordinal >>> 6) < set.length && (set[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Grows the bitsets to cover every word the catalog has, so loops over a category's
+     * words stay in range after more accessories are registered
+     */
+    private void fit(int ordinal) {
+        int words = Math.max(ordinals.words(), (ordinal >>> 6) + 1);
+        if (words > owned.length) {
+            owned = Arrays.copyOf(owned, words);
+            worn = Arrays.copyOf(worn, words);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package codec;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import models.Accessory;
+import models.Feedback;
+import models.Friend;
+import models.Pet;
+import models.Skribble;
+import models.User;
+
+/**
+ * Compact binary encoding for the model classes. Each model is written field by field
+ * in a fixed order with the primitives from Wire, so there is no reflection and no field
+ * names on the wire. The order is the constructor's, except Feedback, which puts its
+ * date last. Callers pass in a reusable buffer; sizeOf gives the exact number of bytes
+ * a model needs so the buffer can be sized up front.
+ */
+public final class ModelCodec {
+
+    private ModelCodec() { }
+
+    // ---------- User ----------
+
+    /**
+     * Encodes a user
+     * @param buffer output
+     * @param user user
+     */
+    public static void encode(ByteBuffer buffer, User user) {
+        Wire.writeInt(buffer, user.getUserID());
+        Wire.writeString(buffer, user.getUsername());
+        Wire.writeString(buffer, user.getPassword());
+        Wire.writeString(buffer, user.getEmail());
+        Wire.writeString(buffer, user.getFirstName());
+        Wire.writeString(buffer, user.getLastName());
+        Wire.writeInt(buffer, user.getAge());
+        Wire.writeString(buffer, user.getParentEmail());
+        Wire.writeString(buffer, user.getFriendCode());
+        Wire.writeInt(buffer, user.getPetID());
+        Wire.writeInt(buffer, user.getStreak());
+        Wire.writeInt(buffer, user.getXp());
+        Wire.writeInt(buffer, user.getCoins());
+        Wire.writeString(buffer, user.getAccountType());
+        Wire.writeString(buffer, user.getEncryptionKey());
+    }
+
+    /**
+     * Decodes a user
+     * @param buffer input
+     * @return user
+     */
+    public static User decodeUser(ByteBuffer buffer) {
+        return new User(Wire.readInt(buffer), Wire.readString(buffer), Wire.readString(buffer),
+                Wire.readString(buffer), Wire.readString(buffer), Wire.readString(buffer), Wire.readInt(buffer),
+                Wire.readString(buffer), Wire.readString(buffer), Wire.readInt(buffer), Wire.readInt(buffer),
+                Wire.readInt(buffer), Wire.readInt(buffer), Wire.readString(buffer), Wire.readString(buffer));
+    }
+
+    /**
+     * Gets the encoded size of a user
+     * @param user user
+     * @return size in bytes
+     */
+    public static int sizeOf(User user) {
+        return Wire.sizeOfInt(user.getUserID()) + Wire.sizeOfString(user.getUsername())
+                + Wire.sizeOfString(user.getPassword()) + Wire.sizeOfString(user.getEmail())
+                + Wire.sizeOfString(user.getFirstName()) + Wire.sizeOfString(user.getLastName())
+                + Wire.sizeOfInt(user.getAge()) + Wire.sizeOfString(user.getParentEmail())
+                + Wire.sizeOfString(user.getFriendCode()) + Wire.sizeOfInt(user.getPetID())
+                + Wire.sizeOfInt(user.getStreak()) + Wire.sizeOfInt(user.getXp()) + Wire.sizeOfInt(user.getCoins())
+                + Wire.sizeOfString(user.getAccountType()) + Wire.sizeOfString(user.getEncryptionKey());
+    }
+
+    // ---------- Skribble ----------
+
+    /**
+     * Encodes a journal entry
+     * @param buffer output
+     * @param skribble journal entry
+     */
+    public static void encode(ByteBuffer buffer, Skribble skribble) {
+        Wire.writeInt(buffer, skribble.getEntryID());
+        Wire.writeInt(buffer, skribble.getUserID());
+        Wire.writeDate(buffer, skribble.getDateCreated());
+        Wire.writeString(buffer, skribble.getentry());
+        Wire.writeString(buffer, skribble.getMood());
+        Wire.writeString(buffer, skribble.getaiPrompt());
+    }
+
+    /**
+     * Decodes a journal entry
+     * @param buffer input
+     * @return journal entry
+     */
+    public static Skribble decodeSkribble(ByteBuffer buffer) {
+        return new Skribble(Wire.readInt(buffer), Wire.readInt(buffer), Wire.readDate(buffer),
+                Wire.readString(buffer), Wire.readString(buffer), Wire.readString(buffer));
+    }
+
+    /**
+     * Decodes a journal entry's IDs, date and mood, skipping the text without decoding it
+     * @param buffer input
+     * @return journal entry with a null entry and AI prompt
+     */
+    public static Skribble decodeSkribbleMetadata(ByteBuffer buffer) {
+        int entryID = Wire.readInt(buffer);
+        int userID = Wire.readInt(buffer);
+        LocalDate date = Wire.readDate(buffer);
+        Wire.skipString(buffer);
+        return new Skribble(entryID, userID, date, null, Wire.readString(buffer), null);
+    }
+
+    /**
+     * Gets the encoded size of a journal entry
+     * @param skribble journal entry
+     * @return size in bytes
+     */
+    public static int sizeOf(Skribble skribble) {
+        return Wire.sizeOfInt(skribble.getEntryID()) + Wire.sizeOfInt(skribble.getUserID())
+                + Wire.sizeOfDate(skribble.getDateCreated()) + Wire.sizeOfString(skribble.getentry())
+                + Wire.sizeOfString(skribble.getMood()) + Wire.sizeOfString(skribble.getaiPrompt());
+    }
+
+    /**
+     * Encodes a journal history as a count followed by each entry
+     * @param buffer output
+     * @param entries journal entries
+     */
+    public static void encodeJournal(ByteBuffer buffer, List<Skribble> entries) {
+        Wire.writeVarInt(buffer, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            encode(buffer, entries.get(i));
+        }
+    }
+
+    /**
+     * Decodes a journal history written by encodeJournal
+     * @param buffer input
+     * @return journal entries
+     */
+    public static List<Skribble> decodeJournal(ByteBuffer buffer) {
+        int count = Wire.readVarInt(buffer);
+        List<Skribble> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(decodeSkribble(buffer));
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the encoded size of a journal history
+     * @param entries journal entries
+     * @return size in bytes
+     */
+    public static int sizeOfJournal(List<Skribble> entries) {
+        int size = Wire.sizeOfVarInt(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            size += sizeOf(entries.get(i));
+        }
+        return size;
+    }
+
+    // ---------- Accessory ----------
+
+    /**
+     * Encodes an accessory
+     * @param buffer output
+     * @param accessory accessory
+     */
+    public static void encode(ByteBuffer buffer, Accessory accessory) {
+        Wire.writeInt(buffer, accessory.getAccessoryID());
+        Wire.writeString(buffer, accessory.getAccessoryName());
+        Wire.writeString(buffer, accessory.getAccessoryType());
+        Wire.writeInt(buffer, accessory.getUserID());
+        Wire.writeInt(buffer, accessory.getPetID());
+        Wire.writeInt(buffer, accessory.getAccessoryPrice());
+        Wire.writeString(buffer, accessory.getAccessoryPNG());
+    }
+
+    /**
+     * Decodes an accessory
+     * @param buffer input
+     * @return accessory
+     */
+    public static Accessory decodeAccessory(ByteBuffer buffer) {
+        return new Accessory(Wire.readInt(buffer), Wire.readString(buffer), Wire.readString(buffer),
+                Wire.readInt(buffer), Wire.readInt(buffer), Wire.readInt(buffer), Wire.readString(buffer));
+    }
+
+    /**
+     * Gets the encoded size of an accessory
+     * @param accessory accessory
+     * @return size in bytes
+     */
+    public static int sizeOf(Accessory accessory) {
+        return Wire.sizeOfInt(accessory.getAccessoryID()) + Wire.sizeOfString(accessory.getAccessoryName())
+                + Wire.sizeOfString(accessory.getAccessoryType()) + Wire.sizeOfInt(accessory.getUserID())
+                + Wire.sizeOfInt(accessory.getPetID()) + Wire.sizeOfInt(accessory.getAccessoryPrice())
+                + Wire.sizeOfString(accessory.getAccessoryPNG());
+    }
+
+    // ---------- Pet ----------
+
+    /**
+     * Encodes a pet
+     * @param buffer output
+     * @param pet pet
+     */
+    public static void encode(ByteBuffer buffer, Pet pet) {
+        Wire.writeInt(buffer, pet.getPetID());
+        Wire.writeInt(buffer, pet.getUserID());
+        Wire.writeString(buffer, pet.getPetName());
+        Wire.writeString(buffer, pet.getPetType());
+        Wire.writeString(buffer, pet.getPetPNG());
+    }
+
+    /**
+     * Decodes a pet
+     * @param buffer input
+     * @return pet
+     */
+    public static Pet decodePet(ByteBuffer buffer) {
+        return new Pet(Wire.readInt(buffer), Wire.readInt(buffer), Wire.readString(buffer), Wire.readString(buffer),
+                Wire.readString(buffer));
+    }
+
+    /**
+     * Gets the encoded size of a pet
+     * @param pet pet
+     * @return size in bytes
+     */
+    public static int sizeOf(Pet pet) {
+        return Wire.sizeOfInt(pet.getPetID()) + Wire.sizeOfInt(pet.getUserID()) + Wire.sizeOfString(pet.getPetName())
+                + Wire.sizeOfString(pet.getPetType()) + Wire.sizeOfString(pet.getPetPNG());
+    }
+
+    // ---------- Friend ----------
+
+    /**
+     * Encodes a friendship
+     * @param buffer output
+     * @param friend friendship
+     */
+    public static void encode(ByteBuffer buffer, Friend friend) {
+        Wire.writeInt(buffer, friend.getFriendID());
+        Wire.writeInt(buffer, friend.getUserID1());
+        Wire.writeInt(buffer, friend.getUserID2());
+        Wire.writeString(buffer, friend.getFriendshipStatus());
+    }
+
+    /**
+     * Decodes a friendship
+     * @param buffer input
+     * @return friendship
+     */
+    public static Friend decodeFriend(ByteBuffer buffer) {
+        return new Friend(Wire.readInt(buffer), Wire.readInt(buffer), Wire.readInt(buffer), Wire.readString(buffer));
+    }
+
+    /**
+     * Gets the encoded size of a friendship
+     * @param friend friendship
+     * @return size in bytes
+     */
+    public static int sizeOf(Friend friend) {
+        return Wire.sizeOfInt(friend.getFriendID()) + Wire.sizeOfInt(friend.getUserID1())
+                + Wire.sizeOfInt(friend.getUserID2()) + Wire.sizeOfString(friend.getFriendshipStatus());
+    }
+
+    // ---------- Feedback ----------
+
+    /**
+     * Encodes a feedback submission
+     * @param buffer output
+     * @param feedback feedback
+     */
+    public static void encode(ByteBuffer buffer, Feedback feedback) {
+        Wire.writeInt(buffer, feedback.getFeedbackID());
+        Wire.writeInt(buffer, feedback.getUserID());
+        Wire.writeString(buffer, feedback.getFeedbackText());
+        Wire.writeDate(buffer, feedback.getDateSubmitted());
+    }
+
+    /**
+     * Decodes a feedback submission
+     * @param buffer input
+     * @return feedback
+     */
+    public static Feedback decodeFeedback(ByteBuffer buffer) {
+        int feedbackID = Wire.readInt(buffer);
+        int userID = Wire.readInt(buffer);
+        String feedbackText = Wire.readString(buffer);
+        return new Feedback(Wire.readDate(buffer), feedbackID, feedbackText, userID);
+    }
+
+    /**
+     * Gets the encoded size of a feedback submission
+     * @param feedback feedback
+     * @return size in bytes
+     */
+    public static int sizeOf(Feedback feedback) {
+        return Wire.sizeOfInt(feedback.getFeedbackID()) + Wire.sizeOfInt(feedback.getUserID())
+                + Wire.sizeOfString(feedback.getFeedbackText()) + Wire.sizeOfDate(feedback.getDateSubmitted());
+    }
+}
@@ -0,0 +1,240 @@
+package codec;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Primitive encodings shared by the model codecs. Ints are zigzag varints, dates are
+ * epoch days and strings are length-prefixed UTF-8. Writers encode straight into the
+ * buffer without allocating. Null strings and dates are written as a zero prefix, so a
+ * present value is always stored as its length or epoch day plus one.
+ */
+public final class Wire {
+
+    private Wire() { }
+
+    /**
+     * Writes an int as a zigzag varint
+     * @param buffer output
+     * @param value value
+     */
+    public static void writeInt(ByteBuffer buffer, int value) {
+        writeVarInt(buffer, zigzag(value));
+    }
+
+    /**
+     * Reads a zigzag varint int
+     * @param buffer input
+     * @return value
+     */
+    public static int readInt(ByteBuffer buffer) {
+        int raw = readVarInt(buffer);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * Gets the encoded size of an int
+     * @param value value
+     * @return size in bytes
+     */
+    public static int sizeOfInt(int value) {
+        return sizeOfVarInt(zigzag(value));
+    }
+
+    /**
+     * Writes an unsigned varint
+     * @param buffer output
+     * @param value value, treated as unsigned
+     */
+    public static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint
+     * @param buffer input
+     * @return value
+     */
+    public static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Gets the encoded size of an unsigned varint
+     * @param value value, treated as unsigned
+     * @return size in bytes
+     */
+    public static int sizeOfVarInt(int value) {
+        if ((value & ~0x7F) == 0) return 1;
+        if ((value & ~0x3FFF) == 0) return 2;
+        if ((value & ~0x1FFFFF) == 0) return 3;
+        if ((value & ~0xFFFFFFF) == 0) return 4;
+        return 5;
+    }
+
+    /**
+     * Writes a date as its epoch day
+     * @param buffer output
+     * @param date date, may be null
+     */
+    public static void writeDate(ByteBuffer buffer, LocalDate date) {
+        writeVarInt(buffer, date == null ? 0 : zigzag(Math.toIntExact(date.toEpochDay())) + 1);
+    }
+
+    /**
+     * Reads a date written by writeDate
+     * @param buffer input
+     * @return date, or null
+     */
+    public static LocalDate readDate(ByteBuffer buffer) {
+        int raw = readVarInt(buffer);
+        if (raw == 0) {
+            return null;
+        }
+        raw -= 1;
+        return LocalDate.ofEpochDay((raw >>> 1) ^ -(raw & 1));
+    }
+
+    /**
+     * Gets the encoded size of a date
+     * @param date date, may be null
+     * @return size in bytes
+     */
+    public static int sizeOfDate(LocalDate date) {
+        return date == null ? 1 : sizeOfVarInt(zigzag(Math.toIntExact(date.toEpochDay())) + 1);
+    }
+
+    /**
+     * Writes a string as length-prefixed UTF-8, encoding chars directly into the buffer
+     * @param buffer output
+     * @param value string, may be null
+     */
+    public static void writeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        writeVarInt(buffer, utf8Length(value) + 1);
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                if (Character.isSurrogate(c)) {
+                    c = '\uFFFD';
+                }
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Reads a string written by writeString
+     * @param buffer input
+     * @return string, or null
+     */
+    public static String readString(ByteBuffer buffer) {
+        int length = readVarInt(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Moves past a string written by writeString without decoding it
+     * @param buffer input
+     */
+    public static void skipString(ByteBuffer buffer) {
+        int length = readVarInt(buffer) - 1;
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (length > 0) {
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    /**
+     * Gets the encoded size of a string
+     * @param value string, may be null
+     * @return size in bytes
+     */
+    public static int sizeOfString(String value) {
+        if (value == null) {
+            return 1;
+        }
+        int length = utf8Length(value);
+        return sizeOfVarInt(length + 1) + length;
+    }
+
+    /**
+     * Counts the UTF-8 bytes of a string without encoding it. Unpaired surrogates count
+     * as the three bytes of the U+FFFD writeString puts in their place.
+     * @param value string
+     * @return UTF-8 length
+     */
+    public static int utf8Length(String value) {
+        int length = value.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+}
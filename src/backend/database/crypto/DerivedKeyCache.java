@@ -0,0 +1,171 @@
+package crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Derives AES keys from User.encryptionKey with PBKDF2 and keeps the most recently used
+ * ones, so opening a journal derives a user's key once rather than once per entry. The
+ * cache is keyed by user ID and the key material itself, so a rotated key never maps to
+ * the old derived key. Concurrent misses for the same key wait on a single derivation.
+ */
+public class DerivedKeyCache {
+
+    /** PBKDF2 iterations, matching the app's Encryption.generateKeyFromPassword. */
+    public static final int ITERATIONS = 100_000;
+
+    private static final String SALT_PREFIX = "skribble-journal:";
+
+    private final int maxKeys;
+    private final LinkedHashMap<KeyRef, SecretKey> keys;
+    private final ConcurrentHashMap<KeyRef, CompletableFuture<SecretKey>> deriving = new ConcurrentHashMap<>();
+    private final AtomicLong derivations = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param maxKeys most derived keys to keep; the least recently used is evicted first
+     */
+    public DerivedKeyCache(int maxKeys) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys must be positive: " + maxKeys);
+        }
+        this.maxKeys = maxKeys;
+        this.keys = new LinkedHashMap<KeyRef, SecretKey>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<KeyRef, SecretKey> eldest) {
+                return size() > DerivedKeyCache.this.maxKeys;
+            }
+        };
+    }
+
+    /**
+     * Gets a user's journal key, deriving it on a miss
+     * @param userID user ID, used in the salt
+     * @param encryptionKey the user's key material
+     * @return AES-256 key
+     * @throws GeneralSecurityException if PBKDF2 isn't available
+     */
+    public SecretKey get(int userID, String encryptionKey) throws GeneralSecurityException {
+        if (encryptionKey == null || encryptionKey.isEmpty()) {
+            throw new IllegalArgumentException("User " + userID + " has no encryption key");
+        }
+        KeyRef ref = new KeyRef(userID, encryptionKey);
+        SecretKey key;
+        synchronized (keys) {
+            key = keys.get(ref);
+        }
+        if (key != null) {
+            return key;
+        }
+        CompletableFuture<SecretKey> result = new CompletableFuture<>();
+        CompletableFuture<SecretKey> running = deriving.putIfAbsent(ref, result);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            key = derive(userID, encryptionKey);
+            derivations.incrementAndGet();
+            synchronized (keys) {
+                keys.put(ref, key);
+            }
+            result.complete(key);
+            return key;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            deriving.remove(ref, result);
+        }
+    }
+
+    /**
+     * Drops every cached key for a user, for example after rotating their key
+     * @param userID user ID
+     */
+    public void invalidate(int userID) {
+        synchronized (keys) {
+            keys.keySet().removeIf(ref -> ref.userID == userID);
+        }
+    }
+
+    /**
+     * Gets number of cached keys
+     * @return cached keys
+     */
+    public int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    /**
+     * Gets number of PBKDF2 derivations run, counting re-derivations after eviction
+     * @return derivations
+     */
+    public long derivations() {
+        return derivations.get();
+    }
+
+    private static SecretKey derive(int userID, String encryptionKey) throws GeneralSecurityException {
+        char[] password = encryptionKey.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(password, (SALT_PREFIX + userID).getBytes(StandardCharsets.UTF_8),
+                ITERATIONS, 256);
+        try {
+            byte[] raw = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(raw, "AES");
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    private static SecretKey await(CompletableFuture<SecretKey> running) throws GeneralSecurityException {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cache key: a user and the key material the derived key came from.
+     */
+    private static final class KeyRef {
+        final int userID;
+        final String encryptionKey;
+
+        KeyRef(int userID, String encryptionKey) {
+            this.userID = userID;
+            this.encryptionKey = encryptionKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof KeyRef)) return false;
+            KeyRef other = (KeyRef) o;
+            return userID == other.userID && encryptionKey.equals(other.encryptionKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userID, encryptionKey);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import models.Skribble;
+import models.User;
+
+/**
+ * Encrypts journal entry text (Skribble.entry) at rest with AES-GCM, using a key derived
+ * from User.encryptionKey. Each thread keeps its own Cipher, since a Cipher isn't thread
+ * safe and looking one up per call is slow, and derived keys come from a DerivedKeyCache,
+ * so a page of entries costs one key lookup.
+ *
+ * Stored text is "gcm1:" followed by base64 of [12 byte IV][ciphertext and tag]. The user
+ * and entry IDs are authenticated as associated data, so ciphertext copied onto another
+ * entry fails to decrypt.
+ *
+ * Entry text comes from the user, who can type the prefix too, so the prefix never
+ * decides whether to encrypt: encryptEntry always does. Whether stored text may be
+ * plaintext is set when the service is built instead. While entries saved before
+ * encryption are still being migrated, text without the prefix is passed through;
+ * otherwise every stored entry must decrypt.
+ */
+public class EncryptionService {
+
+    /** Prefix marking encrypted entry text. */
+    public static final String PREFIX = "gcm1:";
+
+    /** Pages smaller than this are decrypted on the calling thread. */
+    static final int PARALLEL_THRESHOLD = 32;
+
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final DerivedKeyCache keys;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final boolean legacyPlaintext;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Constructor for a journal whose entries are all encrypted
+     * @param keys derived key cache
+     * @param executor pool that bulk decrypts run on, usually sized to the number of cores
+     * @param parallelism number of chunks a large page is split into
+     */
+    public EncryptionService(DerivedKeyCache keys, ExecutorService executor, int parallelism) {
+        this(keys, executor, parallelism, false);
+    }
+
+    /**
+     * Constructor
+     * @param keys derived key cache
+     * @param executor pool that bulk decrypts run on, usually sized to the number of cores
+     * @param parallelism number of chunks a large page is split into
+     * @param legacyPlaintext true while entries saved before encryption are still stored
+     *                        as plaintext, so stored text without the prefix is passed through
+     */
+    public EncryptionService(DerivedKeyCache keys, ExecutorService executor, int parallelism,
+            boolean legacyPlaintext) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.keys = keys;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.legacyPlaintext = legacyPlaintext;
+    }
+
+    /**
+     * Encrypts an entry's text
+     * @param author user who wrote the entry
+     * @param entryID entry ID
+     * @param plaintext entry text
+     * @return stored form of the text
+     * @throws GeneralSecurityException if encryption fails
+     */
+    public String encrypt(User author, int entryID, String plaintext) throws GeneralSecurityException {
+        return encrypt(keys.get(author.getUserID(), author.getEncryptionKey()), author.getUserID(), entryID, plaintext);
+    }
+
+    /**
+     * Decrypts an entry's text
+     * @param author user who wrote the entry
+     * @param entryID entry ID
+     * @param stored stored form of the text
+     * @return entry text
+     * @throws GeneralSecurityException if the text was tampered with or the key is wrong
+     */
+    public String decrypt(User author, int entryID, String stored) throws GeneralSecurityException {
+        if (isLegacyPlaintext(stored)) {
+            return stored;
+        }
+        return decrypt(keys.get(author.getUserID(), author.getEncryptionKey()), author.getUserID(), entryID, stored);
+    }
+
+    /**
+     * Encrypts an entry in place before it is saved. The text is always encrypted, even if
+     * it already looks like stored text, so call this once per save with the user's text.
+     * @param author user who wrote the entry
+     * @param skribble journal entry; its entry text is replaced
+     * @throws GeneralSecurityException if encryption fails
+     */
+    public void encryptEntry(User author, Skribble skribble) throws GeneralSecurityException {
+        if (skribble.getentry() != null) {
+            skribble.setentry(encrypt(author, skribble.getEntryID(), skribble.getentry()));
+        }
+    }
+
+    /**
+     * Decrypts a page of one user's entries. The key is looked up once, and large pages
+     * are split into chunks decrypted in parallel.
+     * @param author user who wrote the entries
+     * @param page stored entries; they are not modified
+     * @return copies of the entries with plain text
+     * @throws GeneralSecurityException if any entry fails to decrypt
+     */
+    public List<Skribble> decryptPage(User author, List<Skribble> page) throws GeneralSecurityException {
+        SecretKey key = keys.get(author.getUserID(), author.getEncryptionKey());
+        Skribble[] out = new Skribble[page.size()];
+        if (page.size() < PARALLEL_THRESHOLD || parallelism == 1) {
+            decryptRange(key, author.getUserID(), page, out, 0, page.size());
+            return List.of(out);
+        }
+        int chunk = (page.size() + parallelism - 1) / parallelism;
+        List<Future<?>> chunks = new ArrayList<>(parallelism);
+        for (int from = chunk; from < page.size(); from += chunk) {
+            int start = from;
+            int end = Math.min(page.size(), from + chunk);
+            chunks.add(executor.submit(() -> {
+                decryptRange(key, author.getUserID(), page, out, start, end);
+                return null;
+            }));
+        }
+        decryptRange(key, author.getUserID(), page, out, 0, Math.min(chunk, page.size()));
+        for (Future<?> pending : chunks) {
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while decrypting", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof GeneralSecurityException) {
+                    throw (GeneralSecurityException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return List.of(out);
+    }
+
+    /**
+     * Checks if stored text has the encryption prefix. Only meaningful for stored text,
+     * never for text a user is about to save.
+     * @param stored stored entry text
+     * @return true if it has the encryption prefix
+     */
+    public static boolean isEncrypted(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * Checks if stored text is an entry saved before encryption, which is only possible
+     * while this service accepts legacy plaintext
+     * @param stored stored entry text
+     * @return true if the text should be used as it is
+     */
+    boolean isLegacyPlaintext(String stored) {
+        return stored == null || legacyPlaintext && !isEncrypted(stored);
+    }
+
+    /**
+     * Encrypts with a key that was already looked up
+     * @param key AES key
+     * @param userID author's user ID
+     * @param entryID entry ID
+     * @param plaintext entry text
+     * @return stored form of the text
+     * @throws GeneralSecurityException if encryption fails
+     */
+    String encrypt(SecretKey key, int userID, int entryID, String plaintext) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(associatedData(userID, entryID));
+        byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
+        byte[] output = new byte[IV_BYTES + cipher.getOutputSize(input.length)];
+        System.arraycopy(iv, 0, output, 0, IV_BYTES);
+        cipher.doFinal(input, 0, input.length, output, IV_BYTES);
+        return PREFIX + Base64.getEncoder().encodeToString(output);
+    }
+
+    /**
+     * Decrypts with a key that was already looked up
+     * @param key AES key
+     * @param userID author's user ID
+     * @param entryID entry ID
+     * @param stored stored form of the text, with the prefix
+     * @return entry text
+     * @throws GeneralSecurityException if the text was tampered with or the key is wrong
+     */
+    String decrypt(SecretKey key, int userID, int entryID, String stored) throws GeneralSecurityException {
+        if (!isEncrypted(stored)) {
+            throw new GeneralSecurityException("Entry " + entryID + " is not encrypted");
+        }
+        byte[] input;
+        try {
+            input = Base64.getDecoder().decode(stored.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Malformed ciphertext for entry " + entryID, e);
+        }
+        if (input.length < IV_BYTES + TAG_BITS / 8) {
+            throw new GeneralSecurityException("Truncated ciphertext for entry " + entryID);
+        }
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, input, 0, IV_BYTES));
+        cipher.updateAAD(associatedData(userID, entryID));
+        byte[] plain = cipher.doFinal(input, IV_BYTES, input.length - IV_BYTES);
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    private void decryptRange(SecretKey key, int userID, List<Skribble> page, Skribble[] out, int from, int to)
+            throws GeneralSecurityException {
+        for (int i = from; i < to; i++) {
+            Skribble stored = page.get(i);
+            String entry = isLegacyPlaintext(stored.getentry())
+                    ? stored.getentry()
+                    : decrypt(key, userID, stored.getEntryID(), stored.getentry());
+            out[i] = new Skribble(stored.getEntryID(), stored.getUserID(), stored.getDateCreated(), entry,
+                    stored.getMood(), stored.getaiPrompt());
+        }
+    }
+
+    private static byte[] associatedData(int userID, int entryID) {
+        return ByteBuffer.allocate(8).putInt(userID).putInt(entryID).array();
+    }
+}
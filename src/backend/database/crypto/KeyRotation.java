@@ -0,0 +1,46 @@
+package crypto;
+
+/**
+ * One user's key change for KeyRotationJob.
+ */
+public final class KeyRotation {
+
+    private final int userID;
+    private final String oldKey;
+    private final String newKey;
+
+    /**
+     * Constructor
+     * @param userID user ID
+     * @param oldKey the user's current encryptionKey
+     * @param newKey the encryptionKey entries are moved to
+     */
+    public KeyRotation(int userID, String oldKey, String newKey) {
+        this.userID = userID;
+        this.oldKey = oldKey;
+        this.newKey = newKey;
+    }
+
+    /**
+     * Gets user ID
+     * @return userID
+     */
+    public int getUserID() { return userID; }
+
+    /**
+     * Gets the key entries are encrypted with now
+     * @return old key
+     */
+    public String getOldKey() { return oldKey; }
+
+    /**
+     * Gets the key entries are moved to
+     * @return new key
+     */
+    public String getNewKey() { return newKey; }
+
+    @Override
+    public String toString() {
+        return "KeyRotation{userID=" + userID + '}';
+    }
+}
@@ -0,0 +1,383 @@
+package crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+
+import journal.JournalPage;
+import journal.JournalStore;
+import models.Skribble;
+
+/**
+ * Re-encrypts users' journal entries after their encryptionKey is rotated. Each user's
+ * entries are read from the journal index in chunks of CHUNK, and every chunk is split
+ * across a ForkJoinPool to decrypt with the old key and encrypt with the new one, then
+ * written back to the store.
+ *
+ * Re-encrypting is idempotent: an entry that already opens with the new key is left
+ * alone, so a chunk cut short by a crash is simply redone. After every chunk the job
+ * forces the store and writes a checkpoint of the user and journal cursor it reached,
+ * and a rerun with the same rotations resumes from there. An entry the user edits while
+ * the job runs is re-read and re-encrypted rather than overwritten, and once a user's
+ * chunks are done their entries are checked again, so one saved with the old key after
+ * its chunk had passed is caught before the new key is handed to onUserRotated.
+ *
+ * To protect live traffic the job can be capped at a number of entries per second, and
+ * given a backpressure signal it waits on between chunks. Use a pool with fewer threads
+ * than cores so some are always left for requests.
+ */
+public class KeyRotationJob {
+
+    /** Entries read and re-encrypted per chunk. */
+    public static final int CHUNK = 256;
+
+    /** Entries below which a fork/join task stops splitting. */
+    static final int LEAF = 16;
+
+    private static final long BACKOFF_MILLIS = 50;
+    private static final double SMOOTHING = 0.2;
+
+    private final JournalStore store;
+    private final EncryptionService crypto;
+    private final DerivedKeyCache keys;
+    private final ForkJoinPool pool;
+    private final Path checkpoint;
+    private volatile int maxEntriesPerSecond;
+    private volatile BooleanSupplier overloaded = () -> false;
+    private volatile boolean cancelled;
+
+    private final AtomicInteger usersDone = new AtomicInteger();
+    private final AtomicLong entriesDone = new AtomicLong();
+    private volatile int usersTotal;
+    private volatile long entriesTotal;
+    private volatile double entriesPerSecond;
+
+    /**
+     * Constructor
+     * @param store journal store holding the entries
+     * @param crypto encryption service
+     * @param keys derived key cache used by the service
+     * @param pool pool that re-encryption runs on
+     * @param checkpoint file to record progress in
+     */
+    public KeyRotationJob(JournalStore store, EncryptionService crypto, DerivedKeyCache keys, ForkJoinPool pool,
+            Path checkpoint) {
+        this.store = store;
+        this.crypto = crypto;
+        this.keys = keys;
+        this.pool = pool;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Caps throughput; can be changed while the job runs
+     * @param maxEntriesPerSecond most entries to re-encrypt per second, or 0 for no cap
+     */
+    public void setRateLimit(int maxEntriesPerSecond) {
+        this.maxEntriesPerSecond = Math.max(0, maxEntriesPerSecond);
+    }
+
+    /**
+     * Sets a signal the job waits on between chunks, for example request latency being
+     * over budget
+     * @param overloaded returns true while the job should pause
+     */
+    public void setBackpressure(BooleanSupplier overloaded) {
+        this.overloaded = overloaded;
+    }
+
+    /**
+     * Stops the job after the current chunk. The checkpoint is kept, so it can be resumed.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Gets current progress
+     * @return progress snapshot
+     */
+    public RotationProgress progress() {
+        return new RotationProgress(usersDone.get(), usersTotal, entriesDone.get(), entriesTotal, entriesPerSecond);
+    }
+
+    /**
+     * Runs the job, resuming from the checkpoint if there is one
+     * @param rotations key changes, in the same order on every run
+     * @param onUserRotated called with each user ID once all their entries use the new
+     *                      key, so the new encryptionKey can be saved on the user. An entry
+     *                      saved with the old key between the final check and this call is
+     *                      not rotated, so writers must already encrypt with the new key by
+     *                      the time the job reaches the user.
+     * @return true if every user was rotated, false if cancelled
+     * @throws IOException if the store or checkpoint can't be written
+     * @throws GeneralSecurityException if an entry opens with neither key
+     */
+    public boolean run(List<KeyRotation> rotations, IntConsumer onUserRotated)
+            throws IOException, GeneralSecurityException {
+        cancelled = false;
+        int startUser = 0;
+        String cursor = null;
+        if (Files.exists(checkpoint)) {
+            String[] saved = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim().split(" ");
+            startUser = Integer.parseInt(saved[0]);
+            if (startUser < rotations.size() && rotations.get(startUser).getUserID() != Integer.parseInt(saved[1])) {
+                throw new IllegalStateException("Checkpoint " + checkpoint + " is for a different rotation list");
+            }
+            cursor = saved[2].equals("-") ? null : saved[2];
+        }
+        long total = 0;
+        long skipped = 0;
+        for (int i = 0; i < rotations.size(); i++) {
+            int count = store.count(rotations.get(i).getUserID());
+            total += count;
+            skipped += i < startUser ? count : 0;
+        }
+        if (cursor != null && startUser < rotations.size()) {
+            int userID = rotations.get(startUser).getUserID();
+            skipped += Math.max(0, store.count(userID) - remaining(userID, cursor));
+        }
+        entriesTotal = total;
+        usersTotal = rotations.size();
+        usersDone.set(startUser);
+        entriesDone.set(skipped);
+        for (int i = startUser; i < rotations.size(); i++) {
+            KeyRotation rotation = rotations.get(i);
+            SecretKey oldKey = keys.get(rotation.getUserID(), rotation.getOldKey());
+            SecretKey newKey = keys.get(rotation.getUserID(), rotation.getNewKey());
+            if (!rotateUser(i, rotations, cursor, oldKey, newKey, true)
+                    || !rotateUser(i, rotations, null, oldKey, newKey, false)) {
+                return false;
+            }
+            cursor = null;
+            onUserRotated.accept(rotation.getUserID());
+            saveCheckpoint(i + 1, rotations, null);
+            usersDone.incrementAndGet();
+        }
+        Files.deleteIfExists(checkpoint);
+        return true;
+    }
+
+    /**
+     * Re-encrypts one user's entries chunk by chunk
+     * @param cursor journal cursor to start after, or null to start from the beginning
+     * @param first true for the pass that checkpoints and counts progress, false for the
+     *              check that follows it
+     * @return true if every chunk was done, false if cancelled
+     */
+    private boolean rotateUser(int userIndex, List<KeyRotation> rotations, String cursor, SecretKey oldKey,
+            SecretKey newKey, boolean first) throws IOException, GeneralSecurityException {
+        int userID = rotations.get(userIndex).getUserID();
+        do {
+            if (cancelled) {
+                return false;
+            }
+            waitWhileOverloaded();
+            long started = System.nanoTime();
+            JournalPage page = store.getIndex().page(userID, cursor, CHUNK);
+            List<Skribble> chunk = store.entries(page, userID);
+            Skribble[] rotated = reencrypt(chunk, userID, oldKey, newKey);
+            boolean written = false;
+            for (int j = 0; j < rotated.length; j++) {
+                if (rotated[j] != null) {
+                    writeBack(chunk.get(j), rotated[j], oldKey, newKey);
+                    written = true;
+                }
+            }
+            if (written) {
+                store.force();
+            }
+            cursor = page.hasMore() ? page.getNextCursor() : null;
+            if (first) {
+                if (cursor != null) {
+                    saveCheckpoint(userIndex, rotations, cursor);
+                }
+                entriesDone.addAndGet(chunk.size());
+            }
+            pace(chunk.size(), System.nanoTime() - started);
+        } while (cursor != null);
+        return true;
+    }
+
+    /**
+     * Counts a user's entries after a journal cursor, walking only the index
+     */
+    private int remaining(int userID, String cursor) {
+        int count = 0;
+        do {
+            JournalPage page = store.getIndex().page(userID, cursor, CHUNK);
+            count += page.size();
+            cursor = page.hasMore() ? page.getNextCursor() : null;
+        } while (cursor != null);
+        return count;
+    }
+
+    /**
+     * Re-encrypts a chunk in parallel
+     * @return re-encrypted copies, with null where an entry already used the new key
+     */
+    private Skribble[] reencrypt(List<Skribble> chunk, int userID, SecretKey oldKey, SecretKey newKey)
+            throws GeneralSecurityException {
+        Skribble[] out = new Skribble[chunk.size()];
+        try {
+            pool.invoke(new Reencrypt(chunk, out, 0, chunk.size(), userID, oldKey, newKey));
+        } catch (IllegalStateException e) {
+            // The pool may rethrow a copy of the worker's exception that wraps the original
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof GeneralSecurityException) {
+                    throw (GeneralSecurityException) cause;
+                }
+            }
+            throw e;
+        }
+        return out;
+    }
+
+    private Skribble reencrypt(Skribble stored, int userID, SecretKey oldKey, SecretKey newKey)
+            throws GeneralSecurityException {
+        String text = stored.getentry();
+        if (text == null) {
+            return null;
+        }
+        if (!crypto.isLegacyPlaintext(text)) {
+            try {
+                crypto.decrypt(newKey, userID, stored.getEntryID(), text);
+                return null;
+            } catch (AEADBadTagException alreadyOld) {
+                text = crypto.decrypt(oldKey, userID, stored.getEntryID(), text);
+            }
+        }
+        return new Skribble(stored.getEntryID(), stored.getUserID(), stored.getDateCreated(),
+                crypto.encrypt(newKey, userID, stored.getEntryID(), text), stored.getMood(), stored.getaiPrompt());
+    }
+
+    /**
+     * Saves a re-encrypted entry unless the user changed it meanwhile, in which case the
+     * new version is re-encrypted instead. Holding the store's lock makes the check and
+     * the append one step.
+     */
+    private void writeBack(Skribble original, Skribble rotated, SecretKey oldKey, SecretKey newKey)
+            throws IOException, GeneralSecurityException {
+        synchronized (store) {
+            Skribble current = store.get(original.getUserID(), original.getEntryID());
+            if (current == null) {
+                return;
+            }
+            if (!Objects.equals(current.getentry(), original.getentry())) {
+                rotated = reencrypt(current, original.getUserID(), oldKey, newKey);
+            }
+            if (rotated != null) {
+                store.append(rotated);
+            }
+        }
+    }
+
+    private void waitWhileOverloaded() {
+        while (!cancelled && overloaded.getAsBoolean()) {
+            sleep(BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Sleeps off any time the chunk finished ahead of the rate limit, and updates throughput
+     */
+    private void pace(int entries, long elapsedNanos) {
+        int limit = maxEntriesPerSecond;
+        if (limit > 0) {
+            long budgetNanos = TimeUnit.SECONDS.toNanos(entries) / limit;
+            if (budgetNanos > elapsedNanos) {
+                sleep(TimeUnit.NANOSECONDS.toMillis(budgetNanos - elapsedNanos));
+                elapsedNanos = budgetNanos;
+            }
+        }
+        if (entries > 0 && elapsedNanos > 0) {
+            double rate = entries * 1e9 / elapsedNanos;
+            double previous = entriesPerSecond;
+            entriesPerSecond = previous == 0 ? rate : previous + SMOOTHING * (rate - previous);
+        }
+    }
+
+    private void saveCheckpoint(int userIndex, List<KeyRotation> rotations, String cursor) throws IOException {
+        int userID = userIndex < rotations.size() ? rotations.get(userIndex).getUserID() : -1;
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        ByteBuffer bytes = ByteBuffer.wrap((userIndex + " " + userID + " " + (cursor == null ? "-" : cursor))
+                .getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Splits a chunk in half until it is small enough to re-encrypt directly.
+     */
+    private final class Reencrypt extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Skribble> chunk;
+        private final transient Skribble[] out;
+        private final int from;
+        private final int to;
+        private final int userID;
+        private final transient SecretKey oldKey;
+        private final transient SecretKey newKey;
+
+        Reencrypt(List<Skribble> chunk, Skribble[] out, int from, int to, int userID, SecretKey oldKey,
+                SecretKey newKey) {
+            this.chunk = chunk;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+            this.userID = userID;
+            this.oldKey = oldKey;
+            this.newKey = newKey;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF) {
+                try {
+                    for (int i = from; i < to; i++) {
+                        out[i] = reencrypt(chunk.get(i), userID, oldKey, newKey);
+                    }
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Reencrypt(chunk, out, from, mid, userID, oldKey, newKey),
+                    new Reencrypt(chunk, out, mid, to, userID, oldKey, newKey));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package crypto;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of a KeyRotationJob's progress, for metrics.
+ */
+public final class RotationProgress {
+
+    private final int usersDone;
+    private final int usersTotal;
+    private final long entriesDone;
+    private final long entriesTotal;
+    private final double entriesPerSecond;
+
+    /**
+     * Constructor
+     * @param usersDone users fully rotated
+     * @param usersTotal users in the job
+     * @param entriesDone entries re-encrypted
+     * @param entriesTotal entries in the job
+     * @param entriesPerSecond recent throughput
+     */
+    public RotationProgress(int usersDone, int usersTotal, long entriesDone, long entriesTotal,
+            double entriesPerSecond) {
+        this.usersDone = usersDone;
+        this.usersTotal = usersTotal;
+        this.entriesDone = entriesDone;
+        this.entriesTotal = entriesTotal;
+        this.entriesPerSecond = entriesPerSecond;
+    }
+
+    /**
+     * Gets users fully rotated
+     * @return usersDone
+     */
+    public int getUsersDone() { return usersDone; }
+
+    /**
+     * Gets users in the job
+     * @return usersTotal
+     */
+    public int getUsersTotal() { return usersTotal; }
+
+    /**
+     * Gets entries re-encrypted
+     * @return entriesDone
+     */
+    public long getEntriesDone() { return entriesDone; }
+
+    /**
+     * Gets entries in the job
+     * @return entriesTotal
+     */
+    public long getEntriesTotal() { return entriesTotal; }
+
+    /**
+     * Gets recent throughput
+     * @return entries per second
+     */
+    public double getEntriesPerSecond() { return entriesPerSecond; }
+
+    /**
+     * Estimates time left at the recent throughput
+     * @return estimated time left, or null before any throughput is measured
+     */
+    public Duration getEta() {
+        if (entriesPerSecond <= 0) {
+            return null;
+        }
+        return Duration.ofMillis((long) (Math.max(0, entriesTotal - entriesDone) * 1000 / entriesPerSecond));
+    }
+
+    @Override
+    public String toString() {
+        return "RotationProgress{" +
+                "users=" + usersDone + "/" + usersTotal +
+                ", entries=" + entriesDone + "/" + entriesTotal +
+                ", entriesPerSecond=" + Math.round(entriesPerSecond) +
+                ", eta=" + getEta() +
+                '}';
+    }
+}
@@ -0,0 +1,102 @@
+package digest;
+
+import java.util.Map;
+
+/**
+ * One child's week, built from journal entry metadata only; entry text is never read
+ * into it.
+ */
+public final class ChildSummary {
+
+    private final int userID;
+    private final String firstName;
+    private final int streak;
+    private final int entries;
+    private final int activeDays;
+    private final Map<String, Integer> moods;
+    private final String topMood;
+    private final String previousTopMood;
+
+    /**
+     * Constructor
+     * @param userID child's user ID
+     * @param firstName child's first name
+     * @param streak current streak length
+     * @param entries entries written during the week
+     * @param activeDays days of the week with at least one entry
+     * @param moods number of entries per mood during the week
+     * @param topMood most common mood during the week, or null if there were no entries
+     * @param previousTopMood most common mood the week before, or null if there were no entries
+     */
+    public ChildSummary(int userID, String firstName, int streak, int entries, int activeDays,
+            Map<String, Integer> moods, String topMood, String previousTopMood) {
+        this.userID = userID;
+        this.firstName = firstName;
+        this.streak = streak;
+        this.entries = entries;
+        this.activeDays = activeDays;
+        this.moods = Map.copyOf(moods);
+        this.topMood = topMood;
+        this.previousTopMood = previousTopMood;
+    }
+
+    /**
+     * Gets child's user ID
+     * @return userID
+     */
+    public int getUserID() { return userID; }
+
+    /**
+     * Gets child's first name
+     * @return firstName
+     */
+    public String getFirstName() { return firstName; }
+
+    /**
+     * Gets current streak length
+     * @return streak
+     */
+    public int getStreak() { return streak; }
+
+    /**
+     * Gets entries written during the week
+     * @return entries
+     */
+    public int getEntries() { return entries; }
+
+    /**
+     * Gets days of the week with at least one entry
+     * @return activeDays
+     */
+    public int getActiveDays() { return activeDays; }
+
+    /**
+     * Gets number of entries per mood during the week
+     * @return moods
+     */
+    public Map<String, Integer> getMoods() { return moods; }
+
+    /**
+     * Gets most common mood during the week
+     * @return topMood, or null if there were no entries
+     */
+    public String getTopMood() { return topMood; }
+
+    /**
+     * Gets most common mood the week before
+     * @return previousTopMood, or null if there were no entries
+     */
+    public String getPreviousTopMood() { return previousTopMood; }
+
+    @Override
+    public String toString() {
+        return "ChildSummary{" +
+                "userID=" + userID +
+                ", streak=" + streak +
+                ", entries=" + entries +
+                ", activeDays=" + activeDays +
+                ", topMood=" + topMood +
+                ", previousTopMood=" + previousTopMood +
+                '}';
+    }
+}
@@ -0,0 +1,49 @@
+package digest;
+
+/**
+ * A rendered digest ready to send to one parent.
+ */
+public final class DigestMail {
+
+    private final String to;
+    private final String subject;
+    private final String body;
+
+    /**
+     * Constructor
+     * @param to parent's email address
+     * @param subject subject line
+     * @param body plain-text body
+     */
+    public DigestMail(String to, String subject, String body) {
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+    }
+
+    /**
+     * Gets parent's email address
+     * @return to
+     */
+    public String getTo() { return to; }
+
+    /**
+     * Gets subject line
+     * @return subject
+     */
+    public String getSubject() { return subject; }
+
+    /**
+     * Gets plain-text body
+     * @return body
+     */
+    public String getBody() { return body; }
+
+    @Override
+    public String toString() {
+        return "DigestMail{" +
+                "to=" + to +
+                ", subject=" + subject +
+                '}';
+    }
+}
@@ -0,0 +1,123 @@
+package digest;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain-text layout of a parent digest. Templates use {name} placeholders; the subject,
+ * header and footer can use weekStart and weekEnd, and the per-child line can use
+ * firstName, entries, activeDays, streak and moodTrend. Unknown placeholders are left as
+ * they are. Rendering only reads the shared templates, so one instance can be used from
+ * many threads.
+ */
+public class DigestTemplate {
+
+    /** Default subject line. */
+    public static final String SUBJECT = "Your Skribble weekly summary, {weekStart} to {weekEnd}";
+
+    /** Default text above the children. */
+    public static final String HEADER = "Hello,\n\nHere is how journaling went this week.\n\n";
+
+    /** Default line for each child. */
+    public static final String CHILD = "{firstName}: {entries} entries on {activeDays} of 7 days, "
+            + "current streak {streak} days. Mood: {moodTrend}.\n";
+
+    /** Default text below the children. */
+    public static final String FOOTER = "\nJournal entries are private and are never included in this email.\n";
+
+    private final String subject;
+    private final String header;
+    private final String child;
+    private final String footer;
+
+    /**
+     * Constructor with the default templates
+     */
+    public DigestTemplate() {
+        this(SUBJECT, HEADER, CHILD, FOOTER);
+    }
+
+    /**
+     * Constructor
+     * @param subject subject line template
+     * @param header template for the text above the children
+     * @param child template for each child's line
+     * @param footer template for the text below the children
+     */
+    public DigestTemplate(String subject, String header, String child, String footer) {
+        this.subject = subject;
+        this.header = header;
+        this.child = child;
+        this.footer = footer;
+    }
+
+    /**
+     * Renders one parent's digest
+     * @param parentEmail parent's email address
+     * @param children summaries of the parent's children
+     * @param weekStart first day of the week
+     * @param weekEnd last day of the week
+     * @return digest
+     */
+    public DigestMail render(String parentEmail, List<ChildSummary> children, LocalDate weekStart, LocalDate weekEnd) {
+        Map<String, String> week = Map.of("weekStart", weekStart.toString(), "weekEnd", weekEnd.toString());
+        StringBuilder body = new StringBuilder(256 + children.size() * 128);
+        fill(body, header, week);
+        for (ChildSummary summary : children) {
+            fill(body, child, Map.of(
+                    "firstName", String.valueOf(summary.getFirstName()),
+                    "entries", Integer.toString(summary.getEntries()),
+                    "activeDays", Integer.toString(summary.getActiveDays()),
+                    "streak", Integer.toString(summary.getStreak()),
+                    "moodTrend", moodTrend(summary)));
+        }
+        fill(body, footer, week);
+        StringBuilder title = new StringBuilder(subject.length() + 16);
+        fill(title, subject, week);
+        return new DigestMail(parentEmail, title.toString(), body.toString());
+    }
+
+    /**
+     * Describes the week's most common mood against the week before
+     * @param summary child's week
+     * @return mood trend text
+     */
+    static String moodTrend(ChildSummary summary) {
+        String top = summary.getTopMood();
+        String previous = summary.getPreviousTopMood();
+        if (top == null) {
+            return "no entries this week";
+        }
+        if (previous == null) {
+            return "mostly " + top;
+        }
+        if (previous.equals(top)) {
+            return "mostly " + top + ", same as last week";
+        }
+        return "mostly " + top + ", was mostly " + previous + " last week";
+    }
+
+    /**
+     * Appends a template with its placeholders replaced, in one scan
+     */
+    private static void fill(StringBuilder out, String template, Map<String, String> values) {
+        int from = 0;
+        while (from < template.length()) {
+            int open = template.indexOf('{', from);
+            int close = open < 0 ? -1 : template.indexOf('}', open);
+            if (close < 0) {
+                out.append(template, from, template.length());
+                return;
+            }
+            String value = values.get(template.substring(open + 1, close));
+            out.append(template, from, open);
+            if (value == null) {
+                out.append(template, open, close + 1);
+            } else {
+                out.append(value);
+            }
+            from = close + 1;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package digest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Stand-in for a mail server that writes each digest to a .eml file named after the
+ * recipient, so a local run can be checked by opening the files. Files are written to a
+ * temporary name and moved into place, and a resent digest replaces the earlier file.
+ * Header values can't carry CR, LF or other control characters: an address with one is
+ * rejected, and any in the subject are replaced with spaces.
+ */
+public class FileMailSink implements MailSink {
+
+    private final Path directory;
+    private final String from;
+
+    /**
+     * Constructor
+     * @param directory directory to write digests to; created if missing
+     * @param from sender address written into each file
+     * @throws IOException if the directory can't be created
+     */
+    public FileMailSink(Path directory, String from) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.from = address(from);
+    }
+
+    @Override
+    public void send(List<DigestMail> batch) throws IOException {
+        for (DigestMail mail : batch) {
+            String to = address(mail.getTo());
+            String message = "From: " + from + "\r\n"
+                    + "To: " + to + "\r\n"
+                    + "Subject: " + stripControl(mail.getSubject()) + "\r\n"
+                    + "Content-Type: text/plain; charset=UTF-8\r\n"
+                    + "\r\n"
+                    + mail.getBody().replace("\r\n", "\n").replace("\n", "\r\n");
+            Path target = directory.resolve(fileName(to));
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.write(temp, message.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Checks an address is safe to put in a header
+     * @throws IllegalArgumentException if it contains a control character
+     */
+    private static String address(String address) {
+        if (!stripControl(address).equals(address)) {
+            throw new IllegalArgumentException("Mail address contains a control character");
+        }
+        return address;
+    }
+
+    private static String stripControl(String value) {
+        StringBuilder stripped = null;
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isISOControl(value.charAt(i))) {
+                if (stripped == null) {
+                    stripped = new StringBuilder(value);
+                }
+                stripped.setCharAt(i, ' ');
+            }
+        }
+        return stripped == null ? value : stripped.toString();
+    }
+
+    private static String fileName(String address) {
+        StringBuilder name = new StringBuilder(address.length() + 4);
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            name.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '@' ? c : '_');
+        }
+        return name.append(".eml").toString();
+    }
+}
@@ -0,0 +1,18 @@
+package digest;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Delivers rendered digests, for example through an SMTP relay or a mail API that takes
+ * batches. FileMailSink writes them to a directory instead, for local runs.
+ */
+public interface MailSink {
+
+    /**
+     * Sends a batch of digests
+     * @param batch digests, at most one per parent
+     * @throws IOException if sending fails; the job stops and a rerun resumes from this batch
+     */
+    void send(List<DigestMail> batch) throws IOException;
+}
@@ -0,0 +1,232 @@
+package digest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import journal.JournalPage;
+import journal.JournalStore;
+import models.Skribble;
+import models.User;
+import streak.StreakEngine;
+
+/**
+ * Sends each parent of an under-13 account one weekly email covering all their children:
+ * entries written, days active, current streak and how the most common mood compares
+ * with the week before. Only entry dates and moods are decoded; entry text is skipped over
+ * and never reaches a digest.
+ *
+ * One pass over the users groups children by User.parentEmail, ignoring case; addresses
+ * with control characters are skipped, since they can't go in a mail header. Parents are
+ * then handled in email order, BATCH at a time: each child's last two weeks are read in
+ * one date range from the journal index, so only those entries are touched rather than
+ * the whole journal, and the digests are rendered on the executor in parallel. Each
+ * batch goes to the mail sink in one call. After every batch the last email sent is
+ * checkpointed, so a rerun for the same week skips parents already mailed and a
+ * finished week costs only the grouping pass.
+ */
+public class WeeklyDigestJob {
+
+    /** Users younger than this get a parent digest. */
+    public static final int CHILD_AGE_LIMIT = 13;
+
+    /** Parents rendered and sent per batch. */
+    public static final int BATCH = 64;
+
+    private static final int PAGE = 256;
+
+    private final JournalStore store;
+    private final StreakEngine streaks;
+    private final DigestTemplate template;
+    private final MailSink sink;
+    private final ExecutorService executor;
+    private final Path checkpoint;
+
+    /**
+     * Constructor
+     * @param store journal store to read entry metadata from
+     * @param streaks streak engine for current streak lengths
+     * @param template digest layout
+     * @param sink where digests are sent
+     * @param executor pool that summaries are built and rendered on
+     * @param checkpoint file to record progress in
+     */
+    public WeeklyDigestJob(JournalStore store, StreakEngine streaks, DigestTemplate template, MailSink sink,
+            ExecutorService executor, Path checkpoint) {
+        this.store = store;
+        this.streaks = streaks;
+        this.template = template;
+        this.sink = sink;
+        this.executor = executor;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Sends the digests for a week, resuming from the checkpoint if it is for the same week
+     * @param users every user, in any order; only under-13 accounts with a parent email are used
+     * @param weekEnd last day of the week to report on
+     * @return number of digests sent by this run
+     * @throws IOException if the sink or the checkpoint fails; a rerun resumes after the
+     *                     last batch sent
+     */
+    public int run(Iterable<User> users, LocalDate weekEnd) throws IOException {
+        TreeMap<String, List<User>> parents = new TreeMap<>();
+        for (User user : users) {
+            String parentEmail = user.getParentEmail();
+            if (user.getAge() >= CHILD_AGE_LIMIT || parentEmail == null || parentEmail.isBlank()
+                    || hasControl(parentEmail)) {
+                continue;
+            }
+            parents.computeIfAbsent(parentEmail.trim().toLowerCase(Locale.ROOT), email -> new ArrayList<>())
+                    .add(user);
+        }
+        String resumeAfter = loadCheckpoint(weekEnd);
+        Map<String, List<User>> pending = resumeAfter == null ? parents : parents.tailMap(resumeAfter, false);
+        LocalDate weekStart = weekEnd.minusDays(6);
+        int sent = 0;
+        List<Future<DigestMail>> batch = new ArrayList<>(BATCH);
+        String last = null;
+        for (Map.Entry<String, List<User>> parent : pending.entrySet()) {
+            String email = parent.getKey();
+            List<User> children = parent.getValue();
+            batch.add(executor.submit(() -> template.render(email, summarize(children, weekStart, weekEnd),
+                    weekStart, weekEnd)));
+            last = email;
+            if (batch.size() == BATCH) {
+                sent += send(batch, weekEnd, last);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sent += send(batch, weekEnd, last);
+        }
+        return sent;
+    }
+
+    /**
+     * Summarizes children's weeks from entry metadata
+     */
+    private List<ChildSummary> summarize(List<User> children, LocalDate weekStart, LocalDate weekEnd) {
+        List<ChildSummary> summaries = new ArrayList<>(children.size());
+        for (User child : children) {
+            summaries.add(summarize(child, weekStart, weekEnd));
+        }
+        return summaries;
+    }
+
+    private ChildSummary summarize(User child, LocalDate weekStart, LocalDate weekEnd) {
+        int userID = child.getUserID();
+        LocalDate previousStart = weekStart.minusDays(7);
+        Map<String, Integer> moods = new HashMap<>();
+        Map<String, Integer> previousMoods = new HashMap<>();
+        int entries = 0;
+        int activeDays = 0;
+        String cursor = null;
+        do {
+            JournalPage page = store.getIndex().range(userID, previousStart, weekEnd, cursor, PAGE);
+            for (Skribble entry : store.metadata(page, userID)) {
+                LocalDate date = entry.getDateCreated();
+                if (date == null) {
+                    continue;
+                }
+                boolean thisWeek = !date.isBefore(weekStart);
+                if (thisWeek) {
+                    entries++;
+                    activeDays |= 1 << (int) (date.toEpochDay() - weekStart.toEpochDay());
+                }
+                String mood = entry.getMood();
+                if (mood != null && !mood.isBlank()) {
+                    (thisWeek ? moods : previousMoods).merge(mood.trim().toLowerCase(Locale.ROOT), 1, Integer::sum);
+                }
+            }
+            cursor = page.hasMore() ? page.getNextCursor() : null;
+        } while (cursor != null);
+        return new ChildSummary(userID, child.getFirstName(), streaks.length(userID), entries,
+                Integer.bitCount(activeDays), moods, topMood(moods), topMood(previousMoods));
+    }
+
+    /**
+     * Gets the most common mood, breaking ties alphabetically so reruns render the same text
+     */
+    private static String topMood(Map<String, Integer> moods) {
+        String top = null;
+        int most = 0;
+        for (Map.Entry<String, Integer> mood : moods.entrySet()) {
+            if (mood.getValue() > most || mood.getValue() == most && mood.getKey().compareTo(top) < 0) {
+                top = mood.getKey();
+                most = mood.getValue();
+            }
+        }
+        return top;
+    }
+
+    private static boolean hasControl(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isISOControl(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for a batch to render, sends it and checkpoints its last parent
+     * @return number of digests sent
+     */
+    private int send(List<Future<DigestMail>> batch, LocalDate weekEnd, String last) throws IOException {
+        List<DigestMail> mails = new ArrayList<>(batch.size());
+        for (Future<DigestMail> rendering : batch) {
+            try {
+                mails.add(rendering.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rendering digests", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Rendering a digest failed", e.getCause());
+            }
+        }
+        batch.clear();
+        sink.send(mails);
+        saveCheckpoint(weekEnd, last);
+        return mails.size();
+    }
+
+    /**
+     * Reads the checkpoint
+     * @return last parent sent for this week, or null to start from the beginning
+     */
+    private String loadCheckpoint(LocalDate weekEnd) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return null;
+        }
+        String[] saved = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim().split(" ", 2);
+        return saved.length == 2 && saved[0].equals(weekEnd.toString()) ? saved[1] : null;
+    }
+
+    private void saveCheckpoint(LocalDate weekEnd, String lastEmail) throws IOException {
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        ByteBuffer bytes = ByteBuffer.wrap((weekEnd + " " + lastEmail).getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,69 @@
+package feedback;
+
+/**
+ * A group of near-duplicate feedback, as reported by FeedbackClusters.
+ */
+public final class FeedbackCluster {
+
+    private final int clusterID;
+    private final int representativeID;
+    private final String representativeText;
+    private final long total;
+    private final long recent;
+
+    /**
+     * Constructor
+     * @param clusterID cluster ID
+     * @param representativeID feedback ID of the first record in the cluster
+     * @param representativeText text of the first record in the cluster
+     * @param total records in the cluster since it was created
+     * @param recent records in the cluster within the queried window
+     */
+    public FeedbackCluster(int clusterID, int representativeID, String representativeText, long total, long recent) {
+        this.clusterID = clusterID;
+        this.representativeID = representativeID;
+        this.representativeText = representativeText;
+        this.total = total;
+        this.recent = recent;
+    }
+
+    /**
+     * Gets cluster ID
+     * @return clusterID
+     */
+    public int getClusterID() { return clusterID; }
+
+    /**
+     * Gets feedback ID of the first record in the cluster
+     * @return representativeID
+     */
+    public int getRepresentativeID() { return representativeID; }
+
+    /**
+     * Gets text of the first record in the cluster
+     * @return representativeText
+     */
+    public String getRepresentativeText() { return representativeText; }
+
+    /**
+     * Gets records in the cluster since it was created
+     * @return total
+     */
+    public long getTotal() { return total; }
+
+    /**
+     * Gets records in the cluster within the queried window
+     * @return recent
+     */
+    public long getRecent() { return recent; }
+
+    @Override
+    public String toString() {
+        return "FeedbackCluster{" +
+                "clusterID=" + clusterID +
+                ", representativeID=" + representativeID +
+                ", total=" + total +
+                ", recent=" + recent +
+                '}';
+    }
+}
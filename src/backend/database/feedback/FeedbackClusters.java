@@ -0,0 +1,318 @@
+package feedback;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import models.Feedback;
+
+/**
+ * Groups near-duplicate feedback as it arrives, so reviewers can read one representative
+ * per complaint instead of every repeat.
+ *
+ * Each text is normalised to lowercase letters and digits and cut into overlapping
+ * SHINGLE character shingles, and a MinHash signature of BANDS * ROWS values is taken over
+ * them. The signature is split into BANDS bands; two texts whose Jaccard similarity is s
+ * share at least one band with probability 1 - (1 - s^ROWS)^BANDS, which rises steeply
+ * around 0.55. Every cluster registers the bands of its first text, so an insert is a
+ * signature plus BANDS hash lookups, whatever the number of clusters. A text that shares
+ * no band with any cluster starts a new one.
+ *
+ * Memory is bounded by maxClusters: the cluster seen least recently is dropped, with its
+ * bands, to make room. Per-cluster counts are kept for the last WINDOW_DAYS days, so
+ * topClusters reads those counts and never compares texts with each other.
+ */
+public class FeedbackClusters {
+
+    /** Characters per shingle. */
+    public static final int SHINGLE = 5;
+
+    /** Bands per signature. */
+    public static final int BANDS = 20;
+
+    /** Signature values per band. */
+    public static final int ROWS = 5;
+
+    /** Days covered by topClusters. */
+    public static final int WINDOW_DAYS = 7;
+
+    private final int maxClusters;
+    private final LinkedHashMap<Integer, Cluster> clusters = new LinkedHashMap<>(64, 0.75f, true);
+    private final HashMap<Long, Cluster> bands = new HashMap<>();
+    private final Day[] days = new Day[WINDOW_DAYS];
+    private int nextClusterID;
+
+    /**
+     * Constructor
+     * @param maxClusters most clusters to keep
+     */
+    public FeedbackClusters(int maxClusters) {
+        if (maxClusters <= 0) {
+            throw new IllegalArgumentException("maxClusters must be positive: " + maxClusters);
+        }
+        this.maxClusters = maxClusters;
+        for (int i = 0; i < WINDOW_DAYS; i++) {
+            days[i] = new Day();
+        }
+    }
+
+    /**
+     * Adds feedback to the cluster of its near-duplicates, starting a new cluster if it has none
+     * @param feedback feedback record with its submission date
+     * @return cluster ID, or -1 if the text has no letters or digits
+     */
+    public int add(Feedback feedback) {
+        if (feedback.getDateSubmitted() == null) {
+            throw new IllegalArgumentException("Feedback " + feedback.getFeedbackID() + " has no submission date");
+        }
+        int[] signature = signature(feedback.getFeedbackText());
+        if (signature == null) {
+            return -1;
+        }
+        long[] keys = bandKeys(signature);
+        synchronized (this) {
+            Cluster cluster = match(keys);
+            if (cluster == null) {
+                cluster = create(feedback, keys);
+            } else {
+                clusters.get(cluster.clusterID); // marks it recently seen
+            }
+            cluster.total++;
+            count(cluster, feedback.getDateSubmitted().toEpochDay());
+            return cluster.clusterID;
+        }
+    }
+
+    /**
+     * Gets the clusters with the most feedback in the WINDOW_DAYS days ending on a date
+     * @param endingOn last day of the window, usually today
+     * @param limit most clusters to return
+     * @return clusters, largest first
+     */
+    public synchronized List<FeedbackCluster> topClusters(LocalDate endingOn, int limit) {
+        long last = endingOn.toEpochDay();
+        HashMap<Cluster, long[]> recent = new HashMap<>();
+        for (Day day : days) {
+            if (day.epochDay > last - WINDOW_DAYS && day.epochDay <= last) {
+                for (Map.Entry<Cluster, long[]> entry : day.counts.entrySet()) {
+                    recent.computeIfAbsent(entry.getKey(), c -> new long[1])[0] += entry.getValue()[0];
+                }
+            }
+        }
+        PriorityQueue<FeedbackCluster> top = new PriorityQueue<>(Math.max(1, limit + 1),
+                (a, b) -> a.getRecent() != b.getRecent()
+                        ? Long.compare(a.getRecent(), b.getRecent())
+                        : Integer.compare(b.getClusterID(), a.getClusterID()));
+        for (Map.Entry<Cluster, long[]> entry : recent.entrySet()) {
+            top.add(entry.getKey().snapshot(entry.getValue()[0]));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<FeedbackCluster> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Gets a cluster by ID
+     * @param clusterID cluster ID
+     * @return cluster with its total count, or null if it was never created or has been dropped
+     */
+    public synchronized FeedbackCluster cluster(int clusterID) {
+        Cluster cluster = clusters.get(clusterID);
+        return cluster == null ? null : cluster.snapshot(0);
+    }
+
+    /**
+     * Gets number of clusters kept
+     * @return clusters
+     */
+    public synchronized int size() {
+        return clusters.size();
+    }
+
+    /**
+     * Computes the MinHash signature of a text. Each of the BANDS * ROWS hash functions is
+     * derived from two base hashes of the shingle, so a shingle is hashed once and
+     * each function costs a multiply and a 32-bit mix.
+     * @param text feedback text
+     * @return signature, or null if the text has no letters or digits
+     */
+    static int[] signature(String text) {
+        String normalised = normalise(text);
+        if (normalised.isEmpty()) {
+            return null;
+        }
+        int[] signature = new int[BANDS * ROWS];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int shingles = Math.max(1, normalised.length() - SHINGLE + 1);
+        for (int start = 0; start < shingles; start++) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = start, end = Math.min(normalised.length(), start + SHINGLE); i < end; i++) {
+                hash = (hash ^ normalised.charAt(i)) * 0x100000001b3L;
+            }
+            hash = mix(hash);
+            int a = (int) hash;
+            int b = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < signature.length; i++) {
+                int value = mix(a + i * b) & Integer.MAX_VALUE;
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Lowercases a text and collapses everything but letters and digits to single spaces
+     */
+    private static String normalise(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) == ' ') {
+            out.setLength(length - 1);
+        }
+        return out.toString();
+    }
+
+    private static long[] bandKeys(int[] signature) {
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = band;
+            for (int row = 0; row < ROWS; row++) {
+                key = mix(key * 31 + signature[band * ROWS + row]);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Finds the cluster sharing the most bands with a signature
+     */
+    private Cluster match(long[] keys) {
+        Cluster best = null;
+        int bestShared = 0;
+        for (int band = 0; band < BANDS; band++) {
+            Cluster candidate = bands.get(keys[band]);
+            if (candidate == null || candidate == best) {
+                continue;
+            }
+            int shared = 0;
+            for (int other = band; other < BANDS; other++) {
+                if (bands.get(keys[other]) == candidate) {
+                    shared++;
+                }
+            }
+            if (shared > bestShared) {
+                best = candidate;
+                bestShared = shared;
+            }
+        }
+        return best;
+    }
+
+    private Cluster create(Feedback feedback, long[] keys) {
+        if (clusters.size() >= maxClusters) {
+            Iterator<Cluster> eldest = clusters.values().iterator();
+            Cluster evicted = eldest.next();
+            eldest.remove();
+            for (long key : evicted.keys) {
+                bands.remove(key, evicted);
+            }
+            for (Day day : days) {
+                day.counts.remove(evicted);
+            }
+        }
+        Cluster cluster = new Cluster(nextClusterID++, feedback.getFeedbackID(), feedback.getFeedbackText(), keys);
+        clusters.put(cluster.clusterID, cluster);
+        for (long key : keys) {
+            bands.putIfAbsent(key, cluster);
+        }
+        return cluster;
+    }
+
+    /**
+     * Counts one record against a cluster on its submission day; days older than the
+     * window are only counted in the total
+     */
+    private void count(Cluster cluster, long epochDay) {
+        Day day = days[(int) Math.floorMod(epochDay, (long) WINDOW_DAYS)];
+        if (day.epochDay != epochDay) {
+            if (day.epochDay > epochDay) {
+                return;
+            }
+            day.epochDay = epochDay;
+            day.counts.clear();
+        }
+        day.counts.computeIfAbsent(cluster, c -> new long[1])[0]++;
+    }
+
+    private static int mix(int h) {
+        h = (h ^ (h >>> 16)) * 0x85ebca6b;
+        h = (h ^ (h >>> 13)) * 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Mutable cluster state, guarded by the FeedbackClusters lock.
+     */
+    private static final class Cluster {
+        final int clusterID;
+        final int representativeID;
+        final String representativeText;
+        final long[] keys;
+        long total;
+
+        Cluster(int clusterID, int representativeID, String representativeText, long[] keys) {
+            this.clusterID = clusterID;
+            this.representativeID = representativeID;
+            this.representativeText = representativeText;
+            this.keys = keys;
+        }
+
+        FeedbackCluster snapshot(long recent) {
+            return new FeedbackCluster(clusterID, representativeID, representativeText, total, recent);
+        }
+    }
+
+    /**
+     * Per-cluster counts for one day of the window.
+     */
+    private static final class Day {
+        long epochDay = Long.MIN_VALUE;
+        final HashMap<Cluster, long[]> counts = new HashMap<>();
+    }
+}
@@ -0,0 +1,290 @@
+package feedback;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import models.Feedback;
+
+/**
+ * Takes feedback from request threads and writes it to storage in batches, so a spike
+ * after a release costs one bulk write per batch instead of one write per record.
+ *
+ * offer never blocks: it adds to a lock-free queue bounded by a CAS'd counter and returns
+ * false once the queue is full. pressure tells callers how close to full it is, so
+ * they can back off before being refused. A single writer thread sends a batch once
+ * maxBatch records are waiting or the oldest has waited maxDelay.
+ *
+ * If storage fails, the batch is appended to a spill file and forced to disk. The spill is
+ * retried periodically and replayed when the pipeline starts, so spilled feedback survives
+ * a restart. Replays are at least once: a replay that fails partway can write some records
+ * twice.
+ */
+public class FeedbackIngest implements Closeable {
+
+    /**
+     * How full the pipeline is.
+     */
+    public enum Pressure {
+        /** Under half full. */
+        NORMAL,
+        /** Over half full, or storage is failing; callers should slow down. */
+        ELEVATED,
+        /** Full; offers are refused. */
+        FULL
+    }
+
+    private static final long SPILL_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final FeedbackSink sink;
+    private final SpillFile spill;
+    private final int capacity;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final Queue<Feedback> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile boolean spillPending;
+
+    /**
+     * Constructor
+     * @param sink storage that batches are written to
+     * @param spillFile file that failed batches are kept in
+     * @param capacity most records waiting to be written
+     * @param maxBatch most records per write
+     * @param maxDelay longest a record waits for its batch to fill
+     * @param unit unit of maxDelay
+     * @throws IOException if the spill file can't be opened
+     */
+    public FeedbackIngest(FeedbackSink sink, Path spillFile, int capacity, int maxBatch, long maxDelay, TimeUnit unit)
+            throws IOException {
+        if (capacity <= 0 || maxBatch <= 0 || maxDelay <= 0) {
+            throw new IllegalArgumentException("capacity, maxBatch and maxDelay must be positive");
+        }
+        this.sink = sink;
+        this.spill = new SpillFile(spillFile);
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.writer = new Thread(this::writeLoop, "feedback-ingest");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer thread, which first replays anything spilled by an earlier run
+     * @throws IOException if the spill file can't be read
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        spillPending = !spill.isEmpty();
+        running = true;
+        writer.start();
+    }
+
+    /**
+     * Queues feedback to be written. Never blocks.
+     * @param feedback feedback record
+     * @return false if the pipeline is full or stopped and the caller should retry later
+     */
+    public boolean offer(Feedback feedback) {
+        int waiting;
+        do {
+            waiting = size.get();
+            if (waiting >= capacity || !running) {
+                refused.incrementAndGet();
+                return false;
+            }
+        } while (!size.compareAndSet(waiting, waiting + 1));
+        queue.add(feedback);
+        // close may have drained for the last time since running was checked; take the
+        // record back unless a drain already has it.
+        if (!running && queue.remove(feedback)) {
+            size.decrementAndGet();
+            refused.incrementAndGet();
+            return false;
+        }
+        accepted.incrementAndGet();
+        if (waiting + 1 == maxBatch) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Gets how full the pipeline is
+     * @return pressure level
+     */
+    public Pressure pressure() {
+        int waiting = size.get();
+        if (waiting >= capacity) {
+            return Pressure.FULL;
+        }
+        return waiting * 2 >= capacity || spillPending ? Pressure.ELEVATED : Pressure.NORMAL;
+    }
+
+    /**
+     * Gets number of records waiting to be written
+     * @return queued records
+     */
+    public int queued() {
+        return size.get();
+    }
+
+    /**
+     * Gets number of records accepted by offer
+     * @return accepted records
+     */
+    public long accepted() {
+        return accepted.get();
+    }
+
+    /**
+     * Gets number of records refused by offer
+     * @return refused records
+     */
+    public long refused() {
+        return refused.get();
+    }
+
+    /**
+     * Gets number of records written to storage, counting spill replays
+     * @return written records
+     */
+    public long written() {
+        return written.get();
+    }
+
+    /**
+     * Gets number of records spilled after a failed write
+     * @return spilled records
+     */
+    public long spilled() {
+        return spilled.get();
+    }
+
+    /**
+     * Gets number of records dropped because both storage and the spill file failed
+     * @return lost records
+     */
+    public long lost() {
+        return lost.get();
+    }
+
+    /**
+     * Stops taking feedback, writes or spills whatever is queued, and closes the spill file.
+     * Records an offer queued after the writer's last drain are written here.
+     * @throws IOException if the spill file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            running = false;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+            for (List<Feedback> batch = drain(); !batch.isEmpty(); batch = drain()) {
+                write(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            spill.close();
+        }
+    }
+
+    private void writeLoop() {
+        long nextRetry = System.nanoTime();
+        while (running || size.get() > 0) {
+            if (spillPending && running && System.nanoTime() - nextRetry >= 0) {
+                replaySpill();
+                nextRetry = System.nanoTime() + SPILL_RETRY_NANOS;
+            }
+            waitForBatch();
+            List<Feedback> batch = drain();
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        }
+    }
+
+    /**
+     * Parks until a full batch is waiting, the oldest record has waited maxDelay, or the
+     * pipeline is stopping
+     */
+    private void waitForBatch() {
+        while (running && size.get() == 0) {
+            LockSupport.parkNanos(this, spillPending ? SPILL_RETRY_NANOS : maxDelayNanos);
+            if (spillPending) {
+                return;
+            }
+        }
+        long deadline = System.nanoTime() + maxDelayNanos;
+        long remaining;
+        while (running && size.get() < maxBatch && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private List<Feedback> drain() {
+        List<Feedback> batch = new ArrayList<>(Math.min(maxBatch, Math.max(1, size.get())));
+        for (Feedback next; batch.size() < maxBatch && (next = queue.poll()) != null; ) {
+            batch.add(next);
+        }
+        size.addAndGet(-batch.size());
+        return batch;
+    }
+
+    /**
+     * Writes a batch, spilling it if storage fails. Never throws, so a bad batch can't
+     * stop the writer thread; one the spill file won't take either, such as a record over
+     * its size limit, is counted as lost.
+     */
+    private void write(List<Feedback> batch) {
+        try {
+            sink.write(batch);
+            written.addAndGet(batch.size());
+        } catch (IOException | RuntimeException e) {
+            try {
+                spill.append(batch);
+                spilled.addAndGet(batch.size());
+                spillPending = true;
+            } catch (IOException | RuntimeException spillFailure) {
+                lost.addAndGet(batch.size());
+            }
+        }
+    }
+
+    /**
+     * Writes spilled records to storage and empties the spill once they all succeed
+     */
+    private void replaySpill() {
+        try {
+            List<Feedback> records = spill.readAll();
+            for (int from = 0; from < records.size(); from += maxBatch) {
+                sink.write(records.subList(from, Math.min(records.size(), from + maxBatch)));
+            }
+            written.addAndGet(records.size());
+            spill.clear();
+            spillPending = false;
+        } catch (IOException | RuntimeException e) {
+            // Storage is still failing; keep the spill and try again later.
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package feedback;
+
+import java.io.IOException;
+import java.util.List;
+
+import models.Feedback;
+
+/**
+ * Storage feedback is bulk-written to, for example one multi-row INSERT per batch.
+ */
+public interface FeedbackSink {
+
+    /**
+     * Writes a batch of feedback
+     * @param batch feedback records
+     * @throws IOException if the write fails; the batch is spilled to disk and retried
+     */
+    void write(List<Feedback> batch) throws IOException;
+}
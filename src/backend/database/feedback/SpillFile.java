@@ -0,0 +1,181 @@
+package feedback;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import codec.ModelCodec;
+import models.Feedback;
+
+/**
+ * Append-only file that holds feedback which couldn't be written to storage yet. A
+ * record is [int length][int crc][payload], with the payload encoded by ModelCodec, and
+ * every append is forced to disk. Reading stops at the first torn or corrupt record, so
+ * a crash mid-append loses only that record, and opening the file cuts such a tail off so
+ * later appends follow the last good record instead of hiding behind the torn one.
+ */
+final class SpillFile implements Closeable {
+
+    private static final int HEADER = 8;
+
+    /** Bytes read from the file at a time. */
+    private static final int CHUNK = 64 * 1024;
+
+    /** Longest payload a record may have; a longer length is treated as corrupt. */
+    private static final int MAX_RECORD = 1 << 24;
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Opens or creates a spill file
+     * @param path spill file
+     * @throws IOException if the file can't be opened
+     */
+    SpillFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long end = scan(null);
+        if (end < channel.size()) {
+            channel.truncate(end);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Appends feedback and forces it to disk
+     * @param batch feedback records
+     * @throws IOException if the write fails
+     */
+    void append(List<Feedback> batch) throws IOException {
+        int size = 0;
+        for (Feedback feedback : batch) {
+            size += HEADER + ModelCodec.sizeOf(feedback);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Feedback feedback : batch) {
+            int start = buffer.position();
+            buffer.position(start + HEADER);
+            ModelCodec.encode(buffer, feedback);
+            int length = buffer.position() - start - HEADER;
+            if (length > MAX_RECORD) {
+                throw new IllegalArgumentException("Feedback " + feedback.getFeedbackID() + " is too large to spill");
+            }
+            crc.reset();
+            crc.update(buffer.array(), start + HEADER, length);
+            buffer.putInt(start, length);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        buffer.flip();
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Reads every valid record
+     * @return spilled feedback, oldest first
+     * @throws IOException if the file can't be read
+     */
+    List<Feedback> readAll() throws IOException {
+        List<Feedback> spilled = new ArrayList<>();
+        scan(spilled);
+        return spilled;
+    }
+
+    /**
+     * Checks if anything is spilled
+     * @return true if the file is empty
+     * @throws IOException if the size can't be read
+     */
+    boolean isEmpty() throws IOException {
+        return channel.size() == 0;
+    }
+
+    /**
+     * Empties the file once its records are safely stored
+     * @throws IOException if the file can't be truncated
+     */
+    void clear() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    /**
+     * Reads records from the start in chunks, stopping at the first torn or corrupt one
+     * @param into list to decode the records into, or null to only check them
+     * @return file offset just past the last valid record
+     */
+    private long scan(List<Feedback> into) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHUNK, Math.max(size, HEADER)));
+        buffer.flip();
+        CRC32 check = new CRC32();
+        long end = 0;
+        while (end + HEADER <= size) {
+            buffer = fill(buffer, HEADER, end);
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length <= 0 || length > MAX_RECORD || end + HEADER + length > size) {
+                break;
+            }
+            buffer = fill(buffer, HEADER + length, end);
+            start = buffer.position();
+            if (buffer.remaining() < HEADER + length) {
+                break;
+            }
+            check.reset();
+            check.update(buffer.array(), start + HEADER, length);
+            if ((int) check.getValue() != buffer.getInt(start + 4)) {
+                break;
+            }
+            if (into != null) {
+                into.add(ModelCodec.decodeFeedback(buffer.duplicate().position(start + HEADER)
+                        .limit(start + HEADER + length)));
+            }
+            buffer.position(start + HEADER + length);
+            end += HEADER + length;
+        }
+        return end;
+    }
+
+    /**
+     * Makes sure the buffer holds at least needed bytes, reading more of the file after
+     * the ones it still has
+     * @param buffer buffer whose position is at file offset
+     * @param needed bytes wanted
+     * @param offset file offset of the buffer's position
+     * @return the buffer, or a larger one if it was too small
+     */
+    private ByteBuffer fill(ByteBuffer buffer, int needed, long offset) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        if (buffer.capacity() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(needed, CHUNK));
+            grown.put(buffer);
+            buffer = grown;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
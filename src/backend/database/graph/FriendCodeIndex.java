@@ -0,0 +1,264 @@
+package graph;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Off-heap friend code to user ID index. Friend codes are UUIDs, so each key is packed
+ * into two longs instead of being kept as a String. The table is open addressing with
+ * linear probing in a direct ByteBuffer, 24 bytes per slot: [long high][long low][int
+ * state][int pad]. State is 0 for empty, -1 for a removed code, and userID + 1 otherwise.
+ * Removed slots are never reused in place, since a reader may still be comparing their
+ * old key; they are dropped the next time the table grows.
+ *
+ * One writer at a time inserts or removes (the write methods are synchronized); reads take
+ * no lock. The writer fills in the key before publishing the state with a release store,
+ * and readers load the state with an acquire load, so a reader never sees a half-written
+ * slot. Growing builds a new table and swaps it in.
+ */
+public class FriendCodeIndex {
+
+    private static final int SLOT = 24;
+    private static final int STATE = 16;
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+    private static final double MAX_LOAD = 0.7;
+    private static final long MAGIC = 0x534B52424C464349L;
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private volatile Table table;
+
+    /**
+     * Constructor
+     * @param expectedUsers number of codes to size the table for
+     */
+    public FriendCodeIndex(int expectedUsers) {
+        table = new Table(capacityFor(expectedUsers));
+    }
+
+    private FriendCodeIndex(Table table) {
+        this.table = table;
+    }
+
+    /**
+     * Looks up the user with a friend code
+     * @param friendCode friend code
+     * @return user ID, or -1 if no user has that code or the code is malformed
+     */
+    public int get(String friendCode) {
+        UUID key;
+        try {
+            key = UUID.fromString(friendCode.trim());
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+        return get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Looks up the user with a packed friend code
+     * @param high most significant bits of the code
+     * @param low least significant bits of the code
+     * @return user ID, or -1 if no user has that code
+     */
+    public int get(long high, long low) {
+        Table t = table;
+        int mask = t.capacity - 1;
+        for (int slot = hash(high, low) & mask, probes = 0; probes < t.capacity; slot = (slot + 1) & mask, probes++) {
+            int offset = slot * SLOT;
+            int state = (int) INTS.getAcquire(t.buffer, offset + STATE);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state != REMOVED && t.buffer.getLong(offset) == high && t.buffer.getLong(offset + 8) == low) {
+                return state - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Maps a friend code to a user, replacing any existing mapping for that code
+     * @param friendCode friend code, a UUID string
+     * @param userID user ID, must not be negative
+     */
+    public synchronized void put(String friendCode, int userID) {
+        if (userID < 0) {
+            throw new IllegalArgumentException("Invalid user ID: " + userID);
+        }
+        UUID key = UUID.fromString(friendCode.trim());
+        if ((table.used + 1) > table.capacity * MAX_LOAD) {
+            table = rehash(table, capacityFor(table.size + 1));
+        }
+        table.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), userID + 1);
+    }
+
+    /**
+     * Removes a friend code
+     * @param friendCode friend code
+     * @return true if the code was present
+     */
+    public synchronized boolean remove(String friendCode) {
+        UUID key = UUID.fromString(friendCode.trim());
+        return table.remove(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Gets number of friend codes
+     * @return number of codes
+     */
+    public int size() {
+        return table.size;
+    }
+
+    /**
+     * Writes the table to a snapshot file. The file is written next to the target and
+     * moved into place, so a crash never leaves a half-written snapshot.
+     * @param file snapshot file
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putInt(table.capacity).putInt(table.size).putInt(table.used).putInt(0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer body = table.buffer.duplicate().clear();
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads an index from a snapshot file written by save on a machine with the same byte order
+     * @param file snapshot file
+     * @return index
+     * @throws IOException if the file can't be read or isn't a snapshot
+     */
+    public static FriendCodeIndex load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) { }
+            header.flip();
+            if (header.remaining() < 24 || header.getLong() != MAGIC) {
+                throw new IOException("Not a friend code snapshot: " + file);
+            }
+            int capacity = header.getInt();
+            int size = header.getInt();
+            int used = header.getInt();
+            if (capacity <= 0 || Integer.bitCount(capacity) != 1 || (long) capacity * SLOT > Integer.MAX_VALUE
+                    || size < 0 || size > used || used >= capacity) {
+                throw new IOException("Corrupt friend code snapshot header: " + file);
+            }
+            if (channel.size() != 24 + (long) capacity * SLOT) {
+                throw new IOException("Friend code snapshot has the wrong length: " + file);
+            }
+            Table table = new Table(capacity);
+            table.size = size;
+            table.used = used;
+            ByteBuffer body = table.buffer.duplicate().clear();
+            while (body.hasRemaining()) {
+                if (channel.read(body) < 0) {
+                    throw new IOException("Truncated friend code snapshot: " + file);
+                }
+            }
+            return new FriendCodeIndex(table);
+        }
+    }
+
+    private static Table rehash(Table old, int capacity) {
+        Table grown = new Table(capacity);
+        for (int slot = 0; slot < old.capacity; slot++) {
+            int offset = slot * SLOT;
+            int state = old.buffer.getInt(offset + STATE);
+            if (state != EMPTY && state != REMOVED) {
+                grown.put(old.buffer.getLong(offset), old.buffer.getLong(offset + 8), state);
+            }
+        }
+        return grown;
+    }
+
+    private static int capacityFor(int codes) {
+        int needed = (int) Math.ceil(Math.max(16, codes) / MAX_LOAD);
+        int capacity = Integer.highestOneBit(needed - 1) << 1;
+        if (capacity <= 0 || (long) capacity * SLOT > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many friend codes for one table: " + codes);
+        }
+        return capacity;
+    }
+
+    private static int hash(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * One generation of the hash table. Only the writer mutates it.
+     */
+    private static final class Table {
+        final ByteBuffer buffer;
+        final int capacity;
+        int size;
+        /** Slots that are not empty, counting removed ones, which still fill the table. */
+        int used;
+
+        Table(int capacity) {
+            this.capacity = capacity;
+            this.buffer = ByteBuffer.allocateDirect(capacity * SLOT).order(ByteOrder.nativeOrder());
+        }
+
+        void put(long high, long low, int state) {
+            int mask = capacity - 1;
+            for (int slot = hash(high, low) & mask; ; slot = (slot + 1) & mask) {
+                int offset = slot * SLOT;
+                int current = buffer.getInt(offset + STATE);
+                if (current == EMPTY) {
+                    buffer.putLong(offset, high);
+                    buffer.putLong(offset + 8, low);
+                    INTS.setRelease(buffer, offset + STATE, state);
+                    size++;
+                    used++;
+                    return;
+                }
+                if (current != REMOVED && buffer.getLong(offset) == high && buffer.getLong(offset + 8) == low) {
+                    INTS.setRelease(buffer, offset + STATE, state);
+                    return;
+                }
+            }
+        }
+
+        boolean remove(long high, long low) {
+            int mask = capacity - 1;
+            for (int slot = hash(high, low) & mask; ; slot = (slot + 1) & mask) {
+                int offset = slot * SLOT;
+                int current = buffer.getInt(offset + STATE);
+                if (current == EMPTY) {
+                    return false;
+                }
+                if (current != REMOVED && buffer.getLong(offset) == high && buffer.getLong(offset + 8) == low) {
+                    INTS.setRelease(buffer, offset + STATE, REMOVED);
+                    size--;
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import models.Friend;
+
+/**
+ * In-memory friend graph. Accepted friendships are stored both ways as compressed
+ * sparse rows: offsets[u]..offsets[u + 1] is u's slice of a sorted int array of friend
+ * IDs. User IDs are auto-increment ints, so they index the rows directly.
+ *
+ * New and removed edges go into small sorted overflow arrays of packed (user, friend)
+ * longs, and are folded into the rows once there are MERGE_THRESHOLD of them. Every
+ * change publishes a new immutable snapshot, so reads never lock or box.
+ */
+public class FriendGraph {
+
+    /** Pending changes that trigger a merge into the rows. */
+    public static final int MERGE_THRESHOLD = 4096;
+
+    /** Friendship status stored in the graph; any other status removes the edge. */
+    public static final String ACCEPTED = "accepted";
+
+    private static final long[] NO_EDGES = new long[0];
+
+    private volatile Snapshot snapshot = new Snapshot(new int[1], new int[0], NO_EDGES, NO_EDGES);
+
+    /**
+     * Builds a graph from friendship rows
+     * @param friends friendships; only accepted ones become edges
+     * @return graph
+     */
+    public static FriendGraph build(Iterable<Friend> friends) {
+        long[] edges = new long[64];
+        int count = 0;
+        for (Friend friend : friends) {
+            if (!ACCEPTED.equalsIgnoreCase(friend.getFriendshipStatus())) {
+                continue;
+            }
+            checkIDs(friend.getUserID1(), friend.getUserID2());
+            if (count + 2 > edges.length) {
+                edges = Arrays.copyOf(edges, edges.length * 2);
+            }
+            edges[count++] = pack(friend.getUserID1(), friend.getUserID2());
+            edges[count++] = pack(friend.getUserID2(), friend.getUserID1());
+        }
+        Arrays.sort(edges, 0, count);
+        int rows = count == 0 ? 0 : source(edges[count - 1]) + 1;
+        int[] offsets = new int[rows + 1];
+        int[] targets = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && edges[i] == edges[i - 1]) {
+                continue;
+            }
+            offsets[source(edges[i]) + 1]++;
+            targets[size++] = target(edges[i]);
+        }
+        for (int user = 0; user < rows; user++) {
+            offsets[user + 1] += offsets[user];
+        }
+        FriendGraph graph = new FriendGraph();
+        graph.snapshot = new Snapshot(offsets, Arrays.copyOf(targets, size), NO_EDGES, NO_EDGES);
+        return graph;
+    }
+
+    /**
+     * Applies a friendship change: accepted adds the edge, any other status removes it
+     * @param friend friendship row
+     */
+    public void apply(Friend friend) {
+        if (ACCEPTED.equalsIgnoreCase(friend.getFriendshipStatus())) {
+            addFriendship(friend.getUserID1(), friend.getUserID2());
+        } else {
+            removeFriendship(friend.getUserID1(), friend.getUserID2());
+        }
+    }
+
+    /**
+     * Adds a friendship in both directions
+     * @param userID1 first user ID
+     * @param userID2 second user ID
+     */
+    public synchronized void addFriendship(int userID1, int userID2) {
+        checkIDs(userID1, userID2);
+        if (areFriends(userID1, userID2)) {
+            return;
+        }
+        Snapshot current = snapshot;
+        long[] added = current.added;
+        long[] removed = current.removed;
+        long forward = pack(userID1, userID2);
+        long backward = pack(userID2, userID1);
+        if (Arrays.binarySearch(removed, forward) >= 0) {
+            removed = without(without(removed, forward), backward);
+        } else {
+            added = with(with(added, forward), backward);
+        }
+        publish(current.offsets, current.targets, added, removed);
+    }
+
+    /**
+     * Removes a friendship in both directions
+     * @param userID1 first user ID
+     * @param userID2 second user ID
+     */
+    public synchronized void removeFriendship(int userID1, int userID2) {
+        checkIDs(userID1, userID2);
+        if (!areFriends(userID1, userID2)) {
+            return;
+        }
+        Snapshot current = snapshot;
+        long[] added = current.added;
+        long[] removed = current.removed;
+        long forward = pack(userID1, userID2);
+        long backward = pack(userID2, userID1);
+        if (Arrays.binarySearch(added, forward) >= 0) {
+            added = without(without(added, forward), backward);
+        } else {
+            removed = with(with(removed, forward), backward);
+        }
+        publish(current.offsets, current.targets, added, removed);
+    }
+
+    /**
+     * Checks if two users are friends
+     * @param userID1 first user ID
+     * @param userID2 second user ID
+     * @return true if they are friends
+     */
+    public boolean areFriends(int userID1, int userID2) {
+        Snapshot s = snapshot;
+        long edge = pack(userID1, userID2);
+        if (Arrays.binarySearch(s.added, edge) >= 0) {
+            return true;
+        }
+        if (userID1 < 0 || userID1 >= s.rows() || Arrays.binarySearch(s.removed, edge) >= 0) {
+            return false;
+        }
+        return Arrays.binarySearch(s.targets, s.offsets[userID1], s.offsets[userID1 + 1], userID2) >= 0;
+    }
+
+    /**
+     * Gets a user's friends
+     * @param userID user ID
+     * @return friend user IDs, sorted
+     */
+    public int[] friendsOf(int userID) {
+        return snapshot.friendsOf(userID);
+    }
+
+    /**
+     * Calls an action for each of a user's friends, without allocating
+     * @param userID user ID
+     * @param action called with each friend user ID, in sorted order
+     */
+    public void forEachFriend(int userID, IntConsumer action) {
+        snapshot.visit(userID, null, action);
+    }
+
+    /**
+     * Gets friends two users have in common
+     * @param userID1 first user ID
+     * @param userID2 second user ID
+     * @return mutual friend user IDs, sorted
+     */
+    public int[] mutualFriends(int userID1, int userID2) {
+        Snapshot s = snapshot;
+        int[] a = s.friendsOf(userID1);
+        int[] b = s.friendsOf(userID2);
+        int[] mutual = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                mutual[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(mutual, count);
+    }
+
+    /**
+     * Gets a user's number of friends
+     * @param userID user ID
+     * @return number of friends
+     */
+    public int degree(int userID) {
+        return snapshot.visit(userID, null, null);
+    }
+
+    /**
+     * Folds pending changes into the rows. Called automatically once MERGE_THRESHOLD
+     * changes are pending.
+     */
+    public synchronized void merge() {
+        Snapshot current = snapshot;
+        int rows = current.rows();
+        if (current.added.length > 0) {
+            rows = Math.max(rows, source(current.added[current.added.length - 1]) + 1);
+        }
+        int[] offsets = new int[rows + 1];
+        int[] targets = new int[current.targets.length + current.added.length - current.removed.length];
+        int position = 0;
+        for (int user = 0; user < rows; user++) {
+            offsets[user] = position;
+            int[] friends = current.friendsOf(user);
+            System.arraycopy(friends, 0, targets, position, friends.length);
+            position += friends.length;
+        }
+        offsets[rows] = position;
+        snapshot = new Snapshot(offsets, targets, NO_EDGES, NO_EDGES);
+    }
+
+    /**
+     * Gets number of changes waiting to be merged
+     * @return pending edge changes, counting each direction
+     */
+    public int pendingChanges() {
+        Snapshot s = snapshot;
+        return s.added.length + s.removed.length;
+    }
+
+    private void publish(int[] offsets, int[] targets, long[] added, long[] removed) {
+        snapshot = new Snapshot(offsets, targets, added, removed);
+        if (added.length + removed.length >= MERGE_THRESHOLD) {
+            merge();
+        }
+    }
+
+    private static void checkIDs(int userID1, int userID2) {
+        if (userID1 < 0 || userID2 < 0 || userID1 == userID2) {
+            throw new IllegalArgumentException("Invalid friendship between " + userID1 + " and " + userID2);
+        }
+    }
+
+    private static long pack(int userID, int friendID) {
+        return ((long) userID << 32) | (friendID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the first packed edge past a user's edges. Friend IDs are never negative, so
+     * every edge of the user is at most pack(userID, Integer.MAX_VALUE), and adding one to
+     * that can't overflow even for the largest user ID.
+     */
+    private static long end(int userID) {
+        return pack(userID, Integer.MAX_VALUE) + 1;
+    }
+
+    private static int source(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    private static int target(long edge) {
+        return (int) edge;
+    }
+
+    private static int lowerBound(long[] edges, long edge) {
+        int index = Arrays.binarySearch(edges, edge);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static long[] with(long[] edges, long edge) {
+        int index = lowerBound(edges, edge);
+        long[] copy = new long[edges.length + 1];
+        System.arraycopy(edges, 0, copy, 0, index);
+        copy[index] = edge;
+        System.arraycopy(edges, index, copy, index + 1, edges.length - index);
+        return copy;
+    }
+
+    private static long[] without(long[] edges, long edge) {
+        int index = Arrays.binarySearch(edges, edge);
+        if (index < 0) {
+            return edges;
+        }
+        long[] copy = new long[edges.length - 1];
+        System.arraycopy(edges, 0, copy, 0, index);
+        System.arraycopy(edges, index + 1, copy, index, edges.length - index - 1);
+        return copy;
+    }
+
+    /**
+     * Immutable view of the rows plus pending changes.
+     */
+    private static final class Snapshot {
+        final int[] offsets;
+        final int[] targets;
+        final long[] added;
+        final long[] removed;
+
+        Snapshot(int[] offsets, int[] targets, long[] added, long[] removed) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.added = added;
+            this.removed = removed;
+        }
+
+        int rows() {
+            return offsets.length - 1;
+        }
+
+        int[] friendsOf(int userID) {
+            int[] friends = new int[upperBound(userID)];
+            int count = visit(userID, friends, null);
+            return count == friends.length ? friends : Arrays.copyOf(friends, count);
+        }
+
+        /**
+         * Most friends a user can have: their row plus their pending additions
+         */
+        int upperBound(int userID) {
+            int rowSize = userID >= 0 && userID < rows() ? offsets[userID + 1] - offsets[userID] : 0;
+            return rowSize + lowerBound(added, end(userID)) - lowerBound(added, pack(userID, 0));
+        }
+
+        /**
+         * Walks a user's row merged with pending additions, skipping pending removals
+         * @param userID user ID
+         * @param out receives friend IDs if not null
+         * @param action called with each friend ID if not null
+         * @return number of friends
+         */
+        int visit(int userID, int[] out, IntConsumer action) {
+            int from = userID >= 0 && userID < rows() ? offsets[userID] : 0;
+            int to = userID >= 0 && userID < rows() ? offsets[userID + 1] : 0;
+            int a = lowerBound(added, pack(userID, 0));
+            int addedTo = lowerBound(added, end(userID));
+            int removedAt = lowerBound(removed, pack(userID, 0));
+            int count = 0;
+            while (from < to || a < addedTo) {
+                int friend;
+                if (from < to && (a >= addedTo || targets[from] < target(added[a]))) {
+                    friend = targets[from++];
+                    long edge = pack(userID, friend);
+                    while (removedAt < removed.length && removed[removedAt] < edge) {
+                        removedAt++;
+                    }
+                    if (removedAt < removed.length && removed[removedAt] == edge) {
+                        continue;
+                    }
+                } else {
+                    friend = target(added[a++]);
+                }
+                if (out != null) {
+                    out[count] = friend;
+                }
+                if (action != null) {
+                    action.accept(friend);
+                }
+                count++;
+            }
+            return count;
+        }
+    }
+}
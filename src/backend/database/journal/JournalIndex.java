@@ -0,0 +1,187 @@
+package journal;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+import models.Skribble;
+
+/**
+ * Per-user index of journal entries ordered by (dateCreated, entryID). Each user's
+ * entries are one sorted long array, so newest-N, before-cursor and date-range pages
+ * are a binary search plus a walk over the k results.
+ *
+ * Cursors are opaque strings; they encode the last (date, entryID) key of a page so the
+ * next page starts right after it even if entries were added or deleted in between.
+ * Entries without a date sort as the oldest.
+ */
+public class JournalIndex {
+
+    private final ConcurrentHashMap<Integer, Timeline> users = new ConcurrentHashMap<>();
+
+    /**
+     * Adds an entry
+     * @param skribble journal entry
+     */
+    public void add(Skribble skribble) {
+        users.computeIfAbsent(skribble.getUserID(), id -> new Timeline())
+                .add(key(skribble.getDateCreated(), skribble.getEntryID()));
+    }
+
+    /**
+     * Removes an entry
+     * @param userID user ID
+     * @param entryID entry ID
+     * @param dateCreated date the entry was created
+     * @return true if the entry was indexed
+     */
+    public boolean remove(int userID, int entryID, LocalDate dateCreated) {
+        Timeline timeline = users.get(userID);
+        return timeline != null && timeline.remove(key(dateCreated, entryID));
+    }
+
+    /**
+     * Gets a page of a user's journal, newest first
+     * @param userID user ID
+     * @param cursor cursor from the previous page, or null for the newest entries
+     * @param limit maximum entries on the page
+     * @return page
+     */
+    public JournalPage page(int userID, String cursor, int limit) {
+        return range(userID, null, null, cursor, limit);
+    }
+
+    /**
+     * Gets a page of a user's entries created between two dates, newest first
+     * @param userID user ID
+     * @param from first day to include, or null for no lower bound
+     * @param to last day to include, or null for no upper bound
+     * @param cursor cursor from the previous page, or null to start at the newest
+     * @param limit maximum entries on the page
+     * @return page
+     */
+    public JournalPage range(int userID, LocalDate from, LocalDate to, String cursor, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        long low = from == null ? Long.MIN_VALUE : key(from, 0);
+        long high = to == null ? Long.MAX_VALUE : key(to, -1);
+        if (cursor != null) {
+            long after = decodeCursor(cursor);
+            if (after == Long.MIN_VALUE) {
+                return new JournalPage(new int[0], null);
+            }
+            high = Math.min(high, after - 1);
+        }
+        Timeline timeline = users.get(userID);
+        if (timeline == null) {
+            return new JournalPage(new int[0], null);
+        }
+        return timeline.page(low, high, limit);
+    }
+
+    /**
+     * Gets number of indexed entries for a user
+     * @param userID user ID
+     * @return number of entries
+     */
+    public int count(int userID) {
+        Timeline timeline = users.get(userID);
+        return timeline == null ? 0 : timeline.size();
+    }
+
+    /**
+     * Packs a date and entry ID so that keys sort by date, then entry ID
+     * @param date date created, may be null
+     * @param entryID entry ID
+     * @return key
+     */
+    static long key(LocalDate date, int entryID) {
+        long day = date == null ? Integer.MIN_VALUE : date.toEpochDay();
+        return (day << 32) | (entryID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Encodes a key as an opaque cursor
+     * @param key last key of a page
+     * @return cursor
+     */
+    static String encodeCursor(long key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(ByteBuffer.allocate(8).putLong(key).array());
+    }
+
+    /**
+     * Decodes a cursor made by encodeCursor
+     * @param cursor cursor
+     * @return key
+     */
+    static long decodeCursor(String cursor) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid journal cursor: " + cursor, e);
+        }
+        if (bytes.length != 8) {
+            throw new IllegalArgumentException("Invalid journal cursor: " + cursor);
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    /**
+     * One user's keys, sorted ascending. Entries mostly arrive in date order, so adds are
+     * usually an append at the end.
+     */
+    private static final class Timeline {
+        private long[] keys = new long[16];
+        private int size;
+
+        synchronized void add(long key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            keys[index] = key;
+            size++;
+        }
+
+        synchronized boolean remove(long key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        synchronized JournalPage page(long low, long high, int limit) {
+            // Last index with key <= high, walking down until key < low or the page is full.
+            int index = Arrays.binarySearch(keys, 0, size, high);
+            int start = index >= 0 ? index : -index - 2;
+            int count = 0;
+            int[] entryIDs = new int[Math.min(limit, start + 1)];
+            int i = start;
+            while (i >= 0 && count < entryIDs.length && keys[i] >= low) {
+                entryIDs[count++] = (int) keys[i];
+                i--;
+            }
+            if (count < entryIDs.length) {
+                entryIDs = Arrays.copyOf(entryIDs, count);
+            }
+            boolean more = count > 0 && i >= 0 && keys[i] >= low;
+            return new JournalPage(entryIDs, more ? encodeCursor(keys[i + 1]) : null);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package journal;
+
+/**
+ * Represents one page of a user's journal, newest first. Pass the next cursor back to
+ * JournalIndex to get the page after this one.
+ */
+public final class JournalPage {
+    private final int[] entryIDs;
+    private final String nextCursor;
+
+    /**
+     * Constructor
+     * @param entryIDs entry IDs on this page, newest first
+     * @param nextCursor cursor for the next page, or null if this is the last page
+     */
+    JournalPage(int[] entryIDs, String nextCursor) {
+        this.entryIDs = entryIDs;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * ToString
+     */
+    @Override
+    public String toString() {
+        return "JournalPage [entries=" + entryIDs.length + ", nextCursor=" + nextCursor + "]";
+    }
+
+    /**
+     * Gets entry IDs on this page, newest first
+     * @return entry IDs
+     */
+    public int[] getEntryIDs() { return entryIDs.clone(); }
+
+    /**
+     * Gets number of entries on this page
+     * @return number of entries
+     */
+    public int size() { return entryIDs.length; }
+
+    /**
+     * Gets entry ID at a position on this page
+     * @param index position, 0 is newest
+     * @return entry ID
+     */
+    public int getEntryID(int index) { return entryIDs[index]; }
+
+    /**
+     * Gets cursor for the next page
+     * @return cursor, or null if there are no older entries
+     */
+    public String getNextCursor() { return nextCursor; }
+
+    /**
+     * Checks if there are older entries after this page
+     * @return true if getNextCursor is not null
+     */
+    public boolean hasMore() { return nextCursor != null; }
+}
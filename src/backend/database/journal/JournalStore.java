@@ -0,0 +1,423 @@
+package journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import codec.ModelCodec;
+import codec.Wire;
+import models.Skribble;
+
+/**
+ * Log-structured store for Skribble journal entries. Entries are appended to
+ * memory-mapped segment files in the ModelCodec encoding, deletes append a tombstone,
+ * and a per-user index points at each live record. A JournalIndex over the live entries
+ * is kept up to date for date-ordered paging. Reading a user's history returns
+ * views straight into the mapped segments. Compaction copies the live records out of
+ * mostly dead segments and deletes them.
+ *
+ * Appends, deletes and compaction are serialized on the store; reads take no store lock.
+ */
+public class JournalStore implements AutoCloseable {
+
+    /** Segments with at least this fraction of dead bytes get compacted. */
+    public static final double COMPACTION_THRESHOLD = 0.5;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final Logger LOG = Logger.getLogger(JournalStore.class.getName());
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Integer, UserOffsets> users = new ConcurrentHashMap<>();
+    private final JournalIndex index = new JournalIndex();
+    private Segment active;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    private JournalStore(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens a store, replaying existing segments to rebuild the index
+     * @param directory directory holding the segment files
+     * @param segmentSize size of each segment file in bytes
+     * @return store
+     * @throws IOException if a segment can't be opened
+     */
+    public static JournalStore open(Path directory, int segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        JournalStore store = new JournalStore(directory, segmentSize);
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        ids.sort(null);
+        for (int id : ids) {
+            Segment segment = new Segment(id, store.segmentPath(id), segmentSize);
+            store.segments.put(id, segment);
+            segment.recover((offset, type, payload) -> store.replay(segment, offset, type, payload));
+        }
+        store.active = ids.isEmpty() ? store.newSegment(1) : store.segments.lastEntry().getValue();
+        return store;
+    }
+
+    /**
+     * Appends a journal entry. Appending an entry ID the user already has replaces it.
+     * @param skribble journal entry
+     * @throws IOException if a new segment can't be created
+     */
+    public synchronized void append(Skribble skribble) throws IOException {
+        ByteBuffer payload = encode(skribble);
+        long location = write(Segment.PUT, payload);
+        long previous = offsets(skribble.getUserID()).put(skribble.getEntryID(), location);
+        if (previous >= 0) {
+            unindex(skribble.getUserID(), skribble.getEntryID(), previous);
+            markDead(previous);
+        }
+        index.add(skribble);
+    }
+
+    /**
+     * Deletes a journal entry by appending a tombstone
+     * @param userID user ID
+     * @param entryID entry ID
+     * @return true if the entry existed
+     * @throws IOException if a new segment can't be created
+     */
+    public synchronized boolean delete(int userID, int entryID) throws IOException {
+        UserOffsets offsets = users.get(userID);
+        long location = offsets == null ? -1 : offsets.get(entryID);
+        if (location < 0) {
+            return false;
+        }
+        ByteBuffer payload = scratch(15);
+        Wire.writeInt(payload, entryID);
+        Wire.writeInt(payload, userID);
+        Wire.writeInt(payload, UserOffsets.segmentID(location));
+        payload.flip();
+        long tombstone = write(Segment.TOMBSTONE, payload);
+        // A tombstone is garbage as soon as it's written; it only lives until its target is compacted.
+        markDead(tombstone);
+        offsets.remove(entryID);
+        unindex(userID, entryID, location);
+        markDead(location);
+        return true;
+    }
+
+    /**
+     * Gets one journal entry
+     * @param userID user ID
+     * @param entryID entry ID
+     * @return journal entry, or null if the user has no live entry with that ID
+     */
+    public Skribble get(int userID, int entryID) {
+        ByteBuffer payload = payload(userID, entryID);
+        return payload == null ? null : ModelCodec.decodeSkribble(payload);
+    }
+
+    /**
+     * Gets the entries on a page from the journal index
+     * @param page page from getIndex()
+     * @param userID user ID the page belongs to
+     * @return journal entries, newest first
+     */
+    public List<Skribble> entries(JournalPage page, int userID) {
+        List<Skribble> entries = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            Skribble skribble = get(userID, page.getEntryID(i));
+            if (skribble != null) {
+                entries.add(skribble);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the IDs, dates and moods of the entries on a page from the journal index,
+     * without decoding entry text
+     * @param page page from getIndex()
+     * @param userID user ID the page belongs to
+     * @return journal entries with a null entry and AI prompt, newest first
+     */
+    public List<Skribble> metadata(JournalPage page, int userID) {
+        List<Skribble> entries = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            ByteBuffer payload = payload(userID, page.getEntryID(i));
+            if (payload != null) {
+                entries.add(ModelCodec.decodeSkribbleMetadata(payload));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the date-ordered index over live entries
+     * @return journal index
+     */
+    public JournalIndex getIndex() { return index; }
+
+    /**
+     * Gets a user's entries in entry ID order
+     * @param userID user ID
+     * @return journal entries
+     */
+    public List<Skribble> history(int userID) {
+        List<ByteBuffer> views = historyViews(userID);
+        List<Skribble> entries = new ArrayList<>(views.size());
+        for (ByteBuffer view : views) {
+            entries.add(ModelCodec.decodeSkribble(view));
+        }
+        return entries;
+    }
+
+    /**
+     * Gets read-only views of a user's encoded entries, straight from the mapped
+     * segments with no copying. Decode each with ModelCodec.decodeSkribble.
+     * @param userID user ID
+     * @return encoded entries in entry ID order
+     */
+    public List<ByteBuffer> historyViews(int userID) {
+        UserOffsets offsets = users.get(userID);
+        if (offsets == null) {
+            return new ArrayList<>();
+        }
+        while (true) {
+            long[] locations = offsets.snapshot();
+            List<ByteBuffer> views = new ArrayList<>(locations.length);
+            for (long location : locations) {
+                Segment segment = segments.get(UserOffsets.segmentID(location));
+                if (segment == null) {
+                    break;
+                }
+                views.add(segment.payload(UserOffsets.offset(location)));
+            }
+            // A missing segment means compaction moved records after the snapshot; the index already has the new location.
+            if (views.size() == locations.length) {
+                return views;
+            }
+        }
+    }
+
+    /**
+     * Gets number of live entries for a user
+     * @param userID user ID
+     * @return number of entries
+     */
+    public int count(int userID) {
+        UserOffsets offsets = users.get(userID);
+        return offsets == null ? 0 : offsets.size();
+    }
+
+    /**
+     * Compacts every sealed segment whose dead ratio is over COMPACTION_THRESHOLD. Live
+     * records are copied to the end of the log, then the old segment file is deleted.
+     * @return number of segments compacted
+     * @throws IOException if a segment can't be written or deleted
+     */
+    public int compact() throws IOException {
+        int compacted = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            synchronized (this) {
+                if (segment != active && segments.containsKey(segment.getId())
+                        && segment.deadRatio() >= COMPACTION_THRESHOLD) {
+                    compact(segment);
+                    compacted++;
+                }
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Runs compaction in the background. A failed run is logged and the schedule carries on.
+     * @param executor executor to run on
+     * @param period time between runs
+     * @param unit unit of period
+     * @return handle to cancel the schedule
+     */
+    public ScheduledFuture<?> scheduleCompaction(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Journal compaction failed, retrying on the next run", e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Flushes the active segment to disk
+     */
+    public synchronized void force() {
+        active.force();
+    }
+
+    /**
+     * Flushes and closes every segment
+     * @throws IOException if a segment can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        segment.scan((offset, type, payload) -> {
+            try {
+                copyIfLive(segment, offset, type, payload);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // The copies must be on disk before the only other copy of the records is deleted.
+        active.force();
+        segments.remove(segment.getId());
+        segment.delete();
+    }
+
+    private void copyIfLive(Segment segment, int offset, byte type, ByteBuffer payload) throws IOException {
+        ByteBuffer fields = payload.duplicate();
+        // Puts and tombstones both start with entryID then userID, the ModelCodec field order.
+        int entryID = Wire.readInt(fields);
+        int userID = Wire.readInt(fields);
+        if (type == Segment.PUT) {
+            UserOffsets offsets = users.get(userID);
+            long location = UserOffsets.location(segment.getId(), offset);
+            if (offsets != null && offsets.get(entryID) == location) {
+                offsets.replace(entryID, location, write(Segment.PUT, payload.duplicate()));
+            }
+        } else {
+            // Keep the tombstone only while the record it deletes is still on disk somewhere else.
+            int target = Wire.readInt(fields);
+            if (target != segment.getId() && segments.containsKey(target)) {
+                markDead(write(Segment.TOMBSTONE, payload.duplicate()));
+            }
+        }
+    }
+
+    private void replay(Segment segment, int offset, byte type, ByteBuffer payload) {
+        ByteBuffer fields = payload.duplicate();
+        // Puts and tombstones both start with entryID then userID, the ModelCodec field order.
+        int entryID = Wire.readInt(fields);
+        int userID = Wire.readInt(fields);
+        long location = UserOffsets.location(segment.getId(), offset);
+        if (type == Segment.PUT) {
+            long previous = offsets(userID).put(entryID, location);
+            if (previous >= 0) {
+                unindex(userID, entryID, previous);
+                markDead(previous);
+            }
+            LocalDate dateCreated = Wire.readDate(fields);
+            index.add(new Skribble(entryID, userID, dateCreated, null, null, null));
+        } else {
+            segment.markDead(segment.recordSize(offset));
+            // Only honour the tombstone if it targets the copy we have; the entry may have been written again since.
+            int target = Wire.readInt(fields);
+            UserOffsets offsets = users.get(userID);
+            long current = offsets == null ? -1 : offsets.get(entryID);
+            if (current >= 0 && UserOffsets.segmentID(current) == target) {
+                offsets.remove(entryID);
+                unindex(userID, entryID, current);
+                markDead(current);
+            }
+        }
+    }
+
+    private long write(byte type, ByteBuffer payload) throws IOException {
+        int offset = active.append(type, payload);
+        if (offset < 0) {
+            if (Segment.HEADER + 1 + payload.remaining() > segmentSize) {
+                throw new IllegalArgumentException("Record of " + payload.remaining() + " bytes is larger than a segment");
+            }
+            active.force();
+            active = newSegment(active.getId() + 1);
+            offset = active.append(type, payload);
+        }
+        return UserOffsets.location(active.getId(), offset);
+    }
+
+    private void unindex(int userID, int entryID, long location) {
+        Segment segment = segments.get(UserOffsets.segmentID(location));
+        if (segment != null) {
+            ByteBuffer fields = segment.payload(UserOffsets.offset(location));
+            Wire.readInt(fields);
+            Wire.readInt(fields);
+            index.remove(userID, entryID, Wire.readDate(fields));
+        }
+    }
+
+    private void markDead(long location) {
+        Segment segment = segments.get(UserOffsets.segmentID(location));
+        if (segment != null) {
+            segment.markDead(segment.recordSize(UserOffsets.offset(location)));
+        }
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Segment segment = new Segment(id, segmentPath(id), segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private UserOffsets offsets(int userID) {
+        return users.computeIfAbsent(userID, id -> new UserOffsets());
+    }
+
+    /**
+     * Gets a view of a live entry's encoded record, looking the location up again if
+     * compaction retired its segment in between
+     */
+    private ByteBuffer payload(int userID, int entryID) {
+        UserOffsets offsets = users.get(userID);
+        while (offsets != null) {
+            long location = offsets.get(entryID);
+            if (location < 0) {
+                return null;
+            }
+            Segment segment = segments.get(UserOffsets.segmentID(location));
+            if (segment != null) {
+                return segment.payload(UserOffsets.offset(location));
+            }
+        }
+        return null;
+    }
+
+    private ByteBuffer encode(Skribble skribble) {
+        ByteBuffer payload = scratch(ModelCodec.sizeOf(skribble));
+        ModelCodec.encode(payload, skribble);
+        return payload.flip();
+    }
+
+    private ByteBuffer scratch(int size) {
+        if (scratch.capacity() < size) {
+            scratch = ByteBuffer.allocate(Math.max(size, scratch.capacity() * 2));
+        }
+        return scratch.clear();
+    }
+}
@@ -0,0 +1,196 @@
+package journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped segment file of the journal log. A record is laid out as
+ * [int length][int crc][byte type][payload], where length and crc cover type and
+ * payload. The file is pre-sized, so the first zero length marks the end of the log.
+ */
+final class Segment {
+
+    static final int HEADER = 8;
+    static final byte PUT = 1;
+    static final byte TOMBSTONE = 2;
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final AtomicLong deadBytes = new AtomicLong();
+    private final CRC32 appendCrc = new CRC32();
+    private volatile int writePosition;
+
+    /**
+     * Opens or creates a segment file and maps it
+     * @param id segment ID, also its position in the log
+     * @param path segment file
+     * @param size mapped size in bytes
+     * @throws IOException if the file can't be opened or mapped
+     */
+    Segment(int id, Path path, int size) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+    }
+
+    /**
+     * Appends a record at the write position
+     * @param type PUT or TOMBSTONE
+     * @param payload payload, read from position to limit
+     * @return offset of the record, or -1 if the segment is full
+     */
+    int append(byte type, ByteBuffer payload) {
+        int length = 1 + payload.remaining();
+        int offset = writePosition;
+        if (offset + HEADER + length > mapped.capacity()) {
+            return -1;
+        }
+        appendCrc.reset();
+        appendCrc.update(type);
+        appendCrc.update(payload.duplicate());
+        mapped.put(offset + HEADER, type);
+        mapped.put(offset + HEADER + 1, payload, payload.position(), payload.remaining());
+        mapped.putInt(offset + 4, (int) appendCrc.getValue());
+        // Length goes in last so a torn write leaves a zero length, which recovery treats as the end.
+        mapped.putInt(offset, length);
+        writePosition = offset + HEADER + length;
+        return offset;
+    }
+
+    /**
+     * Scans the segment from the start, stopping at the first empty or corrupt record,
+     * and moves the write position there. Used when reopening a segment.
+     * @param visitor called with each valid record
+     */
+    void recover(RecordVisitor visitor) {
+        writePosition = scan(visitor);
+    }
+
+    /**
+     * Visits every valid record in the segment
+     * @param visitor called with each valid record
+     * @return offset just past the last valid record
+     */
+    int scan(RecordVisitor visitor) {
+        int offset = 0;
+        while (offset + HEADER < mapped.capacity()) {
+            int length = mapped.getInt(offset);
+            if (length <= 0 || offset + HEADER + length > mapped.capacity()) {
+                break;
+            }
+            ByteBuffer body = slice(offset + HEADER, length);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != mapped.getInt(offset + 4)) {
+                break;
+            }
+            visitor.visit(offset, body.get(0), slice(offset + HEADER + 1, length - 1));
+            offset += HEADER + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Gets a read-only view of a record's payload without copying
+     * @param offset record offset
+     * @return payload view
+     */
+    ByteBuffer payload(int offset) {
+        return slice(offset + HEADER + 1, mapped.getInt(offset) - 1);
+    }
+
+    /**
+     * Gets the type of a record
+     * @param offset record offset
+     * @return PUT or TOMBSTONE
+     */
+    byte type(int offset) {
+        return mapped.get(offset + HEADER);
+    }
+
+    /**
+     * Gets the size of a whole record, header included
+     * @param offset record offset
+     * @return size in bytes
+     */
+    int recordSize(int offset) {
+        return HEADER + mapped.getInt(offset);
+    }
+
+    /**
+     * Records that bytes in this segment are no longer live
+     * @param bytes number of bytes
+     */
+    void markDead(int bytes) {
+        deadBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Gets the fraction of written bytes that are dead
+     * @return dead ratio between 0 and 1
+     */
+    double deadRatio() {
+        int written = writePosition;
+        return written == 0 ? 0 : (double) deadBytes.get() / written;
+    }
+
+    /**
+     * Flushes written records to disk
+     */
+    void force() {
+        mapped.force();
+    }
+
+    /**
+     * Closes the channel and deletes the file. Readers holding views keep working until
+     * the mapping is garbage collected.
+     * @throws IOException if the file can't be deleted
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Closes the channel
+     * @throws IOException if the channel can't be closed
+     */
+    void close() throws IOException {
+        mapped.force();
+        channel.close();
+    }
+
+    /**
+     * Gets segment ID
+     * @return segment ID
+     */
+    int getId() { return id; }
+
+    /**
+     * Gets write position
+     * @return offset the next record will be written at
+     */
+    int getWritePosition() { return writePosition; }
+
+    private ByteBuffer slice(int offset, int length) {
+        return mapped.slice(offset, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Receives records while a segment is scanned.
+     */
+    interface RecordVisitor {
+        void visit(int offset, byte type, ByteBuffer payload);
+    }
+}
@@ -0,0 +1,141 @@
+package journal;
+
+import java.util.Arrays;
+
+/**
+ * Locations of one user's live journal records, kept sorted by entry ID so an entry is
+ * found by binary search. A location packs the segment ID in the high 32 bits and the
+ * record offset in the low 32 bits.
+ */
+final class UserOffsets {
+
+    private int[] entryIDs = new int[8];
+    private long[] locations = new long[8];
+    private int size;
+
+    /**
+     * Packs a segment ID and offset into a location
+     * @param segmentID segment ID
+     * @param offset record offset
+     * @return location
+     */
+    static long location(int segmentID, int offset) {
+        return ((long) segmentID << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the segment ID of a location
+     * @param location location
+     * @return segment ID
+     */
+    static int segmentID(long location) {
+        return (int) (location >>> 32);
+    }
+
+    /**
+     * Gets the record offset of a location
+     * @param location location
+     * @return record offset
+     */
+    static int offset(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Adds an entry, or moves it if it is already present
+     * @param entryID entry ID
+     * @param location record location
+     * @return previous location, or -1 if the entry is new
+     */
+    synchronized long put(int entryID, long location) {
+        int index = indexOf(entryID);
+        if (index >= 0) {
+            long previous = locations[index];
+            locations[index] = location;
+            return previous;
+        }
+        if (size == entryIDs.length) {
+            entryIDs = Arrays.copyOf(entryIDs, size * 2);
+            locations = Arrays.copyOf(locations, size * 2);
+        }
+        int insert = -index - 1;
+        System.arraycopy(entryIDs, insert, entryIDs, insert + 1, size - insert);
+        System.arraycopy(locations, insert, locations, insert + 1, size - insert);
+        entryIDs[insert] = entryID;
+        locations[insert] = location;
+        size++;
+        return -1;
+    }
+
+    /**
+     * Removes an entry, keeping the rest in order
+     * @param entryID entry ID
+     * @return removed location, or -1 if the entry wasn't present
+     */
+    synchronized long remove(int entryID) {
+        int index = indexOf(entryID);
+        if (index < 0) {
+            return -1;
+        }
+        long location = locations[index];
+        System.arraycopy(entryIDs, index + 1, entryIDs, index, size - index - 1);
+        System.arraycopy(locations, index + 1, locations, index, size - index - 1);
+        size--;
+        return location;
+    }
+
+    /**
+     * Moves an entry only if it is still at the expected location. Used by compaction
+     * so it never overwrites a newer write.
+     * @param entryID entry ID
+     * @param expected location compaction copied from
+     * @param location new location
+     * @return true if the entry was moved
+     */
+    synchronized boolean replace(int entryID, long expected, long location) {
+        int index = indexOf(entryID);
+        if (index < 0 || locations[index] != expected) {
+            return false;
+        }
+        locations[index] = location;
+        return true;
+    }
+
+    /**
+     * Gets the location of an entry
+     * @param entryID entry ID
+     * @return location, or -1 if the entry isn't present
+     */
+    synchronized long get(int entryID) {
+        int index = indexOf(entryID);
+        return index < 0 ? -1 : locations[index];
+    }
+
+    /**
+     * Copies the live locations
+     * @return locations in entry ID order
+     */
+    synchronized long[] snapshot() {
+        return Arrays.copyOf(locations, size);
+    }
+
+    /**
+     * Gets number of live entries
+     * @return number of live entries
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds an entry
+     * @return index of the entry, or (-(insertion point) - 1) if it isn't present
+     */
+    private int indexOf(int entryID) {
+        // New entries usually have the highest ID, so check the end before searching.
+        if (size == 0 || entryIDs[size - 1] < entryID) {
+            return -size - 1;
+        }
+        return Arrays.binarySearch(entryIDs, 0, size, entryID);
+    }
+}
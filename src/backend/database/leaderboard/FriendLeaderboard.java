@@ -0,0 +1,318 @@
+package leaderboard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import graph.FriendGraph;
+import models.Friend;
+import models.User;
+
+/**
+ * Ranks each user among their friends without loading and sorting the friends on every
+ * view. Every user has a board of the top K of themselves and their friends by XP, kept
+ * as an immutable snapshot, so viewing it is one map read however many friends they have.
+ *
+ * When a user's XP changes the new score is pushed through the friend graph to the board
+ * of every friend, each update costing O(K). A board is only rebuilt from the adjacency
+ * when it can't be patched: when a friendship changes, or when a user on a full board
+ * drops below its last place, where a friend off the board may now be ahead of them.
+ * Ties go to the lower user ID, the same as Leaderboard.
+ */
+public class FriendLeaderboard {
+
+    private final FriendGraph graph;
+    private final IntFunction<User> loader;
+    private final int k;
+    private final ConcurrentHashMap<Integer, Integer> xp = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Board> boards = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     * @param graph friend graph
+     * @param loader looks up a user the first time their XP is needed, returning null if
+     *               there is no such user
+     * @param k rows kept on each board
+     */
+    public FriendLeaderboard(FriendGraph graph, IntFunction<User> loader, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.graph = graph;
+        this.loader = loader;
+        this.k = k;
+    }
+
+    /**
+     * Sets a user's XP and pushes it to their own board and every friend's board
+     * @param userID user ID
+     * @param xp experience points
+     */
+    public void setXp(int userID, int xp) {
+        if (xp < 0) {
+            throw new IllegalArgumentException("XP can't be negative: " + xp);
+        }
+        this.xp.put(userID, xp);
+        push(userID, userID);
+        graph.forEachFriend(userID, friend -> push(friend, userID));
+    }
+
+    /**
+     * Applies a friendship change to the graph and rebuilds both users' boards
+     * @param friend friendship row
+     */
+    public void apply(Friend friend) {
+        graph.apply(friend);
+        friendshipChanged(friend.getUserID1(), friend.getUserID2());
+    }
+
+    /**
+     * Rebuilds both users' boards after their friendship was added to or removed from the
+     * graph directly
+     * @param userID1 first user ID
+     * @param userID2 second user ID
+     */
+    public void friendshipChanged(int userID1, int userID2) {
+        rebuildIfPresent(userID1);
+        rebuildIfPresent(userID2);
+    }
+
+    /**
+     * Gets the top of a user's friend board, including the user themselves
+     * @param userID user ID
+     * @return up to K rows, highest first
+     */
+    public List<LeaderboardEntry> top(int userID) {
+        Top top = snapshot(userID);
+        List<LeaderboardEntry> rows = new ArrayList<>(top.userIDs.length);
+        for (int i = 0; i < top.userIDs.length; i++) {
+            rows.add(new LeaderboardEntry(i + 1, top.userIDs[i], top.xp[i]));
+        }
+        return rows;
+    }
+
+    /**
+     * Gets a user's position among their friends. Read from the board when the user is
+     * on it, and counted over their friends otherwise.
+     * @param userID user ID
+     * @return 1-based rank among the user and their friends, or -1 if the user is unknown
+     */
+    public int rankAmongFriends(int userID) {
+        Top top = snapshot(userID);
+        for (int i = 0; i < top.userIDs.length; i++) {
+            if (top.userIDs[i] == userID) {
+                return i + 1;
+            }
+        }
+        int own = xpOf(userID);
+        if (own < 0) {
+            return -1;
+        }
+        int[] ahead = new int[1];
+        graph.forEachFriend(userID, friend -> {
+            int score = xpOf(friend);
+            if (score >= 0 && compare(score, friend, own, userID) < 0) {
+                ahead[0]++;
+            }
+        });
+        return ahead[0] + 1;
+    }
+
+    /**
+     * Gets number of boards built
+     * @return boards
+     */
+    public int size() {
+        return boards.size();
+    }
+
+    /**
+     * Gets a user's board, building it on first use. The board is published empty and
+     * filled under its lock, so a score pushed meanwhile is either seen by the build or
+     * patched in after it.
+     */
+    private Top snapshot(int userID) {
+        Board board = boards.get(userID);
+        if (board == null) {
+            Board created = new Board();
+            board = boards.putIfAbsent(userID, created);
+            if (board == null) {
+                board = created;
+            }
+        }
+        Top top = board.top;
+        if (top != null) {
+            return top;
+        }
+        synchronized (board) {
+            if (board.top == null) {
+                rebuild(userID, board);
+            }
+            return board.top;
+        }
+    }
+
+    /**
+     * Patches a user's score into a board if the board has been built; boards not built
+     * yet pick the score up when they are. The score is read under the board's lock, so
+     * when two updates race the board ends on the later one whichever push runs last.
+     * Everyone off a partial board ranks behind its last row, so the patch is safe unless
+     * the new score also falls behind that row.
+     */
+    private void push(int owner, int userID) {
+        Board board = boards.get(owner);
+        if (board == null) {
+            return;
+        }
+        synchronized (board) {
+            Top top = board.top;
+            Integer current = xp.get(userID);
+            if (top == null || current == null) {
+                return;
+            }
+            int score = current;
+            int[] ids = top.userIDs;
+            int size = ids.length;
+            int at = indexOf(ids, userID);
+            if (at >= 0) {
+                if (!top.complete && compare(score, userID, top.xp[size - 1], ids[size - 1]) > 0) {
+                    rebuild(owner, board);
+                    return;
+                }
+                board.top = top.without(at).with(score, userID, k);
+            } else if (top.complete) {
+                rebuild(owner, board);
+            } else if (compare(score, userID, top.xp[size - 1], ids[size - 1]) < 0) {
+                board.top = top.without(size - 1).with(score, userID, k);
+            }
+        }
+    }
+
+    private void rebuildIfPresent(int userID) {
+        Board board = boards.get(userID);
+        if (board != null) {
+            synchronized (board) {
+                if (board.top != null) {
+                    rebuild(userID, board);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ranks the user and all their friends and keeps the top K; the caller holds the
+     * board's lock
+     */
+    private void rebuild(int userID, Board board) {
+        int[] friends = graph.friendsOf(userID);
+        long[] ranked = new long[friends.length + 1];
+        int count = 0;
+        int own = xpOf(userID);
+        if (own >= 0) {
+            ranked[count++] = sortKey(own, userID);
+        }
+        for (int friend : friends) {
+            int score = xpOf(friend);
+            if (score >= 0) {
+                ranked[count++] = sortKey(score, friend);
+            }
+        }
+        Arrays.sort(ranked, 0, count);
+        int kept = Math.min(k, count);
+        int[] ids = new int[kept];
+        int[] scores = new int[kept];
+        for (int i = 0; i < kept; i++) {
+            scores[i] = Integer.MAX_VALUE - (int) (ranked[i] >> 32);
+            ids[i] = (int) ranked[i] ^ Integer.MIN_VALUE;
+        }
+        board.top = new Top(ids, scores, count <= k);
+    }
+
+    private int xpOf(int userID) {
+        Integer score = xp.get(userID);
+        if (score != null) {
+            return score;
+        }
+        User user = loader.apply(userID);
+        if (user == null) {
+            return -1;
+        }
+        Integer raced = xp.putIfAbsent(userID, user.getXp());
+        return raced == null ? user.getXp() : raced;
+    }
+
+    /**
+     * Packs a score so that ascending long order is highest XP first, then lowest user ID
+     */
+    private static long sortKey(int score, int userID) {
+        return ((long) (Integer.MAX_VALUE - score) << 32) | ((userID ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    private static int compare(int xp1, int userID1, int xp2, int userID2) {
+        return xp1 != xp2 ? Integer.compare(xp2, xp1) : Integer.compare(userID1, userID2);
+    }
+
+    private static int indexOf(int[] ids, int userID) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == userID) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * One user's board; top is replaced, never changed, so readers need no lock. It is
+     * null until the board is first built.
+     */
+    private static final class Board {
+        volatile Top top;
+    }
+
+    /**
+     * Sorted rows of a board.
+     */
+    private static final class Top {
+        final int[] userIDs;
+        final int[] xp;
+        /** True if the board holds every candidate, so nobody off the board can overtake. */
+        final boolean complete;
+
+        Top(int[] userIDs, int[] xp, boolean complete) {
+            this.userIDs = userIDs;
+            this.xp = xp;
+            this.complete = complete;
+        }
+
+        Top without(int index) {
+            int[] ids = new int[userIDs.length - 1];
+            int[] scores = new int[xp.length - 1];
+            System.arraycopy(userIDs, 0, ids, 0, index);
+            System.arraycopy(userIDs, index + 1, ids, index, ids.length - index);
+            System.arraycopy(xp, 0, scores, 0, index);
+            System.arraycopy(xp, index + 1, scores, index, scores.length - index);
+            return new Top(ids, scores, complete);
+        }
+
+        Top with(int score, int userID, int k) {
+            int at = 0;
+            while (at < userIDs.length && compare(xp[at], userIDs[at], score, userID) < 0) {
+                at++;
+            }
+            int size = Math.min(k, userIDs.length + 1);
+            int[] ids = new int[size];
+            int[] scores = new int[size];
+            System.arraycopy(userIDs, 0, ids, 0, Math.min(at, size));
+            System.arraycopy(xp, 0, scores, 0, Math.min(at, size));
+            if (at < size) {
+                ids[at] = userID;
+                scores[at] = score;
+                System.arraycopy(userIDs, at, ids, at + 1, size - at - 1);
+                System.arraycopy(xp, at, scores, at + 1, size - at - 1);
+            }
+            return new Top(ids, scores, complete);
+        }
+    }
+}
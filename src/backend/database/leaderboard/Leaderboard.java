@@ -0,0 +1,138 @@
+package leaderboard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Ranks users by XP, highest first, with ties going to the lower user ID. Scores live in
+ * an order-statistic tree, so rank lookups, the top of the board and the window around a
+ * user all cost O(log n) plus the rows returned, instead of a sort over every user.
+ *
+ * Methods are synchronized; each holds the lock for one tree walk. Leaderboards keeps a
+ * board per age band that only that cohort writes to, but every award also writes to the
+ * shared global boards.
+ */
+public class Leaderboard {
+
+    private final RankTree tree = new RankTree();
+    private final HashMap<Integer, Integer> scores = new HashMap<>();
+
+    /**
+     * Sets a user's XP, adding them to the board if needed
+     * @param userID user ID
+     * @param xp experience points
+     */
+    public synchronized void set(int userID, int xp) {
+        Integer previous = scores.put(userID, xp);
+        if (previous != null) {
+            if (previous == xp) {
+                return;
+            }
+            tree.remove(previous, userID);
+        }
+        tree.insert(xp, userID);
+    }
+
+    /**
+     * Adds to a user's XP, adding them to the board at 0 if needed
+     * @param userID user ID
+     * @param xp experience points to add
+     * @return new XP on this board
+     */
+    public synchronized int add(int userID, int xp) {
+        Integer previous = scores.get(userID);
+        int updated = Math.addExact(previous == null ? 0 : previous, xp);
+        set(userID, updated);
+        return updated;
+    }
+
+    /**
+     * Takes a user off the board
+     * @param userID user ID
+     */
+    public synchronized void remove(int userID) {
+        Integer previous = scores.remove(userID);
+        if (previous != null) {
+            tree.remove(previous, userID);
+        }
+    }
+
+    /**
+     * Gets a user's XP on this board
+     * @param userID user ID
+     * @return experience points, or -1 if the user isn't on the board
+     */
+    public synchronized int xpOf(int userID) {
+        Integer xp = scores.get(userID);
+        return xp == null ? -1 : xp;
+    }
+
+    /**
+     * Gets a user's position
+     * @param userID user ID
+     * @return 1-based rank, or -1 if the user isn't on the board
+     */
+    public synchronized int rankOf(int userID) {
+        Integer xp = scores.get(userID);
+        return xp == null ? -1 : tree.countBefore(xp, userID) + 1;
+    }
+
+    /**
+     * Gets the position a score would have, for users who aren't on the board
+     * @param xp experience points
+     * @return 1-based rank the score would take
+     */
+    public synchronized int rankOfScore(int xp) {
+        return tree.countBefore(xp, Integer.MIN_VALUE) + 1;
+    }
+
+    /**
+     * Gets the top of the board
+     * @param limit most rows to return
+     * @return rows, highest first
+     */
+    public synchronized List<LeaderboardEntry> top(int limit) {
+        return rows(0, limit);
+    }
+
+    /**
+     * Gets the rows around a user, for a "you are here" view
+     * @param userID user ID
+     * @param above rows to include ahead of the user
+     * @param below rows to include behind the user
+     * @return rows, highest first, or an empty list if the user isn't on the board
+     */
+    public synchronized List<LeaderboardEntry> around(int userID, int above, int below) {
+        Integer xp = scores.get(userID);
+        if (xp == null) {
+            return List.of();
+        }
+        int index = tree.countBefore(xp, userID);
+        return rows(index - above, index + below + 1);
+    }
+
+    /**
+     * Gets number of users on the board
+     * @return users
+     */
+    public synchronized int size() {
+        return scores.size();
+    }
+
+    private List<LeaderboardEntry> rows(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(tree.size(), to);
+        if (to <= from) {
+            return List.of();
+        }
+        int[] xp = new int[to - from];
+        int[] userIDs = new int[to - from];
+        int count = tree.range(from, to, xp, userIDs);
+        List<LeaderboardEntry> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new LeaderboardEntry(from + i + 1, userIDs[i], xp[i]));
+        }
+        return rows;
+    }
+}
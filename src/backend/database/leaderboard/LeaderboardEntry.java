@@ -0,0 +1,50 @@
+package leaderboard;
+
+/**
+ * One row of a leaderboard.
+ */
+public final class LeaderboardEntry {
+
+    private final int rank;
+    private final int userID;
+    private final int xp;
+
+    /**
+     * Constructor
+     * @param rank 1-based position on the board
+     * @param userID user ID
+     * @param xp experience points counted by the board
+     */
+    public LeaderboardEntry(int rank, int userID, int xp) {
+        this.rank = rank;
+        this.userID = userID;
+        this.xp = xp;
+    }
+
+    /**
+     * Gets 1-based position on the board
+     * @return rank
+     */
+    public int getRank() { return rank; }
+
+    /**
+     * Gets user ID
+     * @return userID
+     */
+    public int getUserID() { return userID; }
+
+    /**
+     * Gets experience points counted by the board
+     * @return xp
+     */
+    public int getXp() { return xp; }
+
+    @Override
+    public String toString() {
+        return "LeaderboardEntry{" +
+                "rank=" + rank +
+                ", userID=" + userID +
+                ", xp=" + xp +
+                '}';
+    }
+}
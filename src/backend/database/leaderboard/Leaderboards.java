@@ -0,0 +1,246 @@
+package leaderboard;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import models.User;
+
+/**
+ * All-time and weekly XP leaderboards, globally and per age band. An award updates four
+ * boards, each under that board's own lock for one tree walk: the all-time and weekly
+ * global boards, which every award shares, and the user's band on each, which only their
+ * cohort shares.
+ *
+ * Changes to one user (register, award and remove) also hold one of LOCKS striped
+ * locks, picked by user ID, for the whole update. A band move after a birthday therefore
+ * can't interleave with an award and leave the award's XP on the old band.
+ *
+ * Weekly boards belong to an epoch, one per UTC week starting Monday. The first award
+ * of a new week swaps in a fresh epoch and keeps the old one as last week's results.
+ * Nothing is deleted or reset in place, and readers holding the old boards keep a
+ * consistent view.
+ */
+public class Leaderboards {
+
+    /** Striped locks serializing changes to one user; a power of two. */
+    public static final int LOCKS = 64;
+
+    private final int[] bandStarts;
+    private final Clock clock;
+    private final Leaderboard global = new Leaderboard();
+    private final Leaderboard[] bands;
+    private final ConcurrentHashMap<Integer, Integer> bandOf = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCKS];
+    private volatile Epoch current;
+    private volatile Epoch previous;
+
+    /**
+     * Constructor
+     * @param clock clock that decides the current week
+     * @param ageBandStarts youngest age in each band, ascending; younger users go in the first band
+     */
+    public Leaderboards(Clock clock, int... ageBandStarts) {
+        if (ageBandStarts.length == 0) {
+            throw new IllegalArgumentException("At least one age band is needed");
+        }
+        for (int i = 1; i < ageBandStarts.length; i++) {
+            if (ageBandStarts[i] <= ageBandStarts[i - 1]) {
+                throw new IllegalArgumentException("Age bands must be ascending: " + Arrays.toString(ageBandStarts));
+            }
+        }
+        this.bandStarts = ageBandStarts.clone();
+        this.clock = clock;
+        this.bands = new Leaderboard[bandStarts.length];
+        for (int i = 0; i < bands.length; i++) {
+            bands[i] = new Leaderboard();
+        }
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        long week = week();
+        this.current = new Epoch(week, bands.length);
+        this.previous = new Epoch(week - 1, bands.length);
+    }
+
+    /**
+     * Adds a user with their current XP, or moves them to a new age band after a birthday
+     * @param user user
+     */
+    public void register(User user) {
+        int userID = user.getUserID();
+        int band = bandIndex(user.getAge());
+        synchronized (lockOf(userID)) {
+            Integer oldBand = bandOf.put(userID, band);
+            global.set(userID, user.getXp());
+            if (oldBand != null && oldBand != band) {
+                bands[oldBand].remove(userID);
+                Epoch epoch = epoch();
+                int weekly = epoch.bands[oldBand].xpOf(userID);
+                if (weekly >= 0) {
+                    epoch.bands[oldBand].remove(userID);
+                    epoch.bands[band].set(userID, weekly);
+                }
+            }
+            bands[band].set(userID, user.getXp());
+        }
+    }
+
+    /**
+     * Credits earned XP to every board the user is on
+     * @param userID user ID
+     * @param xp experience points earned
+     */
+    public void award(int userID, int xp) {
+        synchronized (lockOf(userID)) {
+            Integer band = bandOf.get(userID);
+            if (band == null) {
+                throw new IllegalArgumentException("Unknown user: " + userID);
+            }
+            Epoch epoch = epoch();
+            global.add(userID, xp);
+            bands[band].add(userID, xp);
+            epoch.all.add(userID, xp);
+            epoch.bands[band].add(userID, xp);
+        }
+    }
+
+    /**
+     * Takes a user off every board, for example when the account is deleted
+     * @param userID user ID
+     */
+    public void remove(int userID) {
+        synchronized (lockOf(userID)) {
+            Integer band = bandOf.remove(userID);
+            if (band == null) {
+                return;
+            }
+            global.remove(userID);
+            bands[band].remove(userID);
+            Epoch epoch = epoch();
+            epoch.all.remove(userID);
+            epoch.bands[band].remove(userID);
+        }
+    }
+
+    /**
+     * Gets the all-time board for every user
+     * @return board
+     */
+    public Leaderboard global() {
+        return global;
+    }
+
+    /**
+     * Gets the all-time board for an age band
+     * @param age age in the band
+     * @return board
+     */
+    public Leaderboard band(int age) {
+        return bands[bandIndex(age)];
+    }
+
+    /**
+     * Gets this week's board for every user
+     * @return board
+     */
+    public Leaderboard weekly() {
+        return epoch().all;
+    }
+
+    /**
+     * Gets this week's board for an age band
+     * @param age age in the band
+     * @return board
+     */
+    public Leaderboard weekly(int age) {
+        return epoch().bands[bandIndex(age)];
+    }
+
+    /**
+     * Gets last week's final board for every user
+     * @return board
+     */
+    public Leaderboard lastWeek() {
+        epoch();
+        return previous.all;
+    }
+
+    /**
+     * Gets last week's final board for an age band
+     * @param age age in the band
+     * @return board
+     */
+    public Leaderboard lastWeek(int age) {
+        epoch();
+        return previous.bands[bandIndex(age)];
+    }
+
+    /**
+     * Gets the first day of the current week
+     * @return Monday of the current week
+     */
+    public LocalDate weekStart() {
+        return LocalDate.ofEpochDay(epoch().week * 7 + 4);
+    }
+
+    /**
+     * Finds the band an age falls in
+     * @param age age
+     * @return band index
+     */
+    int bandIndex(int age) {
+        int index = Arrays.binarySearch(bandStarts, age);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    private Object lockOf(int userID) {
+        return locks[userID & (LOCKS - 1)];
+    }
+
+    /**
+     * Gets the current epoch, swapping in a new one if the week has turned
+     */
+    private Epoch epoch() {
+        Epoch epoch = current;
+        long week = week();
+        if (epoch.week == week) {
+            return epoch;
+        }
+        synchronized (this) {
+            epoch = current;
+            if (epoch.week < week) {
+                previous = epoch.week == week - 1 ? epoch : new Epoch(week - 1, bands.length);
+                epoch = new Epoch(week, bands.length);
+                current = epoch;
+            }
+            return epoch;
+        }
+    }
+
+    /**
+     * Numbers UTC weeks starting Monday; epoch day 4, 1970-01-05, was a Monday
+     */
+    private long week() {
+        return Math.floorDiv(LocalDate.ofInstant(clock.instant(), ZoneOffset.UTC).toEpochDay() - 4, 7);
+    }
+
+    /**
+     * One week's boards.
+     */
+    private static final class Epoch {
+        final long week;
+        final Leaderboard all = new Leaderboard();
+        final Leaderboard[] bands;
+
+        Epoch(long week, int bandCount) {
+            this.week = week;
+            this.bands = new Leaderboard[bandCount];
+            for (int i = 0; i < bandCount; i++) {
+                bands[i] = new Leaderboard();
+            }
+        }
+    }
+}
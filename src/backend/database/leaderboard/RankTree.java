@@ -0,0 +1,198 @@
+package leaderboard;
+
+/**
+ * Order-statistic treap over (xp, userID) pairs, highest XP first and lower user ID
+ * first among ties. Every node counts the nodes below it, so the rank of a pair and the
+ * pair at a rank are both found in one walk from the root, O(log n) expected. Not thread
+ * safe; Leaderboard guards it.
+ */
+final class RankTree {
+
+    private Node root;
+    private int seed = 0x9E3779B9;
+
+    /**
+     * Inserts a pair; the caller makes sure it isn't already present
+     */
+    void insert(int xp, int userID) {
+        root = insert(root, new Node(xp, userID, nextPriority()));
+    }
+
+    /**
+     * Removes a pair if present
+     */
+    void remove(int xp, int userID) {
+        root = remove(root, xp, userID);
+    }
+
+    /**
+     * Gets number of pairs
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Gets number of pairs ranked ahead of a pair, which need not be present
+     */
+    int countBefore(int xp, int userID) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            int c = compare(xp, userID, node.xp, node.userID);
+            if (c < 0) {
+                node = node.left;
+            } else {
+                count += size(node.left);
+                if (c == 0) {
+                    return count;
+                }
+                count++;
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies the pairs at 0-based positions [from, to) into xp and userID arrays
+     * @return number of pairs copied
+     */
+    int range(int from, int to, int[] xp, int[] userIDs) {
+        from = Math.max(0, from);
+        to = Math.min(size(), to);
+        int[] out = new int[1];
+        collect(root, 0, from, to, xp, userIDs, out);
+        return out[0];
+    }
+
+    /**
+     * In-order walk that skips subtrees wholly outside [from, to)
+     */
+    private static void collect(Node node, int offset, int from, int to, int[] xp, int[] userIDs, int[] out) {
+        while (node != null && offset < to) {
+            int index = offset + size(node.left);
+            if (from < index) {
+                collect(node.left, offset, from, to, xp, userIDs, out);
+            }
+            if (index >= from && index < to) {
+                xp[out[0]] = node.xp;
+                userIDs[out[0]] = node.userID;
+                out[0]++;
+            }
+            offset = index + 1;
+            node = node.right;
+        }
+    }
+
+    private Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.priority > node.priority) {
+            Node[] halves = new Node[2];
+            split(node, added.xp, added.userID, halves);
+            added.left = halves[0];
+            added.right = halves[1];
+            update(added);
+            return added;
+        }
+        if (compare(added.xp, added.userID, node.xp, node.userID) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node remove(Node node, int xp, int userID) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(xp, userID, node.xp, node.userID);
+        if (c == 0) {
+            return merge(node.left, node.right);
+        }
+        if (c < 0) {
+            node.left = remove(node.left, xp, userID);
+        } else {
+            node.right = remove(node.right, xp, userID);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Splits a subtree into pairs ranked ahead of a key and the rest
+     */
+    private static void split(Node node, int xp, int userID, Node[] halves) {
+        if (node == null) {
+            halves[0] = null;
+            halves[1] = null;
+            return;
+        }
+        if (compare(node.xp, node.userID, xp, userID) < 0) {
+            split(node.right, xp, userID, halves);
+            node.right = halves[0];
+            update(node);
+            halves[0] = node;
+        } else {
+            split(node.left, xp, userID, halves);
+            node.left = halves[1];
+            update(node);
+            halves[1] = node;
+        }
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static int compare(int xp1, int userID1, int xp2, int userID2) {
+        return xp1 != xp2 ? Integer.compare(xp2, xp1) : Integer.compare(userID1, userID2);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private static final class Node {
+        final int xp;
+        final int userID;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(int xp, int userID, int priority) {
+            this.xp = xp;
+            this.userID = userID;
+            this.priority = priority;
+        }
+    }
+}
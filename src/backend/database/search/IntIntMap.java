@@ -0,0 +1,121 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing int to int map with no boxing. Keys must not be Integer.MIN_VALUE,
+ * which marks an empty slot.
+ */
+final class IntIntMap {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructor
+     * @param expected expected number of keys
+     */
+    IntIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Gets the value for a key
+     * @param key key
+     * @param missing value to return if the key is absent
+     * @return value
+     */
+    int get(int key, int missing) {
+        int slot = find(keys, key);
+        return keys[slot] == key ? values[slot] : missing;
+    }
+
+    /**
+     * Sets the value for a key
+     * @param key key
+     * @param value value
+     */
+    void put(int key, int value) {
+        int slot = find(keys, key);
+        if (keys[slot] != key) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = find(keys, key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Removes a key
+     * @param key key
+     * @param missing value to return if the key is absent
+     * @return removed value
+     */
+    int remove(int key, int missing) {
+        int slot = find(keys, key);
+        if (keys[slot] != key) {
+            return missing;
+        }
+        int value = values[slot];
+        // Backward-shift deletion keeps every probe chain intact without tombstones.
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return value;
+    }
+
+    /**
+     * Gets number of keys
+     * @return number of keys
+     */
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int find(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,249 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import models.Skribble;
+
+/**
+ * Per-user inverted index over journal entries. Each user has their own term
+ * dictionary, so a search only ever touches that user's postings. Postings are
+ * compressed PostingLists, and adding or removing an entry only touches the lists for
+ * that entry's terms. Hits are ranked with BM25.
+ *
+ * Skribble has no title, so the entry's AI prompt is indexed as its heading, with its
+ * terms counted PROMPT_WEIGHT times.
+ */
+public class JournalSearch {
+
+    /** How many times a prompt term counts compared to a term in the entry text. */
+    public static final int PROMPT_WEIGHT = 2;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final ConcurrentHashMap<Integer, UserIndex> users = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes a journal entry. Entry IDs must not be negative.
+     * @param skribble journal entry
+     */
+    public void add(Skribble skribble) {
+        if (skribble.getEntryID() < 0) {
+            throw new IllegalArgumentException("Entry IDs must not be negative: " + skribble.getEntryID());
+        }
+        users.computeIfAbsent(skribble.getUserID(), id -> new UserIndex()).add(skribble);
+    }
+
+    /**
+     * Removes a journal entry. Pass the entry as it was indexed so its terms can be found.
+     * @param skribble journal entry
+     */
+    public void remove(Skribble skribble) {
+        UserIndex index = users.get(skribble.getUserID());
+        if (index != null) {
+            index.remove(skribble);
+        }
+    }
+
+    /**
+     * Searches one user's journal
+     * @param userID user ID
+     * @param query search text
+     * @param limit maximum number of hits
+     * @return hits, best first
+     */
+    public List<SearchHit> search(int userID, String query, int limit) {
+        UserIndex index = users.get(userID);
+        if (index == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        return index.search(new LinkedHashSet<>(Tokenizer.tokenize(query)), limit);
+    }
+
+    /**
+     * Gets number of indexed entries for a user
+     * @param userID user ID
+     * @return number of entries
+     */
+    public int count(int userID) {
+        UserIndex index = users.get(userID);
+        return index == null ? 0 : index.size();
+    }
+
+    /**
+     * Counts term frequencies for an entry, prompt terms weighted
+     */
+    private static Map<String, Integer> frequencies(Skribble skribble) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : Tokenizer.tokenize(skribble.getentry())) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        for (String token : Tokenizer.tokenize(skribble.getaiPrompt())) {
+            frequencies.merge(token, PROMPT_WEIGHT, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    /**
+     * One user's term dictionary and entry lengths.
+     */
+    private static final class UserIndex {
+        private final Map<String, PostingList> terms = new HashMap<>();
+        private final IntIntMap lengths = new IntIntMap(16);
+        private long totalLength;
+
+        synchronized void add(Skribble skribble) {
+            int entryID = skribble.getEntryID();
+            if (lengths.get(entryID, -1) >= 0) {
+                // Re-adding an entry would leave postings for words it no longer has.
+                throw new IllegalStateException("Entry " + entryID + " is already indexed; remove it first");
+            }
+            int length = 0;
+            for (Map.Entry<String, Integer> term : frequencies(skribble).entrySet()) {
+                terms.computeIfAbsent(term.getKey(), t -> new PostingList()).add(entryID, term.getValue());
+                length += term.getValue();
+            }
+            lengths.put(entryID, length);
+            totalLength += length;
+        }
+
+        synchronized void remove(Skribble skribble) {
+            int entryID = skribble.getEntryID();
+            int length = lengths.remove(entryID, -1);
+            if (length < 0) {
+                return;
+            }
+            totalLength -= length;
+            for (String term : frequencies(skribble).keySet()) {
+                PostingList postings = terms.get(term);
+                if (postings != null) {
+                    postings.remove(entryID);
+                    if (postings.count() == 0) {
+                        terms.remove(term);
+                    }
+                }
+            }
+        }
+
+        synchronized int size() {
+            return lengths.size();
+        }
+
+        synchronized List<SearchHit> search(Iterable<String> queryTerms, int limit) {
+            int entries = lengths.size();
+            if (entries == 0) {
+                return new ArrayList<>();
+            }
+            float averageLength = (float) totalLength / entries;
+            IntIntMap slots = new IntIntMap(64);
+            int[] hitIDs = new int[64];
+            float[] scores = new float[64];
+            int hits = 0;
+            int[] entryIDs = new int[0];
+            int[] frequencies = new int[0];
+            for (String term : queryTerms) {
+                PostingList postings = terms.get(term);
+                if (postings == null) {
+                    continue;
+                }
+                int count = postings.count();
+                if (entryIDs.length < count) {
+                    entryIDs = new int[count];
+                    frequencies = new int[count];
+                }
+                postings.decode(entryIDs, frequencies);
+                float idf = (float) Math.log(1 + (entries - count + 0.5) / (count + 0.5));
+                for (int i = 0; i < count; i++) {
+                    float tf = frequencies[i];
+                    float norm = K1 * (1 - B + B * lengths.get(entryIDs[i], 0) / averageLength);
+                    float score = idf * tf * (K1 + 1) / (tf + norm);
+                    int slot = slots.get(entryIDs[i], -1);
+                    if (slot < 0) {
+                        if (hits == hitIDs.length) {
+                            hitIDs = Arrays.copyOf(hitIDs, hits * 2);
+                            scores = Arrays.copyOf(scores, hits * 2);
+                        }
+                        slot = hits++;
+                        slots.put(entryIDs[i], slot);
+                        hitIDs[slot] = entryIDs[i];
+                    }
+                    scores[slot] += score;
+                }
+            }
+            return top(hitIDs, scores, hits, limit);
+        }
+
+        /**
+         * Picks the best hits with a bounded min-heap of hit positions
+         */
+        private static List<SearchHit> top(int[] hitIDs, float[] scores, int hits, int limit) {
+            int size = Math.min(limit, hits);
+            int[] heap = new int[size];
+            int heapSize = 0;
+            for (int i = 0; i < hits; i++) {
+                if (heapSize < size) {
+                    heap[heapSize++] = i;
+                    siftUp(heap, heapSize - 1, scores, hitIDs);
+                } else if (better(i, heap[0], scores, hitIDs)) {
+                    heap[0] = i;
+                    siftDown(heap, heapSize, scores, hitIDs);
+                }
+            }
+            SearchHit[] ordered = new SearchHit[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                ordered[i] = new SearchHit(hitIDs[heap[0]], scores[heap[0]]);
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, scores, hitIDs);
+            }
+            return new ArrayList<>(Arrays.asList(ordered));
+        }
+
+        /**
+         * Higher score wins; ties go to the newer (higher) entry ID
+         */
+        private static boolean better(int a, int b, float[] scores, int[] hitIDs) {
+            return scores[a] != scores[b] ? scores[a] > scores[b] : hitIDs[a] > hitIDs[b];
+        }
+
+        private static void siftUp(int[] heap, int index, float[] scores, int[] hitIDs) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!better(heap[parent], heap[index], scores, hitIDs)) {
+                    return;
+                }
+                int swap = heap[parent];
+                heap[parent] = heap[index];
+                heap[index] = swap;
+                index = parent;
+            }
+        }
+
+        private static void siftDown(int[] heap, int size, float[] scores, int[] hitIDs) {
+            int index = 0;
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && better(heap[smallest], heap[left], scores, hitIDs)) {
+                    smallest = left;
+                }
+                if (right < size && better(heap[smallest], heap[right], scores, hitIDs)) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                int swap = heap[smallest];
+                heap[smallest] = heap[index];
+                heap[index] = swap;
+                index = smallest;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * Compressed postings for one term: (entryID, term frequency) pairs sorted by entryID,
+ * stored as varint gaps and frequencies in a byte array. New entries usually have the
+ * highest ID, so adding one is an append; anything else rewrites just this list.
+ */
+final class PostingList {
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int count;
+    private int lastEntryID = -1;
+
+    /**
+     * Adds or replaces an entry's frequency
+     * @param entryID entry ID, must not be negative
+     * @param frequency term frequency
+     */
+    void add(int entryID, int frequency) {
+        if (entryID > lastEntryID) {
+            write(count == 0 ? entryID : entryID - lastEntryID, frequency);
+            lastEntryID = entryID;
+            count++;
+            return;
+        }
+        rewrite(entryID, frequency);
+    }
+
+    /**
+     * Removes an entry
+     * @param entryID entry ID
+     */
+    void remove(int entryID) {
+        rewrite(entryID, 0);
+    }
+
+    /**
+     * Gets number of entries containing the term
+     * @return document frequency
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Decodes the postings into caller-supplied arrays
+     * @param entryIDs receives entry IDs, at least count() long
+     * @param frequencies receives term frequencies, at least count() long
+     */
+    void decode(int[] entryIDs, int[] frequencies) {
+        int position = 0;
+        int entryID = 0;
+        for (int i = 0; i < count; i++) {
+            int gap = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            int frequency = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                frequency |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            entryID = i == 0 ? gap : entryID + gap;
+            entryIDs[i] = entryID;
+            frequencies[i] = frequency;
+        }
+    }
+
+    /**
+     * Re-encodes the list with one entry replaced, inserted, or removed (frequency 0)
+     */
+    private void rewrite(int entryID, int frequency) {
+        int[] entryIDs = new int[count + 1];
+        int[] frequencies = new int[count + 1];
+        decode(entryIDs, frequencies);
+        int size = count;
+        int index = Arrays.binarySearch(entryIDs, 0, size, entryID);
+        if (index >= 0) {
+            if (frequency == 0) {
+                System.arraycopy(entryIDs, index + 1, entryIDs, index, size - index - 1);
+                System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+                size--;
+            } else {
+                frequencies[index] = frequency;
+            }
+        } else if (frequency != 0) {
+            index = -index - 1;
+            System.arraycopy(entryIDs, index, entryIDs, index + 1, size - index);
+            System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+            entryIDs[index] = entryID;
+            frequencies[index] = frequency;
+            size++;
+        } else {
+            return;
+        }
+        length = 0;
+        count = 0;
+        lastEntryID = -1;
+        for (int i = 0; i < size; i++) {
+            add(entryIDs[i], frequencies[i]);
+        }
+        if (data.length > 64 && length < data.length / 4) {
+            data = Arrays.copyOf(data, length * 2);
+        }
+    }
+
+    private void write(int gap, int frequency) {
+        if (length + 10 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10));
+        }
+        length = writeVarInt(data, length, gap);
+        length = writeVarInt(data, length, frequency);
+    }
+
+    private static int writeVarInt(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+}
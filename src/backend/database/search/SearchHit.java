@@ -0,0 +1,39 @@
+package search;
+
+/**
+ * Represents one journal entry matching a search, with its relevance score.
+ */
+public final class SearchHit {
+    private final int entryID;
+    private final float score;
+
+    /**
+     * Constructor
+     * @param entryID entry ID
+     * @param score relevance score, higher is better
+     */
+    SearchHit(int entryID, float score) {
+        this.entryID = entryID;
+        this.score = score;
+    }
+
+    /**
+     * ToString
+     */
+    @Override
+    public String toString() {
+        return "SearchHit [entryID=" + entryID + ", score=" + score + "]";
+    }
+
+    /**
+     * Gets entry ID
+     * @return entry ID
+     */
+    public int getEntryID() { return entryID; }
+
+    /**
+     * Gets relevance score
+     * @return score, higher is better
+     */
+    public float getScore() { return score; }
+}
@@ -0,0 +1,47 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits journal text into lowercase word tokens. Anything that isn't a letter or digit
+ * separates words, and very common words are dropped since they match every entry.
+ */
+final class Tokenizer {
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList("a", "an", "and", "are", "as", "at",
+            "be", "but", "by", "for", "i", "if", "in", "is", "it", "me", "my", "of", "on", "or", "so", "the", "to",
+            "was", "we", "with"));
+
+    private Tokenizer() { }
+
+    /**
+     * Tokenizes text
+     * @param text text, may be null
+     * @return tokens in order, with repeats
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!STOP_WORDS.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
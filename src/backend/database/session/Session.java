@@ -0,0 +1,100 @@
+package session;
+
+import models.User;
+
+/**
+ * Represents the cached identity behind a session token. Only the profile fields that
+ * every screen reads are kept; balances and streaks change too often to cache here.
+ */
+public final class Session {
+    private final String sessionToken;
+    private final int userID;
+    private final String username;
+    private final String firstName;
+    private final int age;
+    private final String accountType;
+    private final String friendCode;
+    private final int petID;
+    private final long expiresAt;
+
+    /**
+     * Constructor
+     * @param sessionToken session token
+     * @param user user the token resolved to
+     * @param expiresAt clock time in nanoseconds after which the entry is stale
+     */
+    Session(String sessionToken, User user, long expiresAt) {
+        this.sessionToken = sessionToken;
+        this.userID = user.getUserID();
+        this.username = user.getUsername();
+        this.firstName = user.getFirstName();
+        this.age = user.getAge();
+        this.accountType = user.getAccountType();
+        this.friendCode = user.getFriendCode();
+        this.petID = user.getPetID();
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * ToString
+     */
+    @Override
+    public String toString() {
+        return "Session [userID=" + userID + ", username=" + username + ", firstName=" + firstName + ", age=" + age
+                + ", accountType=" + accountType + ", friendCode=" + friendCode + ", petID=" + petID + "]";
+    }
+
+    /**
+     * Gets session token
+     * @return session token
+     */
+    public String getSessionToken() { return sessionToken; }
+
+    /**
+     * Gets user ID
+     * @return user ID
+     */
+    public int getUserID() { return userID; }
+
+    /**
+     * Gets username
+     * @return username
+     */
+    public String getUsername() { return username; }
+
+    /**
+     * Gets first name
+     * @return first name
+     */
+    public String getFirstName() { return firstName; }
+
+    /**
+     * Gets age
+     * @return age
+     */
+    public int getAge() { return age; }
+
+    /**
+     * Gets account type
+     * @return account type
+     */
+    public String getAccountType() { return accountType; }
+
+    /**
+     * Gets friend code
+     * @return friend code
+     */
+    public String getFriendCode() { return friendCode; }
+
+    /**
+     * Gets pet ID
+     * @return pet ID
+     */
+    public int getPetID() { return petID; }
+
+    /**
+     * Gets expiry time
+     * @return clock time in nanoseconds after which the entry is stale
+     */
+    long getExpiresAt() { return expiresAt; }
+}
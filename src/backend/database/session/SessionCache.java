@@ -0,0 +1,220 @@
+package session;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import models.User;
+
+/**
+ * Caches session token to user resolution so screens don't repeat the
+ * {@code MATCH (u:User {sessionToken: $sessionToken})} lookup. Reads are a single
+ * ConcurrentHashMap get. Entries expire after a fixed TTL and the oldest are evicted
+ * once the cache is full. A user holds one session token at a time, so storing a new
+ * token for a user (re-login) drops the old one.
+ *
+ * Concurrent misses for the same token share one database lookup. A lookup that an
+ * invalidation of its token or its user overlaps is returned to its callers but not kept,
+ * so a logout or profile change is never undone by a load that read the database before
+ * it. Invalidations are stamped on one of STRIPES slots picked by token or by user, so a
+ * lookup only gives up its entry when its own slots changed, not on every logout.
+ */
+public class SessionCache {
+
+    /** Slots invalidations are stamped in, for tokens and for users each; a power of two. */
+    public static final int STRIPES = 1024;
+
+    private final ConcurrentHashMap<String, Session> byToken = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> tokenByUser = new ConcurrentHashMap<>();
+    private final Queue<Session> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Session>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLongArray tokenStamps = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray userStamps = new AtomicLongArray(STRIPES);
+    private final Function<String, User> loader;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LongSupplier clock;
+
+    /**
+     * Constructor
+     * @param loader looks up the user for a token in the database, returning null if none matches
+     * @param ttl how long an entry stays valid
+     * @param unit unit of ttl
+     * @param maxSize maximum number of cached sessions
+     */
+    public SessionCache(Function<String, User> loader, long ttl, TimeUnit unit, int maxSize) {
+        this(loader, ttl, unit, maxSize, System::nanoTime);
+    }
+
+    /**
+     * Constructor with a custom clock
+     * @param loader looks up the user for a token in the database, returning null if none matches
+     * @param ttl how long an entry stays valid
+     * @param unit unit of ttl
+     * @param maxSize maximum number of cached sessions
+     * @param clock nanosecond clock
+     */
+    public SessionCache(Function<String, User> loader, long ttl, TimeUnit unit, int maxSize, LongSupplier clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.loader = loader;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Resolves a session token, loading it from the database on a miss. Callers missing
+     * on the same token at the same time wait for one load.
+     * @param sessionToken session token
+     * @return session, or null if the token doesn't belong to any user
+     */
+    public Session resolve(String sessionToken) {
+        Session session = byToken.get(sessionToken);
+        if (session != null && clock.getAsLong() - session.getExpiresAt() < 0) {
+            return session;
+        }
+        if (session != null) {
+            drop(session);
+        }
+        CompletableFuture<Session> load = new CompletableFuture<>();
+        CompletableFuture<Session> running = loading.putIfAbsent(sessionToken, load);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            long seen = invalidations.get();
+            User user = loader.apply(sessionToken);
+            Session loaded = user == null ? null : put(sessionToken, user);
+            // Checked after the put, so an invalidation either shows up here or removes the entry itself.
+            if (loaded != null && (tokenStamps.get(stripe(sessionToken.hashCode())) > seen
+                    || userStamps.get(stripe(loaded.getUserID())) > seen)) {
+                drop(loaded);
+            }
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(sessionToken, load);
+        }
+    }
+
+    /**
+     * Caches a session, for example right after login. Any older token for the same user
+     * is invalidated.
+     * @param sessionToken session token
+     * @param user user the token belongs to
+     * @return cached session
+     */
+    public Session put(String sessionToken, User user) {
+        Session session = new Session(sessionToken, user, clock.getAsLong() + ttlNanos);
+        byToken.put(sessionToken, session);
+        String previous = tokenByUser.put(user.getUserID(), sessionToken);
+        if (previous != null && !previous.equals(sessionToken)) {
+            byToken.remove(previous);
+        }
+        insertionOrder.add(session);
+        evict();
+        return session;
+    }
+
+    /**
+     * Drops a token, for example on logout
+     * @param sessionToken session token
+     */
+    public void invalidate(String sessionToken) {
+        stamp(tokenStamps, sessionToken.hashCode());
+        loading.remove(sessionToken);
+        Session session = byToken.remove(sessionToken);
+        if (session != null) {
+            tokenByUser.remove(session.getUserID(), sessionToken);
+        }
+    }
+
+    /**
+     * Drops whatever token a user currently has, for example when their profile changes
+     * @param userID user ID
+     */
+    public void invalidateUser(int userID) {
+        stamp(userStamps, userID);
+        String sessionToken = tokenByUser.remove(userID);
+        if (sessionToken != null) {
+            byToken.remove(sessionToken);
+        }
+    }
+
+    /**
+     * Gets number of cached sessions
+     * @return number of cached sessions
+     */
+    public int size() { return byToken.size(); }
+
+    /**
+     * Records an invalidation in a token's or user's slot, before the entry is removed
+     */
+    private void stamp(AtomicLongArray stamps, int hash) {
+        long stamp = invalidations.incrementAndGet();
+        stamps.accumulateAndGet(stripe(hash), stamp, Math::max);
+    }
+
+    private static int stripe(int hash) {
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Removes a session if it is still the cached one for its token
+     */
+    private void drop(Session session) {
+        if (byToken.remove(session.getSessionToken(), session)) {
+            tokenByUser.remove(session.getUserID(), session.getSessionToken());
+        }
+    }
+
+    /**
+     * Waits for another caller's load of the same token
+     */
+    private static Session await(CompletableFuture<Session> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Evicts the oldest entries until the cache is back under maxSize. The queue can hold
+     * entries that were already replaced or invalidated, so only remove an entry if the
+     * map still maps its token to that exact session.
+     */
+    private void evict() {
+        long now = clock.getAsLong();
+        Session oldest;
+        while ((oldest = insertionOrder.peek()) != null) {
+            boolean live = byToken.get(oldest.getSessionToken()) == oldest;
+            boolean expired = now - oldest.getExpiresAt() >= 0;
+            if (live && !expired && byToken.size() <= maxSize) {
+                return;
+            }
+            if (insertionOrder.remove(oldest) && live && byToken.remove(oldest.getSessionToken(), oldest)) {
+                tokenByUser.remove(oldest.getUserID(), oldest.getSessionToken());
+            }
+        }
+    }
+}
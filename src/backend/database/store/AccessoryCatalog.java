@@ -0,0 +1,69 @@
+package store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import models.Accessory;
+
+/**
+ * Holds the current CatalogSnapshot so store screens read the catalog without a database
+ * round trip or a lock. Changes build a new snapshot off to the side and swap it in with
+ * one volatile write, so a reader always sees one whole catalog version.
+ */
+public class AccessoryCatalog {
+
+    private volatile CatalogSnapshot snapshot = new CatalogSnapshot(Collections.emptyList());
+
+    /**
+     * Gets the current catalog
+     * @return snapshot
+     */
+    public CatalogSnapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * Gets the current catalog if it differs from the version a client already has
+     * @param clientVersion version the client holds
+     * @return snapshot, or null if the client is up to date
+     */
+    public CatalogSnapshot changedSince(long clientVersion) {
+        CatalogSnapshot current = snapshot;
+        return current.getVersion() == clientVersion ? null : current;
+    }
+
+    /**
+     * Replaces the whole catalog, for example after reloading the accessories table
+     * @param accessories catalog rows
+     * @return new snapshot
+     */
+    public synchronized CatalogSnapshot replace(Collection<Accessory> accessories) {
+        CatalogSnapshot next = new CatalogSnapshot(accessories);
+        snapshot = next;
+        return next;
+    }
+
+    /**
+     * Adds or updates one accessory
+     * @param accessory catalog row
+     * @return new snapshot
+     */
+    public synchronized CatalogSnapshot put(Accessory accessory) {
+        List<Accessory> rows = new ArrayList<>(snapshot.all());
+        rows.add(accessory);
+        return replace(rows);
+    }
+
+    /**
+     * Removes one accessory
+     * @param accessoryID accessory ID
+     * @return new snapshot
+     */
+    public synchronized CatalogSnapshot remove(int accessoryID) {
+        List<Accessory> rows = new ArrayList<>(snapshot.all());
+        rows.removeIf(accessory -> accessory.getAccessoryID() == accessoryID);
+        return replace(rows);
+    }
+}
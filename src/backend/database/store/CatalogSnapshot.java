@@ -0,0 +1,250 @@
+package store;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import codec.ModelCodec;
+import models.Accessory;
+
+/**
+ * Immutable copy of the accessory catalog with indexes by ID, by accessoryType and by
+ * price. Within each index items are sorted by price, then ID, so a price range is two
+ * binary searches and a sublist. Rows are copied in, so changing an Accessory after
+ * building a snapshot doesn't change the snapshot, and the copies handed out are
+ * read-only: their setters throw UnsupportedOperationException, so no caller can change
+ * a price under every other reader or out of order in the sorted indexes.
+ *
+ * The version is taken from a SHA-256 digest of the catalog's encoded rows, so it is the
+ * same on every server and across restarts, and a client holding the current version can
+ * skip downloading.
+ */
+public final class CatalogSnapshot {
+
+    private static final Comparator<Accessory> BY_PRICE = Comparator.comparingInt(Accessory::getAccessoryPrice)
+            .thenComparingInt(Accessory::getAccessoryID);
+
+    private final Map<Integer, Accessory> byID;
+    private final Index all;
+    private final Map<String, Index> byType;
+    private final long version;
+
+    /**
+     * Builds a snapshot
+     * @param accessories catalog rows; a later row replaces an earlier one with the same ID
+     */
+    public CatalogSnapshot(Collection<Accessory> accessories) {
+        Map<Integer, Accessory> rows = new HashMap<>();
+        for (Accessory accessory : accessories) {
+            rows.put(accessory.getAccessoryID(), copy(accessory));
+        }
+        Accessory[] sorted = rows.values().toArray(new Accessory[0]);
+        Arrays.sort(sorted, BY_PRICE);
+        Map<String, Index> types = new HashMap<>();
+        int start = 0;
+        Accessory[] byTypeThenPrice = sorted.clone();
+        Arrays.sort(byTypeThenPrice, Comparator.comparing(Accessory::getAccessoryType,
+                Comparator.nullsFirst(Comparator.<String>naturalOrder())).thenComparing(BY_PRICE));
+        for (int i = 1; i <= byTypeThenPrice.length; i++) {
+            if (i == byTypeThenPrice.length || !Objects.equals(byTypeThenPrice[i].getAccessoryType(),
+                    byTypeThenPrice[start].getAccessoryType())) {
+                String type = byTypeThenPrice[start].getAccessoryType();
+                if (type != null) {
+                    types.put(type, new Index(Arrays.copyOfRange(byTypeThenPrice, start, i)));
+                }
+                start = i;
+            }
+        }
+        this.byID = rows;
+        this.all = new Index(sorted);
+        this.byType = types;
+        this.version = hash(rows);
+    }
+
+    /**
+     * Gets an accessory
+     * @param accessoryID accessory ID
+     * @return accessory, or null if not in the catalog
+     */
+    public Accessory get(int accessoryID) {
+        return byID.get(accessoryID);
+    }
+
+    /**
+     * Gets every accessory
+     * @return accessories sorted by price
+     */
+    public List<Accessory> all() {
+        return all.list;
+    }
+
+    /**
+     * Gets accessories of one type
+     * @param accessoryType type, for example "hat"
+     * @return accessories sorted by price, empty if there are none
+     */
+    public List<Accessory> byType(String accessoryType) {
+        Index index = byType.get(accessoryType);
+        return index == null ? Collections.emptyList() : index.list;
+    }
+
+    /**
+     * Gets accessories in a price range
+     * @param minPrice lowest price to include
+     * @param maxPrice highest price to include
+     * @return accessories sorted by price
+     */
+    public List<Accessory> byPrice(int minPrice, int maxPrice) {
+        return all.range(minPrice, maxPrice);
+    }
+
+    /**
+     * Gets accessories of one type in a price range
+     * @param accessoryType type, for example "hat"
+     * @param minPrice lowest price to include
+     * @param maxPrice highest price to include
+     * @return accessories sorted by price
+     */
+    public List<Accessory> byTypeAndPrice(String accessoryType, int minPrice, int maxPrice) {
+        Index index = byType.get(accessoryType);
+        return index == null ? Collections.emptyList() : index.range(minPrice, maxPrice);
+    }
+
+    /**
+     * Gets the types present in the catalog
+     * @return accessory types
+     */
+    public Collection<String> types() {
+        return Collections.unmodifiableSet(byType.keySet());
+    }
+
+    /**
+     * Gets number of accessories
+     * @return number of accessories
+     */
+    public int size() {
+        return byID.size();
+    }
+
+    /**
+     * Gets the content version
+     * @return version, equal for catalogs with equal contents
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private static Accessory copy(Accessory accessory) {
+        return new ReadOnlyAccessory(accessory.getAccessoryID(), accessory.getAccessoryName(),
+                accessory.getAccessoryType(), accessory.getUserID(), accessory.getPetID(),
+                accessory.getAccessoryPrice(), accessory.getAccessoryPNG());
+    }
+
+    /**
+     * Digests the encoded rows in ID order so the result doesn't depend on load order
+     * @return first 8 bytes of the SHA-256 digest
+     */
+    private static long hash(Map<Integer, Accessory> rows) {
+        int[] ids = rows.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        for (int id : ids) {
+            Accessory accessory = rows.get(id);
+            int size = ModelCodec.sizeOf(accessory);
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(size);
+            }
+            buffer.clear();
+            ModelCodec.encode(buffer, accessory);
+            digest.update(buffer.array(), 0, buffer.position());
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * Accessories sorted by price, with their prices in a parallel array for binary search.
+     */
+    private static final class Index {
+        final List<Accessory> list;
+        final int[] prices;
+
+        Index(Accessory[] sorted) {
+            this.list = Collections.unmodifiableList(Arrays.asList(sorted));
+            this.prices = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                prices[i] = sorted[i].getAccessoryPrice();
+            }
+        }
+
+        List<Accessory> range(int minPrice, int maxPrice) {
+            if (minPrice > maxPrice) {
+                return Collections.emptyList();
+            }
+            return list.subList(firstAtLeast(minPrice), maxPrice == Integer.MAX_VALUE ? prices.length
+                    : firstAtLeast(maxPrice + 1));
+        }
+
+        private int firstAtLeast(int price) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] < price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Catalog row whose setters throw, so rows shared by every reader can't be changed.
+     */
+    private static final class ReadOnlyAccessory extends Accessory {
+
+        ReadOnlyAccessory(int accessoryID, String accessoryName, String accessoryType, int userID, int petID,
+                int accessoryPrice, String accessoryPNG) {
+            super(accessoryID, accessoryName, accessoryType, userID, petID, accessoryPrice, accessoryPNG);
+        }
+
+        @Override
+        public void setAccessoryID(int accessoryID) { throw readOnly(); }
+
+        @Override
+        public void setAccessoryName(String accessoryName) { throw readOnly(); }
+
+        @Override
+        public void setAccessoryType(String accessoryType) { throw readOnly(); }
+
+        @Override
+        public void setUserID(int userID) { throw readOnly(); }
+
+        @Override
+        public void setPetID(int petID) { throw readOnly(); }
+
+        @Override
+        public void setAccessoryPrice(int accessoryPrice) { throw readOnly(); }
+
+        @Override
+        public void setAccessoryPNG(String accessoryPNG) { throw readOnly(); }
+
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Catalog rows are read-only; copy the row to change it");
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import models.Accessory;
+import wallet.WalletDelta;
+import wallet.WalletLedger;
+
+/**
+ * Runs store purchases, replacing the single unchecked {@code SET u.coins = u.coins - $price}
+ * query. A purchase looks the item up in the current catalog snapshot, so the price charged
+ * is the catalog's and not one sent by the client. It claims the (user, accessory) pair,
+ * takes limited stock if the item has any, logs the intent in a PurchaseJournal, and spends
+ * the coins through the WalletLedger, whose compare-and-set spend means a balance never goes
+ * below zero. If any step fails, the earlier ones are undone.
+ *
+ * Accepted purchases are queued and committed to the sink in batches of up to maxBatch, so
+ * a rush of buyers shares a few storage writes. Each batch flushes the ledger before saving
+ * its rows, so a saved row always has a durable charge. A purchase's future completes once
+ * its batch is saved. Requests carry an idempotency key, scoped to the buyer: a retry with
+ * a key the same user already sent gets the original result instead of buying twice.
+ *
+ * The coin spend and the saved row are separate writes, so a purchase stays open in the
+ * journal until both agree. When a commit fails, the sink is asked which rows it did save:
+ * those are kept and only the rest are refunded. Purchases a crash or a failed check left
+ * open are settled by settle, which open runs: a saved row is kept, and an unsaved one is
+ * refunded if the ledger's log shows its coins were taken and not given back.
+ */
+public class PurchaseEngine implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(PurchaseEngine.class.getName());
+
+    private final WalletLedger ledger;
+    private final AccessoryCatalog catalog;
+    private final PurchaseSink sink;
+    private final PurchaseJournal journal;
+    private final Executor executor;
+    private final int maxBatch;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, CompletableFuture<PurchaseResult>> results = new ConcurrentHashMap<>();
+    private final Queue<String> keyOrder = new ConcurrentLinkedQueue<>();
+    private final Set<Long> owned = ConcurrentHashMap.newKeySet();
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Integer, AtomicInteger> stock = new ConcurrentHashMap<>();
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean committing = new AtomicBoolean();
+
+    private PurchaseEngine(WalletLedger ledger, AccessoryCatalog catalog, PurchaseSink sink, PurchaseJournal journal,
+            Executor executor, int maxBatch, int maxKeys) {
+        this.ledger = ledger;
+        this.catalog = catalog;
+        this.sink = sink;
+        this.journal = journal;
+        this.executor = executor;
+        this.maxBatch = maxBatch;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Opens a purchase engine and settles any purchases a crash left half done
+     * @param ledger wallet ledger that holds coin balances
+     * @param catalog catalog that items and prices are read from
+     * @param sink storage that purchases are committed to
+     * @param journal file purchase intents are logged in
+     * @param executor runs batch commits; callers shouldn't block on results from its own threads
+     * @param maxBatch most purchases per commit
+     * @param maxKeys most idempotency keys remembered; the oldest are forgotten first
+     * @return purchase engine
+     * @throws IOException if the journal can't be read or the open purchases can't be settled
+     */
+    public static PurchaseEngine open(WalletLedger ledger, AccessoryCatalog catalog, PurchaseSink sink, Path journal,
+            Executor executor, int maxBatch, int maxKeys) throws IOException {
+        if (maxBatch <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("maxBatch and maxKeys must be positive: " + maxBatch + ", " + maxKeys);
+        }
+        PurchaseJournal intents = new PurchaseJournal(journal);
+        PurchaseEngine engine = new PurchaseEngine(ledger, catalog, sink, intents, executor, maxBatch, maxKeys);
+        try {
+            engine.settle();
+        } catch (IOException | RuntimeException e) {
+            intents.close();
+            throw e;
+        }
+        return engine;
+    }
+
+    /**
+     * Records an accessory a user already owns, for example when loading OWNS edges at startup
+     * @param userID user ID
+     * @param accessoryID accessory ID
+     */
+    public void markOwned(int userID, int accessoryID) {
+        owned.add(key(userID, accessoryID));
+    }
+
+    /**
+     * Checks if a user owns an accessory
+     * @param userID user ID
+     * @param accessoryID accessory ID
+     * @return true if owned or being committed
+     */
+    public boolean owns(int userID, int accessoryID) {
+        return owned.contains(key(userID, accessoryID));
+    }
+
+    /**
+     * Limits how many of an accessory can be sold, for example for an item drop
+     * @param accessoryID accessory ID
+     * @param quantity units left to sell
+     */
+    public void limitStock(int accessoryID, int quantity) {
+        stock.put(accessoryID, new AtomicInteger(quantity));
+    }
+
+    /**
+     * Gets units left of a limited accessory
+     * @param accessoryID accessory ID
+     * @return units left, or -1 if the accessory isn't limited
+     */
+    public int remainingStock(int accessoryID) {
+        AtomicInteger remaining = stock.get(accessoryID);
+        return remaining == null ? -1 : remaining.get();
+    }
+
+    /**
+     * Buys an accessory
+     * @param idempotencyKey key the client reuses when retrying the same purchase
+     * @param userID buyer's user ID
+     * @param petID buyer's pet, which wears the accessory
+     * @param accessoryID catalog accessory being bought
+     * @return result, completed once the purchase is saved or rejected
+     */
+    public CompletableFuture<PurchaseResult> purchase(String idempotencyKey, int userID, int petID, int accessoryID) {
+        String scopedKey = userID + "/" + idempotencyKey;
+        CompletableFuture<PurchaseResult> result = new CompletableFuture<>();
+        CompletableFuture<PurchaseResult> previous = results.putIfAbsent(scopedKey, result);
+        if (previous != null) {
+            return previous;
+        }
+        keyOrder.add(scopedKey);
+        forgetOldKeys();
+        Accessory item = catalog.current().get(accessoryID);
+        if (item == null) {
+            result.complete(new PurchaseResult(PurchaseResult.Status.NOT_IN_CATALOG, null));
+            return result;
+        }
+        Accessory row = new Accessory(item.getAccessoryID(), item.getAccessoryName(), item.getAccessoryType(), userID,
+                petID, item.getAccessoryPrice(), item.getAccessoryPNG());
+        PurchaseResult.Status rejected = reserve(row);
+        if (rejected != null) {
+            result.complete(new PurchaseResult(rejected, item));
+            return result;
+        }
+        pending.add(new Pending(row, result));
+        if (committing.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::commitPending);
+            } catch (RejectedExecutionException e) {
+                failPending();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Settles purchases left open in the journal by a crash or by a commit whose outcome
+     * couldn't be checked. Flushes the ledger first, so its log shows every charge and
+     * refund made so far. A purchase whose row the sink has saved is kept; otherwise its
+     * coins are refunded if the log shows them taken and not yet given back. Purchases
+     * still being committed are left alone.
+     * @return number of purchases settled
+     * @throws IOException if the ledger, the sink or the journal fails; the purchases stay
+     *                     open and the next call retries them
+     */
+    public synchronized int settle() throws IOException {
+        List<Accessory> rows = new ArrayList<>();
+        for (Accessory row : journal.open()) {
+            if (!inFlight.contains(key(row.getUserID(), row.getAccessoryID()))) {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        ledger.flush();
+        Set<Long> saved = saved(rows);
+        for (Accessory row : rows) {
+            if (!saved.contains(key(row.getUserID(), row.getAccessoryID())) && charged(row)) {
+                ledger.credit(row.getUserID(), row.getAccessoryPrice(), 0, 0, refundReason(row));
+            }
+        }
+        ledger.flush();
+        for (Accessory row : rows) {
+            journal.resolve(row.getUserID(), row.getAccessoryID());
+            if (saved.contains(key(row.getUserID(), row.getAccessoryID()))) {
+                owned.add(key(row.getUserID(), row.getAccessoryID()));
+            } else {
+                release(row);
+            }
+        }
+        return rows.size();
+    }
+
+    /**
+     * Closes the purchase journal. Purchases still queued stay open in it and are settled
+     * when the engine is next opened.
+     * @throws IOException if the journal can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    /**
+     * Claims ownership and stock, logs the intent and spends the coins, in that order,
+     * undoing earlier steps if a later one fails
+     * @return null if everything was claimed, otherwise why not
+     */
+    private PurchaseResult.Status reserve(Accessory row) {
+        long key = key(row.getUserID(), row.getAccessoryID());
+        if (!owned.add(key)) {
+            return PurchaseResult.Status.ALREADY_OWNED;
+        }
+        AtomicInteger remaining = stock.get(row.getAccessoryID());
+        if (remaining != null && remaining.getAndUpdate(n -> n > 0 ? n - 1 : n) <= 0) {
+            owned.remove(key);
+            return PurchaseResult.Status.SOLD_OUT;
+        }
+        inFlight.add(key);
+        try {
+            journal.begin(row);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Purchase intent couldn't be logged", e);
+            inFlight.remove(key);
+            release(row);
+            return PurchaseResult.Status.FAILED;
+        }
+        if (!ledger.spend(row.getUserID(), row.getAccessoryPrice(), purchaseReason(row))) {
+            resolve(row);
+            release(row);
+            return PurchaseResult.Status.INSUFFICIENT_COINS;
+        }
+        return null;
+    }
+
+    /**
+     * Commits queued purchases in batches until the queue is empty. Only one thread runs
+     * this at a time.
+     */
+    private void commitPending() {
+        do {
+            for (List<Pending> batch = nextBatch(); !batch.isEmpty(); batch = nextBatch()) {
+                commit(batch);
+            }
+            committing.set(false);
+            // A purchase queued after the last poll but before the flag was cleared would
+            // otherwise wait for the next purchase to start a commit.
+        } while (!pending.isEmpty() && committing.compareAndSet(false, true));
+    }
+
+    /**
+     * Refunds and fails everything queued when the executor won't take a commit, so no
+     * future is left waiting on a commit that never runs; the caller holds the committing flag
+     */
+    private void failPending() {
+        do {
+            for (List<Pending> batch = nextBatch(); !batch.isEmpty(); batch = nextBatch()) {
+                refund(batch);
+            }
+            committing.set(false);
+        } while (!pending.isEmpty() && committing.compareAndSet(false, true));
+    }
+
+    private List<Pending> nextBatch() {
+        List<Pending> batch = new ArrayList<>();
+        for (Pending next; batch.size() < maxBatch && (next = pending.poll()) != null; ) {
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    /**
+     * Flushes the ledger so the batch's charges are durable, then saves the rows. If
+     * either fails, refunds only the rows the sink confirms it didn't save.
+     */
+    private void commit(List<Pending> batch) {
+        List<Accessory> rows = new ArrayList<>(batch.size());
+        for (Pending purchase : batch) {
+            rows.add(purchase.row);
+        }
+        try {
+            ledger.flush();
+            sink.commit(rows);
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Purchase commit failed", e);
+            refund(batch);
+            return;
+        }
+        for (Pending purchase : batch) {
+            resolve(purchase.row);
+            purchase.result.complete(new PurchaseResult(PurchaseResult.Status.PURCHASED, purchase.row));
+        }
+    }
+
+    /**
+     * Refunds the purchases in a batch that the sink didn't save, keeps the ones it did,
+     * and completes every future. If the sink can't say, the batch stays open for settle.
+     */
+    private void refund(List<Pending> batch) {
+        List<Accessory> rows = new ArrayList<>(batch.size());
+        for (Pending purchase : batch) {
+            rows.add(purchase.row);
+        }
+        Set<Long> saved;
+        try {
+            saved = saved(rows);
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Couldn't check which purchases were saved; settle retries them", e);
+            for (Pending purchase : batch) {
+                inFlight.remove(key(purchase.row.getUserID(), purchase.row.getAccessoryID()));
+                purchase.result.complete(new PurchaseResult(PurchaseResult.Status.UNCONFIRMED, purchase.row));
+            }
+            return;
+        }
+        List<Accessory> refunded = new ArrayList<>();
+        for (Pending purchase : batch) {
+            Accessory row = purchase.row;
+            if (saved.contains(key(row.getUserID(), row.getAccessoryID()))) {
+                purchase.result.complete(new PurchaseResult(PurchaseResult.Status.PURCHASED, row));
+            } else {
+                ledger.credit(row.getUserID(), row.getAccessoryPrice(), 0, 0, refundReason(row));
+                refunded.add(row);
+                purchase.result.complete(new PurchaseResult(PurchaseResult.Status.FAILED, row));
+            }
+        }
+        try {
+            // The refunds must be durable before their intents are resolved.
+            ledger.flush();
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Refunds couldn't be flushed; settle resolves them", e);
+            for (Accessory row : rows) {
+                inFlight.remove(key(row.getUserID(), row.getAccessoryID()));
+            }
+            return;
+        }
+        for (Accessory row : rows) {
+            resolve(row);
+        }
+        for (Accessory row : refunded) {
+            release(row);
+        }
+    }
+
+    /**
+     * Asks the sink which rows it has saved
+     * @return (user, accessory) keys of the saved rows
+     */
+    private Set<Long> saved(List<Accessory> rows) throws IOException {
+        Set<Long> saved = new HashSet<>();
+        for (Accessory row : sink.saved(rows)) {
+            saved.add(key(row.getUserID(), row.getAccessoryID()));
+        }
+        return saved;
+    }
+
+    /**
+     * Checks the ledger's log for whether a purchase's coins were taken and not yet given back
+     */
+    private boolean charged(Accessory row) throws IOException {
+        String purchase = purchaseReason(row);
+        String refund = refundReason(row);
+        boolean charged = false;
+        for (WalletDelta delta : ledger.history(row.getUserID())) {
+            if (purchase.equals(delta.getReason())) {
+                charged = true;
+            } else if (refund.equals(delta.getReason())) {
+                charged = false;
+            }
+        }
+        return charged;
+    }
+
+    /**
+     * Resolves a settled purchase's intent; if that fails the intent stays open and settle
+     * resolves it the same way later
+     */
+    private void resolve(Accessory row) {
+        try {
+            journal.resolve(row.getUserID(), row.getAccessoryID());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Purchase intent couldn't be resolved; settle retries it", e);
+        }
+        inFlight.remove(key(row.getUserID(), row.getAccessoryID()));
+    }
+
+    /**
+     * Gives back the stock and ownership claims of a purchase that didn't go through
+     */
+    private void release(Accessory row) {
+        AtomicInteger remaining = stock.get(row.getAccessoryID());
+        if (remaining != null) {
+            remaining.incrementAndGet();
+        }
+        owned.remove(key(row.getUserID(), row.getAccessoryID()));
+    }
+
+    private void forgetOldKeys() {
+        while (results.size() > maxKeys) {
+            String oldest = keyOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            results.remove(oldest);
+        }
+    }
+
+    private static String purchaseReason(Accessory row) {
+        return "purchase " + row.getAccessoryID();
+    }
+
+    private static String refundReason(Accessory row) {
+        return "refund " + row.getAccessoryID();
+    }
+
+    private static long key(int userID, int accessoryID) {
+        return ((long) userID << 32) | (accessoryID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A purchase waiting to be committed.
+     */
+    private static final class Pending {
+        final Accessory row;
+        final CompletableFuture<PurchaseResult> result;
+
+        Pending(Accessory row, CompletableFuture<PurchaseResult> result) {
+            this.row = row;
+            this.result = result;
+        }
+    }
+}
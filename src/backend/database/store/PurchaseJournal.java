@@ -0,0 +1,251 @@
+package store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import codec.Wire;
+import models.Accessory;
+
+/**
+ * Write-ahead log of purchase intents, keyed by (user, accessory). An intent is logged and
+ * forced before the coins are spent and resolved once the purchase is saved or its coins
+ * are durably refunded, so after a crash the intents still open are exactly the purchases
+ * that may be half done.
+ *
+ * A record is [int length][int crc][payload], with a type byte and the row's IDs and price
+ * encoded by Wire. Opening the log cuts off a torn tail. Buyers logging intents at the
+ * same time share one force. Once nothing is open the file is emptied, and if it grows
+ * past COMPACT_AT anyway the open intents are rewritten to a new file that replaces it.
+ */
+final class PurchaseJournal implements Closeable {
+
+    /** Log size at which resolved intents are compacted away. */
+    static final long COMPACT_AT = 1 << 20;
+
+    private static final int HEADER = 8;
+    private static final byte INTENT = 1;
+    private static final byte RESOLVED = 2;
+
+    /** Longest payload a record can have; a longer length is treated as corrupt. */
+    private static final int MAX_RECORD = 64;
+
+    private final Path path;
+    private final Map<Long, Accessory> open = new ConcurrentHashMap<>();
+    private final Object forceLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer record = ByteBuffer.allocate(HEADER + MAX_RECORD);
+    private FileChannel channel;
+    private volatile long written;
+    private long forced;
+
+    /**
+     * Opens or creates a purchase journal, reading the intents still open
+     * @param path journal file
+     * @throws IOException if the file can't be opened or read
+     */
+    PurchaseJournal(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long end = scan();
+            if (end < channel.size()) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+            written = end;
+            forced = end;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Logs that a purchase is starting and forces it to disk
+     * @param row owned accessory row being bought
+     * @throws IOException if the write or force fails; the intent then isn't open
+     */
+    void begin(Accessory row) throws IOException {
+        long end;
+        synchronized (this) {
+            end = write(INTENT, row);
+            open.put(key(row.getUserID(), row.getAccessoryID()), row);
+        }
+        try {
+            force(end);
+        } catch (IOException e) {
+            open.remove(key(row.getUserID(), row.getAccessoryID()));
+            throw e;
+        }
+    }
+
+    /**
+     * Logs that a purchase is settled. Not forced: if it is lost, recovery settles the
+     * purchase again the same way.
+     * @param userID buyer's user ID
+     * @param accessoryID accessory ID
+     * @throws IOException if the write fails
+     */
+    synchronized void resolve(int userID, int accessoryID) throws IOException {
+        Accessory row = open.remove(key(userID, accessoryID));
+        if (row == null) {
+            return;
+        }
+        if (open.isEmpty()) {
+            synchronized (forceLock) {
+                channel.truncate(0);
+                channel.force(true);
+                written = 0;
+                forced = 0;
+            }
+        } else if (written + HEADER + MAX_RECORD > COMPACT_AT) {
+            compact();
+        } else {
+            write(RESOLVED, row);
+        }
+    }
+
+    /**
+     * Gets the purchases logged but not yet settled
+     * @return owned accessory rows
+     */
+    List<Accessory> open() {
+        return new ArrayList<>(open.values());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes a record at the end of the log; the caller holds this object's lock
+     * @return log offset just past the record
+     */
+    private long write(byte type, Accessory row) throws IOException {
+        ByteBuffer buffer = record.clear();
+        buffer.position(HEADER);
+        buffer.put(type);
+        Wire.writeInt(buffer, row.getUserID());
+        Wire.writeInt(buffer, row.getAccessoryID());
+        Wire.writeInt(buffer, row.getPetID());
+        Wire.writeInt(buffer, row.getAccessoryPrice());
+        int length = buffer.position() - HEADER;
+        crc.reset();
+        crc.update(buffer.array(), HEADER, length);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        long position = written;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        written = position;
+        return position;
+    }
+
+    /**
+     * Forces the log at least up to end; a force started for another buyer after end was
+     * written covers this one too
+     */
+    private void force(long end) throws IOException {
+        synchronized (forceLock) {
+            if (forced >= end) {
+                return;
+            }
+            long target = written;
+            channel.force(false);
+            forced = target;
+        }
+    }
+
+    /**
+     * Rewrites the open intents to a new file and moves it over the log; the caller holds
+     * this object's lock
+     */
+    private void compact() throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        synchronized (forceLock) {
+            FileChannel compacted = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            FileChannel previous = channel;
+            long previousWritten = written;
+            try {
+                channel = compacted;
+                written = 0;
+                for (Accessory row : open.values()) {
+                    write(INTENT, row);
+                }
+                compacted.force(true);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                channel = previous;
+                written = previousWritten;
+                compacted.close();
+                throw e;
+            }
+            forced = written;
+            previous.close();
+        }
+    }
+
+    /**
+     * Reads the log from the start, stopping at the first torn or corrupt record
+     * @return log offset just past the last valid record
+     */
+    private long scan() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Purchase journal is too large: " + size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        CRC32 check = new CRC32();
+        int end = 0;
+        while (end + HEADER <= buffer.limit()) {
+            int length = buffer.getInt(end);
+            if (length <= 0 || length > MAX_RECORD || end + HEADER + length > buffer.limit()) {
+                break;
+            }
+            check.reset();
+            check.update(buffer.array(), end + HEADER, length);
+            if ((int) check.getValue() != buffer.getInt(end + 4)) {
+                break;
+            }
+            ByteBuffer payload = buffer.duplicate().position(end + HEADER).limit(end + HEADER + length);
+            byte type = payload.get();
+            int userID = Wire.readInt(payload);
+            int accessoryID = Wire.readInt(payload);
+            int petID = Wire.readInt(payload);
+            int price = Wire.readInt(payload);
+            if (type == INTENT) {
+                open.put(key(userID, accessoryID), new Accessory(accessoryID, null, null, userID, petID, price, null));
+            } else {
+                open.remove(key(userID, accessoryID));
+            }
+            end += HEADER + length;
+        }
+        return end;
+    }
+
+    private static long key(int userID, int accessoryID) {
+        return ((long) userID << 32) | (accessoryID & 0xFFFFFFFFL);
+    }
+}
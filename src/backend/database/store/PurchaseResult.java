@@ -0,0 +1,70 @@
+package store;
+
+import models.Accessory;
+
+/**
+ * Outcome of a store purchase.
+ */
+public final class PurchaseResult {
+
+    /**
+     * What happened to a purchase.
+     */
+    public enum Status {
+        /** Coins were taken and the accessory is owned. */
+        PURCHASED,
+        /** The user didn't have enough coins; nothing changed. */
+        INSUFFICIENT_COINS,
+        /** The user already owns the accessory; nothing changed. */
+        ALREADY_OWNED,
+        /** A limited accessory had no stock left; nothing changed. */
+        SOLD_OUT,
+        /** The accessory isn't in the catalog; nothing changed. */
+        NOT_IN_CATALOG,
+        /** Saving the purchase failed; any coins taken were refunded. */
+        FAILED,
+        /** Saving the purchase failed and the sink couldn't say if it was saved; settle decides. */
+        UNCONFIRMED
+    }
+
+    private final Status status;
+    private final Accessory accessory;
+
+    /**
+     * Constructor
+     * @param status outcome
+     * @param accessory the owned accessory row if purchased, otherwise the catalog item, or
+     *                  null if the item isn't in the catalog
+     */
+    public PurchaseResult(Status status, Accessory accessory) {
+        this.status = status;
+        this.accessory = accessory;
+    }
+
+    /**
+     * Gets outcome
+     * @return status
+     */
+    public Status getStatus() { return status; }
+
+    /**
+     * Gets the accessory
+     * @return owned accessory row if purchased, otherwise the catalog item, or null if the
+     *         item isn't in the catalog
+     */
+    public Accessory getAccessory() { return accessory; }
+
+    /**
+     * Checks if the purchase went through
+     * @return true if purchased
+     */
+    public boolean isPurchased() { return status == Status.PURCHASED; }
+
+    @Override
+    public String toString() {
+        return "PurchaseResult{" +
+                "status=" + status +
+                ", accessory=" + accessory +
+                '}';
+    }
+}
@@ -0,0 +1,33 @@
+package store;
+
+import java.io.IOException;
+import java.util.List;
+
+import models.Accessory;
+
+/**
+ * Storage that purchases are committed to in batches, for example one
+ * {@code UNWIND $items AS i MATCH (u:User {userID: i.userID}) CREATE (u)-[:OWNS]->(:Item {item_id: i.accessoryID})}
+ * query per batch.
+ */
+public interface PurchaseSink {
+
+    /**
+     * Saves newly owned accessories
+     * @param owned one row per purchase, with userID and petID set to the buyer
+     * @throws IOException if the batch can't be saved; saved() is then asked which rows
+     *                     made it, and only the others are refunded
+     */
+    void commit(List<Accessory> owned) throws IOException;
+
+    /**
+     * Checks which rows are already saved, for example with one
+     * {@code UNWIND $items AS i MATCH (u:User {userID: i.userID})-[:OWNS]->(:Item {item_id: i.accessoryID}) RETURN i}
+     * query, to settle a commit that failed part way or a purchase left open by a crash
+     * @param owned rows to check; only userID and accessoryID are set on rows read back
+     *              from the purchase journal
+     * @return the rows that are saved
+     * @throws IOException if the check fails
+     */
+    List<Accessory> saved(List<Accessory> owned) throws IOException;
+}
@@ -0,0 +1,62 @@
+package streak;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable view of a user's streak as of the moment it was read.
+ */
+public final class Streak {
+
+    private final int userID;
+    private final int length;
+    private final LocalDate lastActive;
+    private final boolean atRisk;
+
+    /**
+     * Constructor
+     * @param userID user ID
+     * @param length current streak length, 0 once a day has been missed
+     * @param lastActive last day the user saved an entry in their time zone, or null if never
+     * @param atRisk true if the streak ends unless the user saves an entry today
+     */
+    public Streak(int userID, int length, LocalDate lastActive, boolean atRisk) {
+        this.userID = userID;
+        this.length = length;
+        this.lastActive = lastActive;
+        this.atRisk = atRisk;
+    }
+
+    /**
+     * Gets user ID
+     * @return userID
+     */
+    public int getUserID() { return userID; }
+
+    /**
+     * Gets current streak length
+     * @return length
+     */
+    public int getLength() { return length; }
+
+    /**
+     * Gets last day the user saved an entry in their time zone
+     * @return lastActive, or null if never
+     */
+    public LocalDate getLastActive() { return lastActive; }
+
+    /**
+     * Gets whether the streak ends unless the user saves an entry today
+     * @return atRisk
+     */
+    public boolean isAtRisk() { return atRisk; }
+
+    @Override
+    public String toString() {
+        return "Streak{" +
+                "userID=" + userID +
+                ", length=" + length +
+                ", lastActive=" + lastActive +
+                ", atRisk=" + atRisk +
+                '}';
+    }
+}
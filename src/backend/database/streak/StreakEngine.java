@@ -0,0 +1,217 @@
+package streak;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks journaling streaks without touching a user on days they don't write. For each
+ * user it keeps only the last day they saved an entry and the length of the run ending
+ * that day, packed into one long. The current streak is worked out when it is read: the
+ * run still counts if the last active day is today or yesterday in the user's time zone,
+ * and is 0 otherwise. A missed day therefore ends a streak without a midnight job, and
+ * several saves on the same day count once.
+ *
+ * Users are also indexed by their last active day, so the users whose streak ends unless
+ * they write today (last active yesterday, in their own time zone) are found by reading
+ * the two or three most recent days' sets instead of scanning every user.
+ */
+public class StreakEngine {
+
+    /** Days either side of UTC that a time zone's date can be. */
+    private static final int ZONE_SPREAD = 1;
+
+    private final ConcurrentHashMap<Integer, Long> runs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, ZoneId> zones = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<Integer>> activeOn = new ConcurrentHashMap<>();
+    private final ZoneId defaultZone;
+    private final Clock clock;
+
+    /**
+     * Constructor
+     * @param defaultZone time zone for users who haven't set one
+     */
+    public StreakEngine(ZoneId defaultZone) {
+        this(defaultZone, Clock.systemUTC());
+    }
+
+    /**
+     * Constructor with a custom clock
+     * @param defaultZone time zone for users who haven't set one
+     * @param clock clock that decides what today is
+     */
+    public StreakEngine(ZoneId defaultZone, Clock clock) {
+        this.defaultZone = defaultZone;
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the time zone whose midnight ends a user's day
+     * @param userID user ID
+     * @param zone time zone, or null to use the default
+     */
+    public void setZone(int userID, ZoneId zone) {
+        if (zone == null) {
+            zones.remove(userID);
+        } else {
+            zones.put(userID, zone);
+        }
+    }
+
+    /**
+     * Loads a user's saved streak, for example at startup
+     * @param userID user ID
+     * @param lastActive last day the user saved an entry in their time zone
+     * @param length length of the run ending on lastActive
+     */
+    public void restore(int userID, LocalDate lastActive, int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Streak length must be positive: " + length);
+        }
+        long day = lastActive.toEpochDay();
+        runs.compute(userID, (id, previous) -> {
+            moveDay(id, previous == null ? Long.MIN_VALUE : lastDay(previous), day);
+            return pack(day, length);
+        });
+    }
+
+    /**
+     * Records a journal entry saved now
+     * @param userID user ID
+     * @return streak after the save
+     */
+    public Streak record(int userID) {
+        return record(userID, clock.instant());
+    }
+
+    /**
+     * Records a journal entry. A second save on the same day leaves the streak as it is,
+     * and a save dated before the last active day, such as one synced late from a device,
+     * is ignored.
+     * @param userID user ID
+     * @param savedAt when the entry was saved
+     * @return streak after the save
+     */
+    public Streak record(int userID, Instant savedAt) {
+        long day = LocalDate.ofInstant(savedAt, zoneOf(userID)).toEpochDay();
+        long packed = runs.compute(userID, (id, previous) -> {
+            if (previous == null) {
+                moveDay(id, Long.MIN_VALUE, day);
+                return pack(day, 1);
+            }
+            long last = lastDay(previous);
+            if (day <= last) {
+                return previous;
+            }
+            moveDay(id, last, day);
+            return pack(day, day == last + 1 ? length(previous) + 1 : 1);
+        });
+        return streak(userID, packed, today(userID));
+    }
+
+    /**
+     * Gets a user's current streak length
+     * @param userID user ID
+     * @return streak length, 0 if they have never written or missed a day
+     */
+    public int length(int userID) {
+        Long packed = runs.get(userID);
+        if (packed == null) {
+            return 0;
+        }
+        return lastDay(packed) >= today(userID) - 1 ? length(packed) : 0;
+    }
+
+    /**
+     * Gets a user's current streak
+     * @param userID user ID
+     * @return streak
+     */
+    public Streak get(int userID) {
+        Long packed = runs.get(userID);
+        if (packed == null) {
+            return new Streak(userID, 0, null, false);
+        }
+        return streak(userID, packed, today(userID));
+    }
+
+    /**
+     * Gets the users whose streak ends unless they save an entry before their midnight,
+     * for sending reminders. Days too old to matter in any time zone are dropped from the
+     * index on the way.
+     * @return user IDs
+     */
+    public Set<Integer> atRiskToday() {
+        Instant now = clock.instant();
+        long utcDay = LocalDate.ofInstant(now, ZoneOffset.UTC).toEpochDay();
+        long oldest = utcDay - 1 - ZONE_SPREAD;
+        activeOn.keySet().removeIf(day -> day < oldest);
+        Set<Integer> atRisk = new HashSet<>();
+        for (long day = oldest; day <= utcDay - 1 + ZONE_SPREAD; day++) {
+            Set<Integer> users = activeOn.get(day);
+            if (users == null) {
+                continue;
+            }
+            for (int userID : users) {
+                if (day == LocalDate.ofInstant(now, zoneOf(userID)).toEpochDay() - 1) {
+                    atRisk.add(userID);
+                }
+            }
+        }
+        return atRisk;
+    }
+
+    /**
+     * Gets number of users with a recorded streak, including lapsed ones
+     * @return users
+     */
+    public int size() {
+        return runs.size();
+    }
+
+    private Streak streak(int userID, long packed, long today) {
+        long last = lastDay(packed);
+        boolean alive = last >= today - 1;
+        return new Streak(userID, alive ? length(packed) : 0, LocalDate.ofEpochDay(last), last == today - 1);
+    }
+
+    private long today(int userID) {
+        return LocalDate.ofInstant(clock.instant(), zoneOf(userID)).toEpochDay();
+    }
+
+    private ZoneId zoneOf(int userID) {
+        return zones.getOrDefault(userID, defaultZone);
+    }
+
+    /**
+     * Moves a user between last-active-day sets; called inside the user's compute so
+     * moves for one user don't interleave
+     */
+    private void moveDay(int userID, long from, long to) {
+        if (from == to) {
+            return;
+        }
+        Set<Integer> previous = activeOn.get(from);
+        if (previous != null) {
+            previous.remove(userID);
+        }
+        activeOn.computeIfAbsent(to, day -> ConcurrentHashMap.newKeySet()).add(userID);
+    }
+
+    private static long pack(long day, int length) {
+        return (day << 32) | (length & 0xFFFFFFFFL);
+    }
+
+    private static long lastDay(long packed) {
+        return packed >> 32;
+    }
+
+    private static int length(long packed) {
+        return (int) packed;
+    }
+}
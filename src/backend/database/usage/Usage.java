@@ -0,0 +1,60 @@
+package usage;
+
+/**
+ * Immutable view of a user's app time within the meter's sliding window.
+ */
+public final class Usage {
+
+    private final int userID;
+    private final long usedMillis;
+    private final long limitMillis;
+    private final long lastSeen;
+
+    /**
+     * Constructor
+     * @param userID user ID
+     * @param usedMillis time used within the window
+     * @param limitMillis time allowed within the window, or 0 for no limit
+     * @param lastSeen time of the last heartbeat in epoch milliseconds
+     */
+    public Usage(int userID, long usedMillis, long limitMillis, long lastSeen) {
+        this.userID = userID;
+        this.usedMillis = usedMillis;
+        this.limitMillis = limitMillis;
+        this.lastSeen = lastSeen;
+    }
+
+    /**
+     * Gets user ID
+     * @return userID
+     */
+    public int getUserID() { return userID; }
+
+    /**
+     * Gets time used within the window
+     * @return usedMillis
+     */
+    public long getUsedMillis() { return usedMillis; }
+
+    /**
+     * Gets time allowed within the window
+     * @return limitMillis, or 0 for no limit
+     */
+    public long getLimitMillis() { return limitMillis; }
+
+    /**
+     * Gets time of the last heartbeat
+     * @return lastSeen in epoch milliseconds
+     */
+    public long getLastSeen() { return lastSeen; }
+
+    @Override
+    public String toString() {
+        return "Usage{" +
+                "userID=" + userID +
+                ", usedMillis=" + usedMillis +
+                ", limitMillis=" + limitMillis +
+                ", lastSeen=" + lastSeen +
+                '}';
+    }
+}
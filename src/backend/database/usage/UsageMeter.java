@@ -0,0 +1,381 @@
+package usage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures how long each child has used the app over a sliding window, such as the last
+ * 24 hours, so the parental time limit can be enforced on every request without a
+ * database write per interaction.
+ *
+ * Clients send a heartbeat every few seconds while the app is open. Each heartbeat
+ * credits the time since the user's previous one, whichever device sent it, so
+ * heartbeats from several devices, retries and duplicates coalesce into wall-clock time
+ * instead of adding up. A gap longer than maxGap counts as the app having been closed
+ * and credits nothing.
+ *
+ * Each user has a small ring of time buckets covering the window and a running total
+ * that old buckets are subtracted from as the window slides, so isOverLimit is a map
+ * read and a comparison. A user's state is only ever locked by that user's own requests,
+ * so there is no shared lock for millions of sessions to contend on. Users active since
+ * the last flush are written to the sink in one batch.
+ */
+public class UsageMeter {
+
+    private static final Logger LOG = Logger.getLogger(UsageMeter.class.getName());
+
+    private final UsageSink sink;
+    private final long bucketMillis;
+    private final int buckets;
+    private final long maxGapMillis;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<Integer, Meter> meters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Long> limits = new ConcurrentHashMap<>();
+    private final Set<Integer> unsent = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor
+     * @param sink storage that usage is written behind to
+     * @param window length of the sliding window
+     * @param buckets number of slices the window is kept in; more slices slide more smoothly
+     * @param maxGap longest time between heartbeats that still counts as use
+     * @param unit unit of window and maxGap
+     */
+    public UsageMeter(UsageSink sink, long window, int buckets, long maxGap, TimeUnit unit) {
+        this(sink, window, buckets, maxGap, unit, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor with a custom clock
+     * @param sink storage that usage is written behind to
+     * @param window length of the sliding window
+     * @param buckets number of slices the window is kept in; more slices slide more smoothly
+     * @param maxGap longest time between heartbeats that still counts as use
+     * @param unit unit of window and maxGap
+     * @param clock millisecond clock
+     */
+    public UsageMeter(UsageSink sink, long window, int buckets, long maxGap, TimeUnit unit, LongSupplier clock) {
+        if (buckets <= 0 || maxGap <= 0 || unit.toMillis(window) < buckets) {
+            throw new IllegalArgumentException("buckets and maxGap must be positive, and window at least a "
+                    + "millisecond per bucket");
+        }
+        this.sink = sink;
+        this.bucketMillis = unit.toMillis(window) / buckets;
+        this.buckets = buckets;
+        this.maxGapMillis = unit.toMillis(maxGap);
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the time a user may use the app within the window
+     * @param userID user ID
+     * @param limit time allowed, or 0 or less for no limit
+     * @param unit unit of limit
+     */
+    public void setLimit(int userID, long limit, TimeUnit unit) {
+        if (limit <= 0) {
+            limits.remove(userID);
+        } else {
+            limits.put(userID, unit.toMillis(limit));
+        }
+    }
+
+    /**
+     * Loads usage written to the sink before a restart, so a restart doesn't hand
+     * everyone a fresh allowance. The sink only keeps a total, so all of it is placed at
+     * lastSeen and leaves the window in one piece once lastSeen does; until then the user
+     * is charged for at least as much as they really used. Usage whose lastSeen has
+     * already left the window is ignored. Adds to any heartbeats received since startup.
+     * @param usage usage as last written to the sink; its limit is applied too if set
+     */
+    public void restore(Usage usage) {
+        int userID = usage.getUserID();
+        if (usage.getLimitMillis() > 0) {
+            limits.put(userID, usage.getLimitMillis());
+        }
+        long now = clock.getAsLong();
+        if (usage.getUsedMillis() <= 0 || now / bucketMillis - usage.getLastSeen() / bucketMillis >= buckets) {
+            return;
+        }
+        long used = Math.min(usage.getUsedMillis(), bucketMillis * buckets);
+        while (true) {
+            Meter meter = meters.computeIfAbsent(userID, id -> new Meter(buckets));
+            synchronized (meter) {
+                if (meter.evicted) {
+                    continue;
+                }
+                meter.seed(Math.min(usage.getLastSeen(), now), used, now, bucketMillis);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Records that a user's app is open now
+     * @param userID user ID
+     */
+    public void heartbeat(int userID) {
+        heartbeat(userID, clock.getAsLong());
+    }
+
+    /**
+     * Records that a user's app was open at a time
+     * @param userID user ID
+     * @param time time of the heartbeat in epoch milliseconds
+     */
+    public void heartbeat(int userID, long time) {
+        while (true) {
+            Meter meter = meters.get(userID);
+            if (meter == null) {
+                meter = meters.computeIfAbsent(userID, id -> new Meter(buckets));
+            }
+            boolean credited;
+            synchronized (meter) {
+                if (meter.evicted) {
+                    continue;
+                }
+                credited = meter.beat(time, bucketMillis, maxGapMillis);
+            }
+            if (credited) {
+                unsent.add(userID);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Records that a user closed the app, so the next heartbeat starts a new session
+     * instead of crediting the time in between
+     * @param userID user ID
+     */
+    public void endSession(int userID) {
+        Meter meter = meters.get(userID);
+        if (meter != null) {
+            synchronized (meter) {
+                meter.closed = true;
+            }
+        }
+    }
+
+    /**
+     * Checks if a user has used up their time
+     * @param userID user ID
+     * @return true if the user has a limit and has reached it within the window
+     */
+    public boolean isOverLimit(int userID) {
+        Long limit = limits.get(userID);
+        return limit != null && used(userID) >= limit;
+    }
+
+    /**
+     * Gets time used within the window
+     * @param userID user ID
+     * @param unit unit of the result
+     * @return time used
+     */
+    public long used(int userID, TimeUnit unit) {
+        return unit.convert(used(userID), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets time left within the window
+     * @param userID user ID
+     * @param unit unit of the result
+     * @return time left, 0 once over the limit, or Long.MAX_VALUE if the user has no limit
+     */
+    public long remaining(int userID, TimeUnit unit) {
+        Long limit = limits.get(userID);
+        if (limit == null) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0, limit - used(userID)), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets a user's usage
+     * @param userID user ID
+     * @return usage within the window
+     */
+    public Usage get(int userID) {
+        Long limit = limits.get(userID);
+        Meter meter = meters.get(userID);
+        long lastSeen = 0;
+        long used = 0;
+        if (meter != null) {
+            synchronized (meter) {
+                used = meter.slide(clock.getAsLong() / bucketMillis);
+                lastSeen = meter.lastBeat;
+            }
+        }
+        return new Usage(userID, used, limit == null ? 0 : limit, lastSeen);
+    }
+
+    /**
+     * Writes the usage of users active since the last flush to the sink. If the sink
+     * fails, the users are kept and written on the next flush.
+     * @return number of users written
+     * @throws IOException if the sink write fails
+     */
+    public synchronized int flush() throws IOException {
+        if (unsent.isEmpty()) {
+            return 0;
+        }
+        List<Usage> batch = new ArrayList<>();
+        for (Iterator<Integer> it = unsent.iterator(); it.hasNext(); ) {
+            int userID = it.next();
+            // Removed before reading, so a heartbeat in between marks the user unsent again.
+            it.remove();
+            batch.add(get(userID));
+        }
+        try {
+            sink.write(batch);
+        } catch (IOException | RuntimeException e) {
+            for (Usage usage : batch) {
+                unsent.add(usage.getUserID());
+            }
+            throw e;
+        }
+        return batch.size();
+    }
+
+    /**
+     * Runs flush on a fixed delay. A failed flush is logged and the schedule carries on;
+     * the users it missed are written on the next one.
+     * @param executor executor to run on
+     * @param period time between flushes
+     * @param unit unit of period
+     * @return handle to cancel the schedule
+     */
+    public ScheduledFuture<?> scheduleFlush(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Usage flush failed, retrying on the next run", e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Drops users whose last heartbeat has slid out of the window, since they have no
+     * usage left to track. Walks every user, so run it rarely, for example hourly.
+     * @return number of users dropped
+     */
+    public int evictIdle() {
+        long cutoff = clock.getAsLong() - bucketMillis * buckets;
+        int evicted = 0;
+        for (Iterator<Map.Entry<Integer, Meter>> it = meters.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Meter> entry = it.next();
+            Meter meter = entry.getValue();
+            synchronized (meter) {
+                if (meter.lastBeat < cutoff && !unsent.contains(entry.getKey())) {
+                    meters.remove(entry.getKey(), meter);
+                    meter.evicted = true;
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Gets number of users being tracked
+     * @return users
+     */
+    public int size() {
+        return meters.size();
+    }
+
+    private long used(int userID) {
+        Meter meter = meters.get(userID);
+        if (meter == null) {
+            return 0;
+        }
+        synchronized (meter) {
+            return meter.slide(clock.getAsLong() / bucketMillis);
+        }
+    }
+
+    /**
+     * One user's ring of time buckets; guarded by its own monitor.
+     */
+    private static final class Meter {
+        final int[] ring;
+        long bucket;
+        long total;
+        long lastBeat;
+        /** Set by endSession, so the next heartbeat credits nothing. */
+        boolean closed;
+        /** Set once the meter is dropped from the map, so a racing heartbeat looks it up again. */
+        boolean evicted;
+
+        Meter(int buckets) {
+            this.ring = new int[buckets];
+        }
+
+        /**
+         * Credits the time since the last heartbeat to the current bucket
+         * @return true if any time was credited
+         */
+        boolean beat(long time, long bucketMillis, long maxGapMillis) {
+            long elapsed = time - lastBeat;
+            if (elapsed <= 0) {
+                return false;
+            }
+            boolean resumed = closed || lastBeat == 0 || elapsed > maxGapMillis;
+            lastBeat = time;
+            closed = false;
+            slide(time / bucketMillis);
+            if (resumed) {
+                return false;
+            }
+            int slot = (int) Math.floorMod(bucket, (long) ring.length);
+            ring[slot] += (int) elapsed;
+            total += elapsed;
+            return true;
+        }
+
+        /**
+         * Adds restored usage to the bucket holding time, which must be within the window,
+         * and treats the app as closed since then
+         */
+        void seed(long time, long amount, long now, long bucketMillis) {
+            slide(now / bucketMillis);
+            int slot = (int) Math.floorMod(time / bucketMillis, (long) ring.length);
+            ring[slot] += (int) amount;
+            total += amount;
+            if (time > lastBeat) {
+                lastBeat = time;
+                closed = true;
+            }
+        }
+
+        /**
+         * Clears buckets that have slid out of the window
+         * @return total time left in the window
+         */
+        long slide(long now) {
+            if (now > bucket) {
+                long expired = Math.min(now - bucket, ring.length);
+                for (long i = 1; i <= expired; i++) {
+                    int slot = (int) Math.floorMod(bucket + i, (long) ring.length);
+                    total -= ring[slot];
+                    ring[slot] = 0;
+                }
+                bucket = now;
+            }
+            return total;
+        }
+    }
+}
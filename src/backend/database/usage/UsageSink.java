@@ -0,0 +1,19 @@
+package usage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage that the meter writes usage behind to, for example one
+ * {@code UNWIND $usage AS x MATCH (u:User {userID: x.userID}) SET u.usedMillis = x.usedMillis}
+ * query per batch. Figures are absolute, so writing the same batch twice is harmless.
+ */
+public interface UsageSink {
+
+    /**
+     * Writes the latest usage of users who were active since the last flush
+     * @param usage one record per active user
+     * @throws IOException if the write fails; the users are retried on the next flush
+     */
+    void write(List<Usage> usage) throws IOException;
+}
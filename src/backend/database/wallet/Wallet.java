@@ -0,0 +1,60 @@
+package wallet;
+
+/**
+ * Immutable view of a user's coins, XP and streak at one point in the ledger.
+ */
+public final class Wallet {
+
+    private final int userID;
+    private final int coins;
+    private final int xp;
+    private final int streak;
+
+    /**
+     * Constructor
+     * @param userID user ID
+     * @param coins coin balance
+     * @param xp experience points
+     * @param streak streak length
+     */
+    public Wallet(int userID, int coins, int xp, int streak) {
+        this.userID = userID;
+        this.coins = coins;
+        this.xp = xp;
+        this.streak = streak;
+    }
+
+    /**
+     * Gets user ID
+     * @return userID
+     */
+    public int getUserID() { return userID; }
+
+    /**
+     * Gets coin balance
+     * @return coins
+     */
+    public int getCoins() { return coins; }
+
+    /**
+     * Gets experience points
+     * @return xp
+     */
+    public int getXp() { return xp; }
+
+    /**
+     * Gets streak length
+     * @return streak
+     */
+    public int getStreak() { return streak; }
+
+    @Override
+    public String toString() {
+        return "Wallet{" +
+                "userID=" + userID +
+                ", coins=" + coins +
+                ", xp=" + xp +
+                ", streak=" + streak +
+                '}';
+    }
+}
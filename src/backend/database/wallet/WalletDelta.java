@@ -0,0 +1,90 @@
+package wallet;
+
+/**
+ * One change to a user's wallet, as recorded in the ledger's audit log.
+ */
+public final class WalletDelta {
+
+    private final long sequence;
+    private final long timestamp;
+    private final int userID;
+    private final int coins;
+    private final int xp;
+    private final int streak;
+    private final String reason;
+
+    /**
+     * Constructor
+     * @param sequence ledger sequence number, unique and increasing
+     * @param timestamp time of the change in epoch milliseconds
+     * @param userID user ID
+     * @param coins change in coins
+     * @param xp change in experience points
+     * @param streak change in streak length
+     * @param reason why the change was made, for example "journal entry" or "purchase"
+     */
+    public WalletDelta(long sequence, long timestamp, int userID, int coins, int xp, int streak, String reason) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.userID = userID;
+        this.coins = coins;
+        this.xp = xp;
+        this.streak = streak;
+        this.reason = reason;
+    }
+
+    /**
+     * Gets sequence number
+     * @return sequence
+     */
+    public long getSequence() { return sequence; }
+
+    /**
+     * Gets time of the change
+     * @return timestamp in epoch milliseconds
+     */
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * Gets user ID
+     * @return userID
+     */
+    public int getUserID() { return userID; }
+
+    /**
+     * Gets change in coins
+     * @return coins
+     */
+    public int getCoins() { return coins; }
+
+    /**
+     * Gets change in experience points
+     * @return xp
+     */
+    public int getXp() { return xp; }
+
+    /**
+     * Gets change in streak length
+     * @return streak
+     */
+    public int getStreak() { return streak; }
+
+    /**
+     * Gets reason for the change
+     * @return reason
+     */
+    public String getReason() { return reason; }
+
+    @Override
+    public String toString() {
+        return "WalletDelta{" +
+                "sequence=" + sequence +
+                ", timestamp=" + timestamp +
+                ", userID=" + userID +
+                ", coins=" + coins +
+                ", xp=" + xp +
+                ", streak=" + streak +
+                ", reason='" + reason + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,558 @@
+package wallet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.ObjLongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import codec.Wire;
+import models.User;
+
+/**
+ * In-memory ledger for User.coins, xp and streak, so saving an entry or buying an item
+ * doesn't run a read-modify-write query against a hot User row. Each user's counters are
+ * atomics: credits are a single add, and spends compare-and-set the coin balance, so two
+ * spends racing for the last coins can't both succeed and a balance never goes below zero.
+ *
+ * Every change is also queued as a WalletDelta on one of several stripes, picked by user
+ * ID, so threads updating different users don't contend on one queue. flush drains the
+ * stripes, appends the deltas to an append-only audit log, forces it, and then writes the
+ * balance of each changed user as of the last logged delta to the sink in one batch,
+ * tagged with that delta's sequence. Opening the ledger replays the deltas logged after
+ * the sequence the sink last stored, so a crash between the log and the sink loses
+ * nothing. Changes made since the last flush are only in memory, so flush should run on
+ * a short schedule.
+ *
+ * A log record is [int length][int crc][payload], with the payload encoded by Wire. The
+ * offset of every record is kept in memory by user, so history reads only that user's
+ * records.
+ */
+public class WalletLedger implements Closeable {
+
+    /** Coins earned for saving a journal entry. */
+    public static final int ENTRY_COINS = 5;
+
+    /** Experience points earned for saving a journal entry. */
+    public static final int ENTRY_XP = 10;
+
+    private static final int HEADER = 8;
+
+    /** Bytes read from the log at a time when scanning it. */
+    private static final int CHUNK = 64 * 1024;
+
+    private static final Logger LOG = Logger.getLogger(WalletLedger.class.getName());
+
+    private final ConcurrentHashMap<Integer, Account> accounts = new ConcurrentHashMap<>();
+    private final Queue<WalletDelta>[] stripes;
+    private final AtomicLong sequence;
+    private final IntFunction<User> loader;
+    private final WalletSink sink;
+    private final FileChannel log;
+    private final CRC32 crc = new CRC32();
+    private final Set<Integer> unsent = new HashSet<>();
+    private final List<WalletDelta> unlogged = new ArrayList<>();
+    private final Map<Integer, Offsets> offsets;
+    private ByteBuffer encodeBuffer = ByteBuffer.allocate(4096);
+    private long logEnd;
+    private long lastLogged;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private WalletLedger(FileChannel log, long logEnd, long lastSequence, long lastLogged,
+            Map<Integer, Offsets> offsets, IntFunction<User> loader, WalletSink sink) {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.stripes = new Queue[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.log = log;
+        this.logEnd = logEnd;
+        this.sequence = new AtomicLong(lastSequence);
+        this.lastLogged = lastLogged;
+        this.offsets = offsets;
+        this.loader = loader;
+        this.sink = sink;
+    }
+
+    /**
+     * Opens a ledger, creating its audit log if needed. A torn record at the end of the
+     * log, left by a crash mid-write, is cut off. Deltas logged after the last record the
+     * sink acknowledged are applied on top of the users' stored balances and written to
+     * the sink on the next flush.
+     * @param logFile audit log file
+     * @param loader looks up a user in the database the first time the ledger touches them,
+     *               returning null if there is no such user
+     * @param sink storage that balances are written behind to
+     * @return ledger
+     * @throws IOException if the log or the sink's last sequence can't be read
+     */
+    public static WalletLedger open(Path logFile, IntFunction<User> loader, WalletSink sink) throws IOException {
+        FileChannel channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        WalletLedger ledger;
+        try {
+            long acknowledged = sink.lastSequence();
+            Map<Integer, Offsets> offsets = new HashMap<>();
+            List<WalletDelta> replay = new ArrayList<>();
+            long[] last = new long[2];
+            boolean[] found = new boolean[1];
+            long end = scan(channel, (delta, position) -> {
+                offsets.computeIfAbsent(delta.getUserID(), id -> new Offsets()).add(position);
+                last[0] = Math.max(last[0], delta.getSequence());
+                last[1] = delta.getSequence();
+                // A flush logs its deltas in sequence order, so the acknowledged record ends
+                // its batch and everything logged after it is unacknowledged, even a delta
+                // with a lower sequence that reached a later batch.
+                if (delta.getSequence() == acknowledged) {
+                    replay.clear();
+                    found[0] = true;
+                } else if (found[0] || delta.getSequence() > acknowledged) {
+                    replay.add(delta);
+                }
+            });
+            channel.truncate(end);
+            ledger = new WalletLedger(channel, end, last[0], last[1], offsets, loader, sink);
+            ledger.replay(replay);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return ledger;
+    }
+
+    /**
+     * Gets a user's wallet, loading it from the database on first use
+     * @param userID user ID
+     * @return current balances
+     */
+    public Wallet get(int userID) {
+        Account account = account(userID);
+        return new Wallet(userID, account.coins.get(), account.xp.get(), account.streak.get());
+    }
+
+    /**
+     * Credits the reward for saving a journal entry. The streak isn't touched, since
+     * several saves on one day count as one streak day; pass the length from a
+     * StreakEngine to setStreak instead.
+     * @param userID user ID
+     */
+    public void rewardEntry(int userID) {
+        credit(userID, ENTRY_COINS, ENTRY_XP, 0, "journal entry");
+    }
+
+    /**
+     * Adds coins, XP and streak days
+     * @param userID user ID
+     * @param coins coins to add, not negative
+     * @param xp experience points to add, not negative
+     * @param streak streak days to add, not negative
+     * @param reason why the credit was made
+     * @throws ArithmeticException if a balance would overflow; nothing is changed then
+     */
+    public void credit(int userID, int coins, int xp, int streak, String reason) {
+        if (coins < 0 || xp < 0 || streak < 0) {
+            throw new IllegalArgumentException("Credit can't be negative: " + coins + ", " + xp + ", " + streak);
+        }
+        Account account = account(userID);
+        AtomicInteger[] counters = {account.coins, account.xp, account.streak};
+        int[] amounts = {coins, xp, streak};
+        int added = 0;
+        try {
+            for (; added < counters.length; added++) {
+                add(counters[added], amounts[added]);
+            }
+        } catch (ArithmeticException e) {
+            // Undo the fields already added, so no balance changes without a delta.
+            while (added-- > 0) {
+                counters[added].addAndGet(-amounts[added]);
+            }
+            throw e;
+        }
+        record(userID, coins, xp, streak, reason);
+    }
+
+    /**
+     * Spends coins if the user has enough
+     * @param userID user ID
+     * @param coins coins to spend, not negative
+     * @param reason why the coins were spent
+     * @return true if the coins were taken, false if the balance was too low
+     */
+    public boolean spend(int userID, int coins, String reason) {
+        if (coins < 0) {
+            throw new IllegalArgumentException("Can't spend a negative amount: " + coins);
+        }
+        AtomicInteger balance = account(userID).coins;
+        int current;
+        do {
+            current = balance.get();
+            if (current < coins) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - coins));
+        record(userID, -coins, 0, 0, reason);
+        return true;
+    }
+
+    /**
+     * Sets a user's streak to a length worked out elsewhere, such as by a StreakEngine
+     * @param userID user ID
+     * @param streak streak length, not negative
+     * @param reason why the streak changed
+     */
+    public void setStreak(int userID, int streak, String reason) {
+        if (streak < 0) {
+            throw new IllegalArgumentException("Streak can't be negative: " + streak);
+        }
+        int previous = account(userID).streak.getAndSet(streak);
+        if (previous != streak) {
+            record(userID, 0, 0, streak - previous, reason);
+        }
+    }
+
+    /**
+     * Resets a user's streak to zero
+     * @param userID user ID
+     * @param reason why the streak was reset
+     */
+    public void resetStreak(int userID, String reason) {
+        int previous = account(userID).streak.getAndSet(0);
+        if (previous != 0) {
+            record(userID, 0, 0, -previous, reason);
+        }
+    }
+
+    /**
+     * Appends queued deltas to the audit log and writes changed balances to the sink.
+     * The balances written are the ones the logged deltas add up to, so a change that
+     * was still being queued is neither written nor acknowledged early. If the sink fails,
+     * the changed users are kept and written on the next flush.
+     * @return number of wallets written to the sink
+     * @throws IOException if the log or the sink write fails
+     */
+    public synchronized int flush() throws IOException {
+        for (Queue<WalletDelta> stripe : stripes) {
+            for (WalletDelta delta = stripe.poll(); delta != null; delta = stripe.poll()) {
+                unlogged.add(delta);
+            }
+        }
+        if (!unlogged.isEmpty()) {
+            unlogged.sort(Comparator.comparingLong(WalletDelta::getSequence));
+            long[] positions = append(unlogged);
+            log.force(false);
+            for (int i = 0; i < unlogged.size(); i++) {
+                WalletDelta delta = unlogged.get(i);
+                offsets.computeIfAbsent(delta.getUserID(), id -> new Offsets()).add(positions[i]);
+                accounts.get(delta.getUserID()).logged(delta);
+                unsent.add(delta.getUserID());
+            }
+            logEnd = positions[unlogged.size()];
+            lastLogged = unlogged.get(unlogged.size() - 1).getSequence();
+            unlogged.clear();
+        }
+        if (unsent.isEmpty()) {
+            return 0;
+        }
+        List<Wallet> wallets = new ArrayList<>(unsent.size());
+        for (int userID : unsent) {
+            Account account = accounts.get(userID);
+            wallets.add(new Wallet(userID, account.loggedCoins, account.loggedXp, account.loggedStreak));
+        }
+        sink.write(wallets, lastLogged);
+        unsent.clear();
+        return wallets.size();
+    }
+
+    /**
+     * Runs flush on a fixed delay. A failed flush is logged and retried on the next run
+     * instead of cancelling the schedule.
+     * @param executor executor to run on
+     * @param period time between flushes
+     * @param unit unit of period
+     * @return handle to cancel the schedule
+     */
+    public ScheduledFuture<?> scheduleFlush(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Wallet flush failed, retrying on the next run", e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Gets a user's audit trail from the log. Deltas that haven't been flushed yet are
+     * not included.
+     * @param userID user ID
+     * @return the user's deltas in sequence order
+     * @throws IOException if the log can't be read
+     */
+    public synchronized List<WalletDelta> history(int userID) throws IOException {
+        Offsets positions = offsets.get(userID);
+        if (positions == null) {
+            return new ArrayList<>();
+        }
+        List<WalletDelta> history = new ArrayList<>(positions.size);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        for (int i = 0; i < positions.size; i++) {
+            long position = positions.positions[i];
+            buffer.clear().limit(HEADER);
+            readFully(buffer, position);
+            int length = buffer.getInt(0);
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(length);
+            }
+            buffer.clear().limit(length);
+            readFully(buffer, position + HEADER);
+            history.add(decode(buffer.flip()));
+        }
+        history.sort(Comparator.comparingLong(WalletDelta::getSequence));
+        return history;
+    }
+
+    /**
+     * Flushes pending changes and closes the log
+     * @throws IOException if the final flush or closing fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            log.close();
+        }
+    }
+
+    private Account account(int userID) {
+        Account account = accounts.get(userID);
+        if (account != null) {
+            return account;
+        }
+        // Loaded outside the map so the database call doesn't block other users' bins;
+        // if two threads load the same user, the first one stored wins.
+        User user = loader.apply(userID);
+        if (user == null) {
+            throw new IllegalArgumentException("Unknown user: " + userID);
+        }
+        Account loaded = new Account(user.getCoins(), user.getXp(), user.getStreak());
+        Account raced = accounts.putIfAbsent(userID, loaded);
+        return raced == null ? loaded : raced;
+    }
+
+    /**
+     * Applies deltas that were logged but never reached the sink; called once from open
+     */
+    private synchronized void replay(List<WalletDelta> deltas) {
+        for (WalletDelta delta : deltas) {
+            Account account = account(delta.getUserID());
+            account.coins.addAndGet(delta.getCoins());
+            account.xp.addAndGet(delta.getXp());
+            account.streak.addAndGet(delta.getStreak());
+            account.logged(delta);
+            unsent.add(delta.getUserID());
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = log.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Wallet log ends inside a record at " + position);
+            }
+            position += read;
+        }
+    }
+
+    private void record(int userID, int coins, int xp, int streak, String reason) {
+        WalletDelta delta = new WalletDelta(sequence.incrementAndGet(), System.currentTimeMillis(), userID, coins, xp,
+                streak, reason);
+        stripes[userID & (stripes.length - 1)].add(delta);
+    }
+
+    private static void add(AtomicInteger counter, int amount) {
+        if (amount != 0) {
+            counter.getAndUpdate(value -> Math.addExact(value, amount));
+        }
+    }
+
+    /**
+     * Writes deltas at the end of the log. Nothing is committed until the caller has
+     * forced the log, so a failed append is retried over the same bytes.
+     * @return log position of each delta's record, followed by the position just past
+     *         the last one
+     */
+    private long[] append(List<WalletDelta> deltas) throws IOException {
+        int size = 0;
+        for (WalletDelta delta : deltas) {
+            size += HEADER + sizeOf(delta);
+        }
+        if (encodeBuffer.capacity() < size) {
+            encodeBuffer = ByteBuffer.allocate(Math.max(size, encodeBuffer.capacity() * 2));
+        }
+        ByteBuffer buffer = encodeBuffer.clear();
+        long[] positions = new long[deltas.size() + 1];
+        for (int i = 0; i < deltas.size(); i++) {
+            WalletDelta delta = deltas.get(i);
+            int start = buffer.position();
+            positions[i] = logEnd + start;
+            buffer.position(start + HEADER);
+            buffer.putLong(delta.getSequence());
+            buffer.putLong(delta.getTimestamp());
+            Wire.writeInt(buffer, delta.getUserID());
+            Wire.writeInt(buffer, delta.getCoins());
+            Wire.writeInt(buffer, delta.getXp());
+            Wire.writeInt(buffer, delta.getStreak());
+            Wire.writeString(buffer, delta.getReason());
+            int length = buffer.position() - start - HEADER;
+            crc.reset();
+            crc.update(buffer.array(), start + HEADER, length);
+            buffer.putInt(start, length);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        positions[deltas.size()] = logEnd + buffer.position();
+        buffer.flip();
+        long position = logEnd;
+        while (buffer.hasRemaining()) {
+            position += log.write(buffer, position);
+        }
+        return positions;
+    }
+
+    private static int sizeOf(WalletDelta delta) {
+        return 16 + Wire.sizeOfInt(delta.getUserID()) + Wire.sizeOfInt(delta.getCoins())
+                + Wire.sizeOfInt(delta.getXp()) + Wire.sizeOfInt(delta.getStreak())
+                + Wire.sizeOfString(delta.getReason());
+    }
+
+    /**
+     * Reads every valid record in a log in chunks, stopping at the first torn or corrupt one
+     * @param channel log
+     * @param visitor called with each delta and the position of its record
+     * @return position just past the last valid record
+     */
+    private static long scan(FileChannel channel, ObjLongConsumer<WalletDelta> visitor) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHUNK, Math.max(size, HEADER)));
+        buffer.flip();
+        CRC32 check = new CRC32();
+        long end = 0;
+        while (end + HEADER <= size) {
+            buffer = fill(channel, buffer, HEADER, end);
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length <= 0 || end + HEADER + length > size) {
+                break;
+            }
+            buffer = fill(channel, buffer, HEADER + length, end);
+            start = buffer.position();
+            if (buffer.remaining() < HEADER + length) {
+                break;
+            }
+            check.reset();
+            check.update(buffer.array(), start + HEADER, length);
+            if ((int) check.getValue() != buffer.getInt(start + 4)) {
+                break;
+            }
+            visitor.accept(decode(buffer.duplicate().position(start + HEADER).limit(start + HEADER + length)), end);
+            buffer.position(start + HEADER + length);
+            end += HEADER + length;
+        }
+        return end;
+    }
+
+    /**
+     * Makes sure the buffer holds at least needed bytes, reading more of the log after
+     * the ones it still has
+     * @param offset log position of the buffer's position
+     * @return the buffer, or a larger one if it was too small
+     */
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, int needed, long offset) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        if (buffer.capacity() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(needed, CHUNK));
+            grown.put(buffer);
+            buffer = grown;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static WalletDelta decode(ByteBuffer payload) {
+        return new WalletDelta(payload.getLong(), payload.getLong(), Wire.readInt(payload), Wire.readInt(payload),
+                Wire.readInt(payload), Wire.readInt(payload), Wire.readString(payload));
+    }
+
+    /**
+     * One user's counters.
+     */
+    private static final class Account {
+        final AtomicInteger coins;
+        final AtomicInteger xp;
+        final AtomicInteger streak;
+        /** Balances as of the last logged delta; guarded by the ledger's monitor. */
+        int loggedCoins;
+        int loggedXp;
+        int loggedStreak;
+
+        Account(int coins, int xp, int streak) {
+            this.coins = new AtomicInteger(coins);
+            this.xp = new AtomicInteger(xp);
+            this.streak = new AtomicInteger(streak);
+            this.loggedCoins = coins;
+            this.loggedXp = xp;
+            this.loggedStreak = streak;
+        }
+
+        void logged(WalletDelta delta) {
+            loggedCoins += delta.getCoins();
+            loggedXp += delta.getXp();
+            loggedStreak += delta.getStreak();
+        }
+    }
+
+    /**
+     * Log positions of one user's records, in log order; guarded by the ledger's monitor.
+     */
+    private static final class Offsets {
+        long[] positions = new long[4];
+        int size;
+
+        void add(long position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package wallet;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage that the ledger writes balances behind to, for example one
+ * {@code UNWIND $wallets AS w MATCH (u:User {userID: w.userID}) SET u.coins = w.coins, ...}
+ * query per batch. Balances are absolute, so writing the same batch twice is harmless.
+ *
+ * Each batch comes with the sequence of the last audit log record it includes. The sink
+ * stores it in the same transaction as the balances, so that on startup the ledger can
+ * replay the records logged after it, which the database has not seen.
+ */
+public interface WalletSink {
+
+    /**
+     * Writes the latest balances of changed users
+     * @param wallets one wallet per changed user
+     * @param sequence sequence of the last log record the balances include
+     * @throws IOException if the write fails; the batch is retried on the next flush
+     */
+    void write(List<Wallet> wallets, long sequence) throws IOException;
+
+    /**
+     * Gets the sequence stored by the last successful write
+     * @return sequence, or 0 if nothing has been written
+     * @throws IOException if it can't be read
+     */
+    long lastSequence() throws IOException;
+}
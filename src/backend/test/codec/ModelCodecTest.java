@@ -0,0 +1,148 @@
+package codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import models.Accessory;
+import models.Feedback;
+import models.Friend;
+import models.Pet;
+import models.Skribble;
+import models.User;
+
+/**
+ * Round-trips every model through heap and direct buffers and checks that sizeOf is
+ * exact and that truncated input is rejected.
+ */
+class ModelCodecTest {
+
+    private static final String TEXT = "caf\u00E9 \u65E5\u8A18 \uD83D\uDE00 plain";
+
+    @Test
+    void roundTripsUsers() {
+        User user = new User(-7, "kid", "hash", "kid@example.com", TEXT, null, 11, "parent@example.com",
+                "3f2b6c1e-8d4a-4f0e-9b7a-2c5d1e6f7a8b", 4, 12, Integer.MAX_VALUE, Integer.MIN_VALUE, "child", "key");
+        for (ByteBuffer buffer : buffers(ModelCodec.sizeOf(user))) {
+            ModelCodec.encode(buffer, user);
+            assertFalse(buffer.hasRemaining());
+            User decoded = ModelCodec.decodeUser(buffer.flip());
+            assertEquals(-7, decoded.getUserID());
+            assertEquals(TEXT, decoded.getFirstName());
+            assertNull(decoded.getLastName());
+            assertEquals(Integer.MAX_VALUE, decoded.getXp());
+            assertEquals(Integer.MIN_VALUE, decoded.getCoins());
+            assertEquals("key", decoded.getEncryptionKey());
+        }
+    }
+
+    @Test
+    void roundTripsJournals() {
+        List<Skribble> journal = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            journal.add(new Skribble(i, 3, i == 0 ? null : LocalDate.of(2024, 1, 1).plusDays(i - 25),
+                    i % 2 == 0 ? TEXT + i : null, "happy", i % 3 == 0 ? null : "prompt " + i));
+        }
+        for (ByteBuffer buffer : buffers(ModelCodec.sizeOfJournal(journal))) {
+            ModelCodec.encodeJournal(buffer, journal);
+            assertFalse(buffer.hasRemaining());
+            List<Skribble> decoded = ModelCodec.decodeJournal(buffer.flip());
+            assertEquals(journal.size(), decoded.size());
+            for (int i = 0; i < journal.size(); i++) {
+                assertEquals(journal.get(i).getEntryID(), decoded.get(i).getEntryID());
+                assertEquals(journal.get(i).getDateCreated(), decoded.get(i).getDateCreated());
+                assertEquals(journal.get(i).getentry(), decoded.get(i).getentry());
+                assertEquals(journal.get(i).getaiPrompt(), decoded.get(i).getaiPrompt());
+            }
+        }
+    }
+
+    @Test
+    void metadataSkipsTheEntryText() {
+        Skribble skribble = new Skribble(9, 2, LocalDate.of(2024, 3, 4), TEXT, "calm", "prompt");
+        ByteBuffer buffer = ByteBuffer.allocate(ModelCodec.sizeOf(skribble));
+        ModelCodec.encode(buffer, skribble);
+        Skribble metadata = ModelCodec.decodeSkribbleMetadata(buffer.flip());
+        assertEquals(9, metadata.getEntryID());
+        assertEquals(2, metadata.getUserID());
+        assertEquals(LocalDate.of(2024, 3, 4), metadata.getDateCreated());
+        assertEquals("calm", metadata.getMood());
+        assertNull(metadata.getentry());
+        assertNull(metadata.getaiPrompt());
+    }
+
+    @Test
+    void roundTripsTheOtherModels() {
+        Accessory accessory = new Accessory(5, "Top hat", "hat", 1, 2, 300, "hat.png");
+        Pet pet = new Pet(2, 1, "Rex", "dog", "dog.png");
+        Friend friend = new Friend(8, 1, 2, "accepted");
+        Feedback feedback = new Feedback(LocalDate.of(2024, 2, 29), 4, TEXT, 1);
+        int size = ModelCodec.sizeOf(accessory) + ModelCodec.sizeOf(pet) + ModelCodec.sizeOf(friend)
+                + ModelCodec.sizeOf(feedback);
+        for (ByteBuffer buffer : buffers(size)) {
+            ModelCodec.encode(buffer, accessory);
+            ModelCodec.encode(buffer, pet);
+            ModelCodec.encode(buffer, friend);
+            ModelCodec.encode(buffer, feedback);
+            assertFalse(buffer.hasRemaining());
+            buffer.flip();
+            Accessory decodedAccessory = ModelCodec.decodeAccessory(buffer);
+            assertEquals("Top hat", decodedAccessory.getAccessoryName());
+            assertEquals(300, decodedAccessory.getAccessoryPrice());
+            assertEquals("hat.png", decodedAccessory.getAccessoryPNG());
+            Pet decodedPet = ModelCodec.decodePet(buffer);
+            assertEquals("Rex", decodedPet.getPetName());
+            assertEquals("dog.png", decodedPet.getPetPNG());
+            Friend decodedFriend = ModelCodec.decodeFriend(buffer);
+            assertEquals(2, decodedFriend.getUserID2());
+            assertEquals("accepted", decodedFriend.getFriendshipStatus());
+            Feedback decodedFeedback = ModelCodec.decodeFeedback(buffer);
+            assertEquals(LocalDate.of(2024, 2, 29), decodedFeedback.getDateSubmitted());
+            assertEquals(4, decodedFeedback.getFeedbackID());
+            assertEquals(TEXT, decodedFeedback.getFeedbackText());
+            assertEquals(1, decodedFeedback.getUserID());
+        }
+    }
+
+    @Test
+    void unpairedSurrogatesBecomeReplacementCharacters() {
+        String value = "a\uD800b\uDC00";
+        ByteBuffer buffer = ByteBuffer.allocate(Wire.sizeOfString(value));
+        Wire.writeString(buffer, value);
+        assertFalse(buffer.hasRemaining());
+        assertEquals("a\uFFFDb\uFFFD", Wire.readString(buffer.flip()));
+    }
+
+    @Test
+    void rejectsStringsLongerThanTheBuffer() {
+        for (ByteBuffer buffer : buffers(8)) {
+            Wire.writeVarInt(buffer, 100);
+            buffer.put((byte) 'x').flip();
+            assertThrows(BufferUnderflowException.class, () -> Wire.readString(buffer));
+            buffer.rewind();
+            assertThrows(BufferUnderflowException.class, () -> Wire.skipString(buffer));
+        }
+    }
+
+    @Test
+    void rejectsTruncatedModels() {
+        Skribble skribble = new Skribble(1, 1, LocalDate.of(2024, 1, 1), TEXT, "sad", "prompt");
+        ByteBuffer buffer = ByteBuffer.allocate(ModelCodec.sizeOf(skribble));
+        ModelCodec.encode(buffer, skribble);
+        buffer.flip().limit(buffer.limit() - 3);
+        assertThrows(BufferUnderflowException.class, () -> ModelCodec.decodeSkribble(buffer));
+    }
+
+    private static List<ByteBuffer> buffers(int size) {
+        return List.of(ByteBuffer.allocate(size), ByteBuffer.allocateDirect(size));
+    }
+}
@@ -0,0 +1,161 @@
+package crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import journal.JournalStore;
+import models.Skribble;
+import models.User;
+
+/**
+ * Checks that a rotation stopped partway through a user resumes from its checkpoint,
+ * doesn't hand over any user's key twice and leaves every entry readable with the new
+ * key.
+ */
+class KeyRotationJobTest {
+
+    private static final int USERS = 3;
+    private static final int ENTRIES = KeyRotationJob.CHUNK * 2 + 10;
+
+    @TempDir
+    Path dir;
+
+    private ExecutorService executor;
+    private ForkJoinPool pool;
+    private JournalStore store;
+    private DerivedKeyCache keys;
+    private EncryptionService crypto;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(2);
+        pool = new ForkJoinPool(2);
+        store = JournalStore.open(dir.resolve("journal"), 1 << 22);
+        keys = new DerivedKeyCache(16);
+        crypto = new EncryptionService(keys, executor, 2);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+        pool.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    void resumesFromTheCheckpointAfterBeingStopped() throws Exception {
+        List<KeyRotation> rotations = seed();
+        Path checkpoint = dir.resolve("rotation.checkpoint");
+        KeyRotationJob job = new KeyRotationJob(store, crypto, keys, pool, checkpoint);
+        AtomicInteger chunks = new AtomicInteger();
+        // User 0 takes six chunks, three to rotate and three to check; stop after two of user 1.
+        job.setBackpressure(() -> {
+            if (chunks.incrementAndGet() == 8) {
+                job.cancel();
+            }
+            return false;
+        });
+        List<Integer> rotated = new ArrayList<>();
+        assertFalse(job.run(rotations, rotated::add));
+        assertEquals(List.of(0), rotated);
+        String saved = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8);
+        assertTrue(saved.startsWith("1 1 "), saved);
+        assertFalse(saved.endsWith(" -"), saved);
+
+        KeyRotationJob resumed = new KeyRotationJob(store, crypto, keys, pool, checkpoint);
+        assertTrue(resumed.run(rotations, rotated::add));
+        assertEquals(List.of(0, 1, 2), rotated);
+        assertFalse(Files.exists(checkpoint));
+        assertEquals(resumed.progress().getEntriesTotal(), resumed.progress().getEntriesDone());
+        assertAllUse("new");
+    }
+
+    @Test
+    void rerunningAFinishedRotationChangesNothing() throws Exception {
+        List<KeyRotation> rotations = seed();
+        Path checkpoint = dir.resolve("rotation.checkpoint");
+        assertTrue(new KeyRotationJob(store, crypto, keys, pool, checkpoint).run(rotations, userID -> { }));
+        List<String> stored = storedText();
+        assertTrue(new KeyRotationJob(store, crypto, keys, pool, checkpoint).run(rotations, userID -> { }));
+        assertEquals(stored, storedText());
+        assertAllUse("new");
+    }
+
+    @Test
+    void rejectsACheckpointFromAnotherRotationList() throws Exception {
+        List<KeyRotation> rotations = seed();
+        Path checkpoint = dir.resolve("rotation.checkpoint");
+        Files.write(checkpoint, "1 99 -".getBytes(StandardCharsets.UTF_8));
+        KeyRotationJob job = new KeyRotationJob(store, crypto, keys, pool, checkpoint);
+        assertThrows(IllegalStateException.class, () -> job.run(rotations, userID -> { }));
+    }
+
+    /**
+     * Writes every user's entries with their old key
+     */
+    private List<KeyRotation> seed() throws IOException, GeneralSecurityException {
+        List<KeyRotation> rotations = new ArrayList<>();
+        for (int userID = 0; userID < USERS; userID++) {
+            User author = user(userID, "old");
+            for (int entryID = 0; entryID < ENTRIES; entryID++) {
+                Skribble skribble = new Skribble(entryID, userID, LocalDate.of(2024, 1, 1).plusDays(entryID),
+                        text(userID, entryID), "ok", null);
+                crypto.encryptEntry(author, skribble);
+                store.append(skribble);
+            }
+            rotations.add(new KeyRotation(userID, "old" + userID, "new" + userID));
+        }
+        return rotations;
+    }
+
+    private void assertAllUse(String key) throws GeneralSecurityException {
+        for (int userID = 0; userID < USERS; userID++) {
+            User author = user(userID, key);
+            List<Skribble> history = store.history(userID);
+            assertEquals(ENTRIES, history.size());
+            for (Skribble entry : history) {
+                assertEquals(text(userID, entry.getEntryID()), crypto.decrypt(author, entry.getEntryID(),
+                        entry.getentry()));
+            }
+        }
+    }
+
+    private List<String> storedText() {
+        List<String> stored = new ArrayList<>();
+        for (int userID = 0; userID < USERS; userID++) {
+            for (Skribble entry : store.history(userID)) {
+                stored.add(entry.getentry());
+            }
+        }
+        return stored;
+    }
+
+    private static String text(int userID, int entryID) {
+        return "Dear diary, user " + userID + " entry " + entryID;
+    }
+
+    private static User user(int userID, String key) {
+        return new User(userID, "user" + userID, null, null, "User", null, 12, null, null, 0, 0, 0, 0, null,
+                key + userID);
+    }
+}
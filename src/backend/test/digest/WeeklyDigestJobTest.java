@@ -0,0 +1,138 @@
+package digest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import journal.JournalStore;
+import models.Skribble;
+import models.User;
+import streak.StreakEngine;
+
+/**
+ * Checks that a digest run which fails partway resumes after the last batch it
+ * checkpointed, so no parent is mailed twice or skipped, and that children are grouped
+ * and summarized per parent.
+ */
+class WeeklyDigestJobTest {
+
+    private static final LocalDate WEEK_END = LocalDate.of(2024, 1, 14);
+    private static final int PARENTS = WeeklyDigestJob.BATCH * 2 + 20;
+
+    @TempDir
+    Path dir;
+
+    private ExecutorService executor;
+    private JournalStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(2);
+        store = JournalStore.open(dir.resolve("journal"), 1 << 20);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+        executor.shutdown();
+    }
+
+    @Test
+    void resumesAfterTheLastCheckpointedBatch() throws IOException {
+        List<User> users = new ArrayList<>();
+        for (int userID = 0; userID < PARENTS; userID++) {
+            users.add(child(userID, "parent" + userID + "@example.com", 9));
+        }
+        Path checkpoint = dir.resolve("digest.checkpoint");
+        RecordingSink failing = new RecordingSink(1);
+        WeeklyDigestJob job = new WeeklyDigestJob(store, new StreakEngine(ZoneOffset.UTC), new DigestTemplate(),
+                failing, executor, checkpoint);
+        assertThrows(IOException.class, () -> job.run(users, WEEK_END));
+        assertEquals(WeeklyDigestJob.BATCH, failing.sent.size());
+        assertTrue(Files.exists(checkpoint));
+
+        RecordingSink working = new RecordingSink(-1);
+        WeeklyDigestJob rerun = new WeeklyDigestJob(store, new StreakEngine(ZoneOffset.UTC), new DigestTemplate(),
+                working, executor, checkpoint);
+        assertEquals(PARENTS - WeeklyDigestJob.BATCH, rerun.run(users, WEEK_END));
+        Set<String> all = new HashSet<>(failing.sent);
+        for (String to : working.sent) {
+            assertTrue(all.add(to), "mailed twice: " + to);
+        }
+        assertEquals(PARENTS, all.size());
+
+        assertEquals(0, rerun.run(users, WEEK_END));
+        assertEquals(PARENTS, rerun.run(users, WEEK_END.plusDays(7)));
+    }
+
+    @Test
+    void groupsChildrenByParentAndSkipsOthers() throws IOException {
+        for (int day = 0; day < 3; day++) {
+            store.append(new Skribble(day, 1, WEEK_END.minusDays(day), "secret text", "happy", null));
+        }
+        store.append(new Skribble(10, 1, WEEK_END.minusDays(9), "older secret", "sad", null));
+        List<User> users = List.of(
+                child(1, "Parent@Example.com", 8),
+                child(2, "parent@example.com ", 10),
+                child(3, "other@example.com", 13),
+                child(4, "bad@example.com\r\nBcc: x@example.com", 7),
+                child(5, " ", 7));
+        RecordingSink sink = new RecordingSink(-1);
+        WeeklyDigestJob job = new WeeklyDigestJob(store, new StreakEngine(ZoneOffset.UTC), new DigestTemplate(),
+                sink, executor, dir.resolve("digest.checkpoint"));
+        assertEquals(1, job.run(users, WEEK_END));
+        assertEquals(List.of("parent@example.com"), sink.sent);
+        String body = sink.mails.get(0).getBody();
+        assertTrue(body.contains("Child1: 3 entries on 3 of 7 days"), body);
+        assertTrue(body.contains("Child2: 0 entries on 0 of 7 days"), body);
+        assertFalse(body.contains("secret"), body);
+    }
+
+    private static User child(int userID, String parentEmail, int age) {
+        return new User(userID, "child" + userID, null, null, "Child" + userID, null, age, parentEmail, null, 0, 0,
+                0, 0, null, null);
+    }
+
+    /**
+     * Records who was mailed, failing on one batch
+     */
+    private static final class RecordingSink implements MailSink {
+        final List<String> sent = new ArrayList<>();
+        final List<DigestMail> mails = new ArrayList<>();
+        private final int failOn;
+        private int batches;
+
+        RecordingSink(int failOn) {
+            this.failOn = failOn;
+        }
+
+        @Override
+        public void send(List<DigestMail> batch) throws IOException {
+            if (batches++ == failOn) {
+                throw new IOException("relay down");
+            }
+            for (DigestMail mail : batch) {
+                sent.add(mail.getTo());
+                mails.add(mail);
+            }
+        }
+    }
+}
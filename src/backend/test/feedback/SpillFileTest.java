@@ -0,0 +1,121 @@
+package feedback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import models.Feedback;
+
+/**
+ * Checks that a spill file reopened after a torn or corrupt append keeps the records
+ * before it and that later appends are readable.
+ */
+class SpillFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasAppended() throws IOException {
+        Path path = dir.resolve("spill");
+        try (SpillFile spill = new SpillFile(path)) {
+            assertTrue(spill.isEmpty());
+            spill.append(feedback(0, 3));
+            spill.append(feedback(3, 2));
+        }
+        try (SpillFile spill = new SpillFile(path)) {
+            assertIDs(spill.readAll(), 0, 5);
+            spill.clear();
+            assertTrue(spill.isEmpty());
+        }
+    }
+
+    @Test
+    void cutsOffATornTail() throws IOException {
+        Path path = dir.resolve("spill");
+        try (SpillFile spill = new SpillFile(path)) {
+            spill.append(feedback(0, 3));
+        }
+        long intact = Files.size(path);
+        try (SpillFile spill = new SpillFile(path)) {
+            spill.append(feedback(3, 1));
+        }
+        truncate(path, Files.size(path) - 2);
+        try (SpillFile spill = new SpillFile(path)) {
+            assertEquals(intact, Files.size(path));
+            assertIDs(spill.readAll(), 0, 3);
+            spill.append(feedback(3, 2));
+        }
+        try (SpillFile spill = new SpillFile(path)) {
+            assertIDs(spill.readAll(), 0, 5);
+        }
+    }
+
+    @Test
+    void stopsAtACorruptRecord() throws IOException {
+        Path path = dir.resolve("spill");
+        try (SpillFile spill = new SpillFile(path)) {
+            spill.append(feedback(0, 2));
+        }
+        long intact = Files.size(path);
+        try (SpillFile spill = new SpillFile(path)) {
+            spill.append(feedback(2, 2));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7F }), intact + 12);
+        }
+        try (SpillFile spill = new SpillFile(path)) {
+            assertEquals(intact, Files.size(path));
+            assertIDs(spill.readAll(), 0, 2);
+        }
+    }
+
+    @Test
+    void readsRecordsLargerThanOneChunk() throws IOException {
+        Path path = dir.resolve("spill");
+        String text = "x".repeat(200_000);
+        try (SpillFile spill = new SpillFile(path)) {
+            spill.append(List.of(new Feedback(LocalDate.of(2024, 5, 1), 1, text, 9), feedback(2, 1).get(0)));
+        }
+        try (SpillFile spill = new SpillFile(path)) {
+            List<Feedback> spilled = spill.readAll();
+            assertEquals(2, spilled.size());
+            assertEquals(text, spilled.get(0).getFeedbackText());
+            assertEquals(2, spilled.get(1).getFeedbackID());
+        }
+    }
+
+    private static List<Feedback> feedback(int firstID, int count) {
+        List<Feedback> batch = new ArrayList<>();
+        for (int i = firstID; i < firstID + count; i++) {
+            batch.add(new Feedback(LocalDate.of(2024, 5, 1), i, "feedback " + i, 100 + i));
+        }
+        return batch;
+    }
+
+    private static void assertIDs(List<Feedback> spilled, int firstID, int count) {
+        assertEquals(count, spilled.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(firstID + i, spilled.get(i).getFeedbackID());
+            assertEquals("feedback " + (firstID + i), spilled.get(i).getFeedbackText());
+        }
+    }
+
+    private static void truncate(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import models.Skribble;
+
+/**
+ * Checks that the store and its date index come back the same after reopening: after
+ * replacements and deletes, after compaction, and with a torn record at the end of the
+ * log.
+ */
+class JournalStoreTest {
+
+    private static final int USERS = 5;
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopeningReplaysPutsReplacementsAndDeletes() throws IOException {
+        Map<Integer, TreeMap<Integer, Skribble>> model = new HashMap<>();
+        try (JournalStore store = JournalStore.open(dir, 1 << 20)) {
+            churn(store, model, new Random(1), 2000);
+            assertMatches(store, model);
+        }
+        try (JournalStore store = JournalStore.open(dir, 1 << 20)) {
+            assertMatches(store, model);
+        }
+    }
+
+    @Test
+    void compactionKeepsLiveEntriesAndDeletesAcrossReopen() throws IOException {
+        Map<Integer, TreeMap<Integer, Skribble>> model = new HashMap<>();
+        try (JournalStore store = JournalStore.open(dir, 4096)) {
+            churn(store, model, new Random(2), 3000);
+            int before = segmentCount();
+            assertTrue(store.compact() > 0);
+            assertTrue(segmentCount() < before);
+            assertMatches(store, model);
+            churn(store, model, new Random(3), 500);
+            store.compact();
+            assertMatches(store, model);
+        }
+        try (JournalStore store = JournalStore.open(dir, 4096)) {
+            assertMatches(store, model);
+        }
+    }
+
+    @Test
+    void reopeningIgnoresATornRecordAndAppendsOverIt() throws IOException {
+        Map<Integer, TreeMap<Integer, Skribble>> model = new HashMap<>();
+        try (JournalStore store = JournalStore.open(dir, 1 << 16)) {
+            churn(store, model, new Random(4), 200);
+        }
+        Path segment = lastSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(Segment.HEADER + 4).order(ByteOrder.BIG_ENDIAN);
+            torn.putInt(40).putInt(0x12345678).put(Segment.PUT).put(new byte[] { 1, 2, 3 }).flip();
+            channel.write(torn, end(channel));
+        }
+        try (JournalStore store = JournalStore.open(dir, 1 << 16)) {
+            assertMatches(store, model);
+            churn(store, model, new Random(5), 50);
+        }
+        try (JournalStore store = JournalStore.open(dir, 1 << 16)) {
+            assertMatches(store, model);
+        }
+    }
+
+    @Test
+    void pagesWithCursorsAndDateRanges() throws IOException {
+        try (JournalStore store = JournalStore.open(dir, 1 << 20)) {
+            for (int entryID = 0; entryID < 100; entryID++) {
+                store.append(new Skribble(entryID, 1, START.plusDays(entryID % 30), "entry " + entryID, "ok", null));
+            }
+            store.delete(1, 50);
+            List<Integer> seen = new ArrayList<>();
+            String cursor = null;
+            do {
+                JournalPage page = store.getIndex().page(1, cursor, 7);
+                for (int i = 0; i < page.size(); i++) {
+                    seen.add(page.getEntryID(i));
+                }
+                cursor = page.hasMore() ? page.getNextCursor() : null;
+            } while (cursor != null);
+            List<Integer> expected = new ArrayList<>();
+            for (int entryID = 0; entryID < 100; entryID++) {
+                if (entryID != 50) {
+                    expected.add(entryID);
+                }
+            }
+            expected.sort(Comparator.comparing((Integer entryID) -> entryID % 30).thenComparing(entryID -> entryID)
+                    .reversed());
+            assertEquals(expected, seen);
+
+            JournalPage week = store.getIndex().range(1, START.plusDays(10), START.plusDays(16), null, 100);
+            assertEquals(21, week.size());
+            for (Skribble entry : store.metadata(week, 1)) {
+                long day = entry.getDateCreated().toEpochDay() - START.toEpochDay();
+                assertTrue(day >= 10 && day <= 16);
+                assertNull(entry.getentry());
+            }
+        }
+    }
+
+    /**
+     * Appends, replaces and deletes random entries, mirroring them in the model
+     */
+    private static void churn(JournalStore store, Map<Integer, TreeMap<Integer, Skribble>> model, Random random,
+            int steps) throws IOException {
+        for (int step = 0; step < steps; step++) {
+            int userID = random.nextInt(USERS);
+            int entryID = random.nextInt(60);
+            TreeMap<Integer, Skribble> entries = model.computeIfAbsent(userID, id -> new TreeMap<>());
+            if (random.nextInt(4) == 0) {
+                assertEquals(entries.remove(entryID) != null, store.delete(userID, entryID));
+            } else {
+                Skribble skribble = new Skribble(entryID, userID, START.plusDays(random.nextInt(90)),
+                        "entry " + step + " " + "x".repeat(random.nextInt(80)), "mood" + random.nextInt(4), null);
+                store.append(skribble);
+                entries.put(entryID, skribble);
+            }
+        }
+    }
+
+    private static void assertMatches(JournalStore store, Map<Integer, TreeMap<Integer, Skribble>> model) {
+        for (int userID = 0; userID < USERS; userID++) {
+            TreeMap<Integer, Skribble> entries = model.getOrDefault(userID, new TreeMap<>());
+            assertEquals(entries.size(), store.count(userID), "count of " + userID);
+            assertEquals(entries.size(), store.getIndex().count(userID), "indexed count of " + userID);
+            List<Skribble> history = store.history(userID);
+            assertEquals(entries.size(), history.size());
+            int i = 0;
+            for (Skribble expected : entries.values()) {
+                Skribble actual = history.get(i++);
+                assertEquals(expected.getEntryID(), actual.getEntryID());
+                assertEquals(expected.getentry(), actual.getentry());
+                assertEquals(expected.getDateCreated(), actual.getDateCreated());
+            }
+            for (int entryID = 0; entryID < 60; entryID++) {
+                if (!entries.containsKey(entryID)) {
+                    assertNull(store.get(userID, entryID));
+                }
+            }
+            JournalPage page = store.getIndex().page(userID, null, 1000);
+            assertFalse(page.hasMore());
+            assertEquals(entries.size(), store.entries(page, userID).size());
+        }
+    }
+
+    private int segmentCount() throws IOException {
+        return segments().size();
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = segments();
+        segments.sort(Comparator.comparing((Path path) -> path.getFileName().toString().length())
+                .thenComparing(path -> path.getFileName().toString()));
+        return segments.get(segments.size() - 1);
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.log")) {
+            files.forEach(segments::add);
+        }
+        return segments;
+    }
+
+    /**
+     * Walks the records of a closed segment to the first zero length
+     */
+    private static long end(FileChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        long offset = 0;
+        while (true) {
+            length.clear();
+            channel.read(length, offset);
+            int size = length.flip().getInt();
+            if (size == 0) {
+                return offset;
+            }
+            offset += Segment.HEADER + size;
+        }
+    }
+}
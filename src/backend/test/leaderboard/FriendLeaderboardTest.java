@@ -0,0 +1,97 @@
+package leaderboard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import graph.FriendGraph;
+import models.Friend;
+import models.User;
+
+/**
+ * Checks patched friend boards against boards ranked from scratch, through XP changes
+ * that move users on and off full boards and friendships being added and removed.
+ */
+class FriendLeaderboardTest {
+
+    private static final int USERS = 60;
+    private static final int K = 5;
+
+    @Test
+    void patchedBoardsMatchRebuiltBoards() {
+        Random random = new Random(11);
+        int[] xp = new int[USERS];
+        List<Friend> rows = new ArrayList<>();
+        Set<Long> friendships = new HashSet<>();
+        for (int userID = 0; userID < USERS; userID++) {
+            xp[userID] = random.nextInt(200);
+        }
+        for (int i = 0; i < 200; i++) {
+            int a = random.nextInt(USERS);
+            int b = random.nextInt(USERS);
+            if (a != b && friendships.add(key(a, b))) {
+                rows.add(new Friend(i, a, b, FriendGraph.ACCEPTED));
+            }
+        }
+        FriendGraph graph = FriendGraph.build(rows);
+        FriendLeaderboard boards = new FriendLeaderboard(graph, userID -> userID < USERS ? user(userID, xp[userID])
+                : null, K);
+        for (int step = 0; step < 5000; step++) {
+            int userID = random.nextInt(USERS);
+            int action = random.nextInt(10);
+            if (action == 0) {
+                int friend = random.nextInt(USERS);
+                if (friend != userID) {
+                    boolean added = friendships.add(key(userID, friend));
+                    if (!added) {
+                        friendships.remove(key(userID, friend));
+                    }
+                    boards.apply(new Friend(step, userID, friend, added ? FriendGraph.ACCEPTED : "removed"));
+                }
+            } else if (action < 6) {
+                xp[userID] = random.nextInt(200);
+                boards.setXp(userID, xp[userID]);
+            } else {
+                assertBoard(userID, xp, friendships, boards);
+            }
+        }
+        for (int userID = 0; userID < USERS; userID++) {
+            assertBoard(userID, xp, friendships, boards);
+        }
+    }
+
+    private static void assertBoard(int userID, int[] xp, Set<Long> friendships, FriendLeaderboard boards) {
+        List<int[]> ranked = new ArrayList<>();
+        for (int other = 0; other < USERS; other++) {
+            if (other == userID || friendships.contains(key(userID, other))) {
+                ranked.add(new int[] { xp[other], other });
+            }
+        }
+        ranked.sort((a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0]) : Integer.compare(a[1], b[1]));
+        List<LeaderboardEntry> top = boards.top(userID);
+        assertEquals(Math.min(K, ranked.size()), top.size(), "board size of " + userID);
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(ranked.get(i)[1], top.get(i).getUserID(), "row " + i + " of " + userID);
+            assertEquals(ranked.get(i)[0], top.get(i).getXp(), "row " + i + " of " + userID);
+        }
+        int rank = 1;
+        while (ranked.get(rank - 1)[1] != userID) {
+            rank++;
+        }
+        assertEquals(rank, boards.rankAmongFriends(userID), "rank of " + userID);
+    }
+
+    private static long key(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private static User user(int userID, int xp) {
+        return new User(userID, "user" + userID, null, null, "User", null, 12, null, null, 0, 0, xp, 0, null, null);
+    }
+}
@@ -0,0 +1,88 @@
+package leaderboard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks board queries against a full sort of the same scores.
+ */
+class LeaderboardTest {
+
+    @Test
+    void matchesFullSortAfterRandomUpdates() {
+        Random random = new Random(7);
+        Leaderboard board = new Leaderboard();
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (int step = 0; step < 5000; step++) {
+            int userID = random.nextInt(300);
+            int action = random.nextInt(10);
+            if (action == 0) {
+                board.remove(userID);
+                scores.remove(userID);
+            } else if (action < 4) {
+                int xp = random.nextInt(100);
+                assertEquals(scores.merge(userID, xp, Integer::sum).intValue(), board.add(userID, xp));
+            } else {
+                int xp = random.nextInt(1000);
+                board.set(userID, xp);
+                scores.put(userID, xp);
+            }
+        }
+        List<int[]> sorted = sort(scores);
+        assertEquals(sorted.size(), board.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            int userID = sorted.get(i)[1];
+            assertEquals(i + 1, board.rankOf(userID));
+            assertEquals(sorted.get(i)[0], board.xpOf(userID));
+        }
+        assertRows(sorted, 0, board.top(25));
+        for (int i = 0; i < sorted.size(); i += 17) {
+            assertRows(sorted, Math.max(0, i - 3), board.around(sorted.get(i)[1], 3, 4));
+        }
+        for (int xp = -1; xp <= 1001; xp += 50) {
+            int ahead = 0;
+            for (int[] row : sorted) {
+                ahead += row[0] > xp ? 1 : 0;
+            }
+            assertEquals(ahead + 1, board.rankOfScore(xp));
+        }
+    }
+
+    @Test
+    void unknownUsersAreOffTheBoard() {
+        Leaderboard board = new Leaderboard();
+        board.set(1, 10);
+        assertEquals(-1, board.rankOf(2));
+        assertEquals(-1, board.xpOf(2));
+        assertTrue(board.around(2, 5, 5).isEmpty());
+        board.remove(1);
+        assertEquals(-1, board.rankOf(1));
+        assertTrue(board.top(10).isEmpty());
+    }
+
+    private static List<int[]> sort(Map<Integer, Integer> scores) {
+        List<int[]> sorted = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> score : scores.entrySet()) {
+            sorted.add(new int[] { score.getValue(), score.getKey() });
+        }
+        sorted.sort((a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0]) : Integer.compare(a[1], b[1]));
+        return sorted;
+    }
+
+    private static void assertRows(List<int[]> sorted, int from, List<LeaderboardEntry> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            LeaderboardEntry row = rows.get(i);
+            assertEquals(from + i + 1, row.getRank());
+            assertEquals(sorted.get(from + i)[0], row.getXp());
+            assertEquals(sorted.get(from + i)[1], row.getUserID());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package leaderboard;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the treap against a sorted set after random inserts and removes.
+ */
+class RankTreeTest {
+
+    private static final Comparator<int[]> ORDER = (a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0])
+            : Integer.compare(a[1], b[1]);
+
+    @Test
+    void matchesSortedSetUnderRandomInsertsAndRemoves() {
+        Random random = new Random(42);
+        RankTree tree = new RankTree();
+        TreeSet<int[]> model = new TreeSet<>(ORDER);
+        for (int step = 0; step < 20_000; step++) {
+            int[] pair = { random.nextInt(50), random.nextInt(500) };
+            if (model.contains(pair)) {
+                tree.remove(pair[0], pair[1]);
+                model.remove(pair);
+            } else {
+                tree.insert(pair[0], pair[1]);
+                model.add(pair);
+            }
+            if (step % 500 == 0) {
+                assertSame(model, tree, random);
+            }
+        }
+        assertSame(model, tree, random);
+    }
+
+    @Test
+    void emptiesOutAndRefills() {
+        RankTree tree = new RankTree();
+        for (int userID = 0; userID < 1000; userID++) {
+            tree.insert(userID % 7, userID);
+        }
+        for (int userID = 0; userID < 1000; userID++) {
+            tree.remove(userID % 7, userID);
+        }
+        assertEquals(0, tree.size());
+        assertEquals(0, tree.range(0, 10, new int[10], new int[10]));
+        tree.insert(5, 1);
+        assertEquals(1, tree.size());
+        assertEquals(0, tree.countBefore(5, 1));
+    }
+
+    @Test
+    void removingAnAbsentPairChangesNothing() {
+        RankTree tree = new RankTree();
+        tree.insert(10, 1);
+        tree.insert(20, 2);
+        tree.remove(10, 2);
+        tree.remove(30, 1);
+        assertEquals(2, tree.size());
+        assertEquals(1, tree.countBefore(10, 1));
+    }
+
+    @Test
+    void ranksTiesByLowerUserID() {
+        RankTree tree = new RankTree();
+        tree.insert(100, 9);
+        tree.insert(100, 3);
+        tree.insert(200, 5);
+        int[] xp = new int[3];
+        int[] userIDs = new int[3];
+        assertEquals(3, tree.range(0, 3, xp, userIDs));
+        assertArrayEquals(new int[] { 200, 100, 100 }, xp);
+        assertArrayEquals(new int[] { 5, 3, 9 }, userIDs);
+        assertEquals(1, tree.countBefore(100, Integer.MIN_VALUE));
+        assertEquals(3, tree.countBefore(100, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Compares size, every rank, ranks of absent pairs and random windows
+     */
+    private static void assertSame(TreeSet<int[]> model, RankTree tree, Random random) {
+        assertEquals(model.size(), tree.size());
+        List<int[]> sorted = new ArrayList<>(model);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i, tree.countBefore(sorted.get(i)[0], sorted.get(i)[1]));
+        }
+        for (int i = 0; i < 50; i++) {
+            int[] probe = { random.nextInt(52) - 1, random.nextInt(502) - 1 };
+            assertEquals(model.headSet(probe, false).size(), tree.countBefore(probe[0], probe[1]));
+        }
+        for (int i = 0; i < 20; i++) {
+            int from = random.nextInt(sorted.size() + 10) - 5;
+            int to = from + random.nextInt(40);
+            int[] xp = new int[Math.max(0, to - from)];
+            int[] userIDs = new int[xp.length];
+            int count = tree.range(from, to, xp, userIDs);
+            int expectedFrom = Math.max(0, from);
+            int expectedTo = Math.min(sorted.size(), to);
+            assertEquals(Math.max(0, expectedTo - expectedFrom), count);
+            for (int j = 0; j < count; j++) {
+                assertEquals(sorted.get(expectedFrom + j)[0], xp[j]);
+                assertEquals(sorted.get(expectedFrom + j)[1], userIDs[j]);
+            }
+        }
+    }
+}